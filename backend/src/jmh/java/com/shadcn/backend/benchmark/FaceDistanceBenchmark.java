@@ -0,0 +1,107 @@
+package com.shadcn.backend.benchmark;
+
+import com.shadcn.backend.util.FaceDistanceKernel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One query descriptor against a set of stored descriptors: the previous double[] and
+ * Math.pow loop against the scalar and Vector API kernels over packed float32 data.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Benchmark)
+public class FaceDistanceBenchmark {
+
+    // 24 is the MediaPipe landmark descriptor of the enrollment pages, 128 a face-api embedding
+    @Param({"24", "128"})
+    public int dimension;
+
+    @Param({"1000", "10000"})
+    public int descriptors;
+
+    private double[] queryDouble;
+    private double[][] storedDouble;
+
+    private float[] query;
+    private float[] data;
+    private int[] offsets;
+
+    private FaceDistanceKernel scalar;
+    private FaceDistanceKernel vector;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        queryDouble = randomDescriptor(random);
+        storedDouble = new double[descriptors][];
+        for (int i = 0; i < descriptors; i++) {
+            storedDouble[i] = randomDescriptor(random);
+        }
+
+        query = toFloat(queryDouble);
+        data = new float[descriptors * dimension];
+        offsets = new int[descriptors];
+        for (int i = 0; i < descriptors; i++) {
+            offsets[i] = i * dimension;
+            System.arraycopy(toFloat(storedDouble[i]), 0, data, offsets[i], dimension);
+        }
+
+        scalar = FaceDistanceKernel.scalar();
+        vector = FaceDistanceKernel.get();
+    }
+
+    @Benchmark
+    public double previousMathPow() {
+        double min = Double.MAX_VALUE;
+        for (double[] stored : storedDouble) {
+            double distance = 0.0;
+            for (int i = 0; i < stored.length; i++) {
+                distance += Math.pow(queryDouble[i] - stored[i], 2);
+            }
+            min = Math.min(min, Math.sqrt(distance));
+        }
+        return min;
+    }
+
+    @Benchmark
+    public float scalarKernel() {
+        return scalar.minSquaredL2(query, data, offsets, 0, descriptors, Float.MAX_VALUE);
+    }
+
+    @Benchmark
+    public float vectorKernel() {
+        return vector.minSquaredL2(query, data, offsets, 0, descriptors, Float.MAX_VALUE);
+    }
+
+    private double[] randomDescriptor(Random random) {
+        double[] descriptor = new double[dimension];
+        for (int i = 0; i < dimension; i++) {
+            descriptor[i] = random.nextDouble();
+        }
+        return descriptor;
+    }
+
+    private static float[] toFloat(double[] values) {
+        float[] result = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (float) values[i];
+        }
+        return result;
+    }
+}
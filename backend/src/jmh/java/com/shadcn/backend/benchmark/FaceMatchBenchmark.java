@@ -0,0 +1,155 @@
+package com.shadcn.backend.benchmark;
+
+import com.shadcn.backend.config.props.FaceIndexProperties;
+import com.shadcn.backend.repository.FaceDescriptorProjection;
+import com.shadcn.backend.repository.FaceRecognitionRepository;
+import com.shadcn.backend.service.FaceEmbeddingIndex;
+import com.shadcn.backend.service.FaceMatchMetrics;
+import com.shadcn.backend.util.FaceDescriptorCodec;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 1:N face matching as FaceRecognitionService runs it: a query against the embedding
+ * index of every active face recognition, each stored as the centroid and two pose
+ * prototypes. The index is loaded from a stubbed repository, so the numbers cover the
+ * resident scan only. Queries are a stored face plus noise, so they match like a real
+ * check-in and pruning behaves as in production.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class FaceMatchBenchmark {
+
+    private static final int PROTOTYPES = 3;
+    private static final int BATCH = 64;
+
+    @Param({"1000", "10000", "100000"})
+    public int faceRecognitions;
+
+    @Param({"24", "128"})
+    public int dimension;
+
+    // Below the default ann-min-entries of 2000 the index scans in full either way
+    @Param({"false", "true"})
+    public boolean ann;
+
+    private FaceEmbeddingIndex index;
+    private List<double[]> queries;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        List<FaceDescriptorProjection> rows = new ArrayList<>(faceRecognitions);
+        List<float[]> stored = new ArrayList<>(faceRecognitions);
+        for (int i = 0; i < faceRecognitions; i++) {
+            List<FaceDescriptorCodec.Descriptor> prototypes = new ArrayList<>(PROTOTYPES);
+            float[] centroid = randomDescriptor(random);
+            prototypes.add(new FaceDescriptorCodec.Descriptor("centroid", null, null, centroid));
+            for (int p = 1; p < PROTOTYPES; p++) {
+                prototypes.add(new FaceDescriptorCodec.Descriptor("pose-" + p, null, null, nearby(random, centroid)));
+            }
+            stored.add(centroid);
+            rows.add(row((long) i + 1, (long) i + 1, FaceDescriptorCodec.encode(prototypes)));
+        }
+
+        FaceIndexProperties properties = new FaceIndexProperties();
+        properties.setAnnEnabled(ann);
+        properties.setSnapshotFile("");
+        index = new FaceEmbeddingIndex(
+                RepositoryStubs.answering(FaceRecognitionRepository.class, "findActiveDescriptors", rows),
+                properties, new FaceMatchMetrics(new SimpleMeterRegistry()));
+        // Loads the entries and trains the IVF lists outside the measurement
+        index.size();
+
+        queries = new ArrayList<>(BATCH);
+        for (int q = 0; q < BATCH; q++) {
+            float[] face = nearby(random, stored.get(random.nextInt(faceRecognitions)));
+            double[] query = new double[dimension];
+            for (int d = 0; d < dimension; d++) {
+                query[d] = face[d];
+            }
+            queries.add(query);
+        }
+    }
+
+    @Benchmark
+    public FaceEmbeddingIndex.Match best() {
+        next = (next + 1) % BATCH;
+        return index.best(queries.get(next));
+    }
+
+    /**
+     * The batch endpoint with 64 faces; divide by 64 to compare with {@link #best}.
+     */
+    @Benchmark
+    public List<FaceEmbeddingIndex.Match> bestAll() {
+        return index.bestAll(queries);
+    }
+
+    // Spread of synthetic landmark descriptors; faces are ~0.2-0.6 similar to each other
+    private float[] randomDescriptor(Random random) {
+        float[] descriptor = new float[dimension];
+        for (int d = 0; d < dimension; d++) {
+            descriptor[d] = (float) (random.nextGaussian() * 0.1);
+        }
+        return descriptor;
+    }
+
+    // Another capture of the same face, ~0.9 similar
+    private float[] nearby(Random random, float[] face) {
+        float[] descriptor = new float[dimension];
+        for (int d = 0; d < dimension; d++) {
+            descriptor[d] = face[d] + (float) (random.nextGaussian() * 0.01);
+        }
+        return descriptor;
+    }
+
+    private static FaceDescriptorProjection row(Long id, Long pegawaiId, byte[] prototypeData) {
+        return new FaceDescriptorProjection() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public Long getPegawaiId() {
+                return pegawaiId;
+            }
+
+            @Override
+            public byte[] getFacePrototypeData() {
+                return prototypeData;
+            }
+
+            @Override
+            public byte[] getFaceDescriptorData() {
+                return null;
+            }
+
+            @Override
+            public String getFaceDescriptors() {
+                return null;
+            }
+        };
+    }
+}
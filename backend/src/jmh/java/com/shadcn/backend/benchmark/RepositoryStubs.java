@@ -0,0 +1,32 @@
+package com.shadcn.backend.benchmark;
+
+import java.lang.reflect.Proxy;
+
+/**
+ * In-memory stand-ins for Spring Data repositories, so benchmarks can build the real
+ * services without a database. A stub answers one query method with a fixed result;
+ * any other repository call fails, which keeps a benchmark from silently measuring a
+ * path it did not set up.
+ */
+public final class RepositoryStubs {
+
+    private RepositoryStubs() {
+    }
+
+    public static <T> T answering(Class<T> repository, String method, Object result) {
+        Object stub = Proxy.newProxyInstance(repository.getClassLoader(), new Class<?>[]{repository},
+                (proxy, invoked, args) -> switch (invoked.getName()) {
+                    case "toString" -> repository.getSimpleName() + " stub";
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> {
+                        if (invoked.getName().equals(method)) {
+                            yield result;
+                        }
+                        throw new UnsupportedOperationException(
+                                repository.getSimpleName() + "." + invoked.getName() + " is not stubbed");
+                    }
+                });
+        return repository.cast(stub);
+    }
+}
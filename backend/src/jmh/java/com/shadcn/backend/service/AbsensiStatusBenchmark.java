@@ -0,0 +1,93 @@
+package com.shadcn.backend.service;
+
+import com.shadcn.backend.benchmark.RepositoryStubs;
+import com.shadcn.backend.entity.Absensi;
+import com.shadcn.backend.entity.Shift;
+import com.shadcn.backend.model.Pegawai;
+import com.shadcn.backend.repository.PemotonganAbsenRepository;
+import com.shadcn.backend.repository.ShiftRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Status and keterangan of a check-in or check-out as createAbsensi determines them,
+ * over a spread of times around an 08:00-16:00 shift so each branch (on time, late
+ * with and without compensation, early, overtime) is taken. Lives in the service
+ * package to reach the package-private step; the repositories are stubbed.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AbsensiStatusBenchmark {
+
+    private static final int TIMES = 1024;
+
+    private AbsensiService service;
+    private ShiftSchedules.Jadwal jadwal;
+    private Pegawai pegawai;
+    private LocalTime[] masuk;
+    private LocalTime[] pulang;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Shift shift = Shift.builder()
+                .id(1L)
+                .namaShift("Pagi")
+                .jamMasuk("08:00")
+                .jamKeluar("16:00")
+                .isActive(true)
+                .build();
+        ShiftSchedules shiftSchedules = new ShiftSchedules(RepositoryStubs.answering(
+                ShiftRepository.class, "findAll", List.of(shift)));
+        PemotonganAbsenRules pemotonganAbsenRules = new PemotonganAbsenRules(RepositoryStubs.answering(
+                PemotonganAbsenRepository.class, "findAllActiveOrderByKode", List.of()));
+        service = new AbsensiService(null, pemotonganAbsenRules, null, shiftSchedules, null, null, null);
+        jadwal = shiftSchedules.get(1L);
+        pegawai = Pegawai.builder().id(1L).namaLengkap("Pegawai 1").build();
+
+        Random random = new Random(42);
+        masuk = new LocalTime[TIMES];
+        pulang = new LocalTime[TIMES];
+        for (int i = 0; i < TIMES; i++) {
+            // 07:30 to 09:50, and 14:30 to 17:30
+            masuk[i] = LocalTime.of(7, 30).plusMinutes(random.nextInt(140));
+            pulang[i] = LocalTime.of(14, 30).plusMinutes(random.nextInt(180));
+        }
+    }
+
+    @Benchmark
+    public void masuk(Blackhole blackhole) {
+        next = (next + 1) & (TIMES - 1);
+        consume(blackhole, service.determineAbsensiStatusAndKeterangan(Absensi.AbsensiType.MASUK, jadwal, masuk[next], pegawai));
+    }
+
+    @Benchmark
+    public void pulang(Blackhole blackhole) {
+        next = (next + 1) & (TIMES - 1);
+        consume(blackhole, service.determineAbsensiStatusAndKeterangan(Absensi.AbsensiType.PULANG, jadwal, pulang[next], pegawai));
+    }
+
+    // The result type is package-private, so its fields are consumed rather than returned
+    private static void consume(Blackhole blackhole, AbsensiService.AbsensiStatusAndKeterangan result) {
+        blackhole.consume(result.status);
+        blackhole.consume(result.keterangan);
+    }
+}
@@ -0,0 +1,181 @@
+package com.shadcn.backend.service;
+
+import com.shadcn.backend.benchmark.RepositoryStubs;
+import com.shadcn.backend.config.props.LaporanTukinProperties;
+import com.shadcn.backend.dto.LaporanTukinResponse;
+import com.shadcn.backend.entity.Absensi;
+import com.shadcn.backend.entity.Shift;
+import com.shadcn.backend.model.Cuti;
+import com.shadcn.backend.model.HariLibur;
+import com.shadcn.backend.model.Pegawai;
+import com.shadcn.backend.model.Pemotongan;
+import com.shadcn.backend.repository.HariLiburRepository;
+import com.shadcn.backend.repository.PemotonganAbsenRepository;
+import com.shadcn.backend.repository.ShiftRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-pegawai tukin calculation of a laporan over one synthetic month (March 2025,
+ * one hari libur), from the loaded period data to the detail rows. Lives in the service
+ * package to reach the calculation and PeriodeData without the database; the loading,
+ * saving and snapshot steps of a real laporan are not measured.
+ * <p>
+ * Every pegawai checks in and out on most working days, late or early by a random amount,
+ * with the occasional missing day, missing check-out, approved cuti and pemotongan, so
+ * every deduction branch runs. Deduction rules are the built-in defaults.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LaporanTukinBenchmark {
+
+    private static final LocalDate START = LocalDate.of(2025, 3, 1);
+    private static final LocalDate END = LocalDate.of(2025, 3, 31);
+    private static final long SHIFT_ID = 1L;
+
+    @Param({"1", "100", "1000"})
+    public int pegawai;
+
+    // Parallel runs on the laporan-tukin pool as generation does above the threshold
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private LaporanTukinService service;
+    private ForkJoinPool pool;
+    private List<Pegawai> pegawaiList;
+    private LaporanTukinDataLoader.PeriodeData periodeData;
+
+    @Setup
+    public void setup() {
+        Shift shift = Shift.builder()
+                .id(SHIFT_ID)
+                .namaShift("Pagi")
+                .jamMasuk("08:00")
+                .jamKeluar("16:00")
+                .isActive(true)
+                .build();
+        HariLibur libur = HariLibur.builder()
+                .namaLibur("Idul Fitri")
+                .tanggalLibur(LocalDate.of(2025, 3, 31))
+                .bulanLibur(3)
+                .tahunLibur(2025)
+                .build();
+        WorkingCalendar workingCalendar = new WorkingCalendar(RepositoryStubs.answering(
+                HariLiburRepository.class, "findByTanggalLiburBetweenAndIsActiveTrue", List.of(libur)));
+        ShiftSchedules shiftSchedules = new ShiftSchedules(RepositoryStubs.answering(
+                ShiftRepository.class, "findAll", List.of(shift)));
+        PemotonganAbsenRules pemotonganAbsenRules = new PemotonganAbsenRules(RepositoryStubs.answering(
+                PemotonganAbsenRepository.class, "findAllActiveOrderByKode", List.of()));
+
+        LaporanTukinProperties properties = new LaporanTukinProperties();
+        properties.setParallelEnabled(parallel);
+        properties.setParallelThreshold(1);
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        service = new LaporanTukinService(null, null, workingCalendar, shiftSchedules, null, null, null,
+                properties, pool);
+
+        Random random = new Random(42);
+        pegawaiList = new ArrayList<>(pegawai);
+        Map<Long, List<Absensi>> absensi = new HashMap<>();
+        Map<Long, List<Cuti>> cuti = new HashMap<>();
+        Map<Long, List<Pemotongan>> pemotongan = new HashMap<>();
+        for (long id = 1; id <= pegawai; id++) {
+            Pegawai p = Pegawai.builder()
+                    .id(id)
+                    .nip(String.format("19900101%010d", id))
+                    .namaLengkap("Pegawai " + id)
+                    .tunjanganKinerja(5_000_000L + random.nextInt(50) * 100_000L)
+                    .isActive(true)
+                    .build();
+            pegawaiList.add(p);
+
+            List<Absensi> month = new ArrayList<>();
+            List<Cuti> cutiPegawai = new ArrayList<>();
+            for (LocalDate tanggal = START; !tanggal.isAfter(END); tanggal = tanggal.plusDays(1)) {
+                if (!workingCalendar.isWorkingDay(tanggal)) {
+                    continue;
+                }
+                int roll = random.nextInt(100);
+                if (roll < 3) {
+                    continue; // Alpha
+                }
+                if (roll < 6) {
+                    cutiPegawai.add(Cuti.builder()
+                            .pegawai(p)
+                            .tanggalCuti(tanggal)
+                            .statusApproval(Cuti.StatusApproval.DISETUJUI)
+                            .build());
+                    continue;
+                }
+                // Masuk between 07:40 and 09:20, pulang between 15:00 and 17:00
+                month.add(absensi(p, shift, tanggal, Absensi.AbsensiType.MASUK,
+                        LocalTime.of(7, 40).plusMinutes(random.nextInt(100))));
+                if (roll >= 8) {
+                    month.add(absensi(p, shift, tanggal, Absensi.AbsensiType.PULANG,
+                            LocalTime.of(15, 0).plusMinutes(random.nextInt(120))));
+                }
+            }
+            absensi.put(id, month);
+            cuti.put(id, cutiPegawai);
+            if (id % 10 == 0) {
+                pemotongan.put(id, List.of(Pemotongan.builder()
+                        .pegawai(p)
+                        .bulanPemotongan(3)
+                        .tahunPemotongan(2025)
+                        .persentasePemotongan(BigDecimal.valueOf(5))
+                        .alasanPemotongan("Hukuman disiplin")
+                        .isActive(true)
+                        .build()));
+            }
+        }
+        periodeData = new LaporanTukinDataLoader.PeriodeData(absensi, cuti, pemotongan, workingCalendar,
+                pemotonganAbsenRules.current());
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public List<LaporanTukinResponse.DetailPegawaiTukin> calculateMonth() {
+        return service.calculateDetailPegawai(pegawaiList, periodeData, START, END,
+                LaporanTukinService.ProgressListener.NONE);
+    }
+
+    private static Absensi absensi(Pegawai pegawai, Shift shift, LocalDate tanggal, Absensi.AbsensiType type,
+                                   LocalTime waktu) {
+        Absensi absensi = new Absensi();
+        absensi.setPegawai(pegawai);
+        absensi.setShift(shift);
+        absensi.setType(type);
+        absensi.setTanggal(tanggal);
+        absensi.setWaktu(waktu);
+        return absensi;
+    }
+}
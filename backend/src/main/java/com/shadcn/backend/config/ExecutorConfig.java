@@ -0,0 +1,62 @@
+package com.shadcn.backend.config;
+
+import com.shadcn.backend.config.props.AbsensiPhotoProperties;
+import com.shadcn.backend.config.props.LaporanTukinProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+@Configuration
+public class ExecutorConfig {
+    
+    /**
+     * Bounded pool for per-pegawai tukin calculation, kept separate from the common pool
+     * so report generation cannot starve other parallel work in the JVM.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ForkJoinPool laporanTukinCalculationPool(LaporanTukinProperties properties) {
+        int parallelism = properties.getParallelism() != null && properties.getParallelism() > 0
+                ? properties.getParallelism()
+                : Runtime.getRuntime().availableProcessors();
+        ForkJoinPool.ForkJoinWorkerThreadFactory threadFactory = pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("laporan-tukin-" + thread.getPoolIndex());
+            return thread;
+        };
+        return new ForkJoinPool(parallelism, threadFactory, null, false);
+    }
+    
+    /**
+     * Runs laporan tukin generate jobs. The pool size caps how many reports are generated
+     * at once, and with it how many database connections report generation can hold.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor laporanTukinJobExecutor(LaporanTukinProperties properties) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(properties.getMaxConcurrentJobs());
+        executor.setMaxPoolSize(properties.getMaxConcurrentJobs());
+        executor.setQueueCapacity(properties.getJobQueueCapacity());
+        executor.setThreadNamePrefix("laporan-tukin-job-");
+        return executor;
+    }
+    
+    /**
+     * Writes check-in photos after the absensi row is saved. The queue is bounded because
+     * every waiting task holds a whole photo in memory; shutdown drains it so accepted
+     * photos are not lost on a redeploy.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor absensiPhotoExecutor(AbsensiPhotoProperties properties) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(properties.getWriterThreads());
+        executor.setMaxPoolSize(properties.getWriterThreads());
+        executor.setQueueCapacity(properties.getQueueCapacity());
+        executor.setThreadNamePrefix("absensi-photo-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+}
@@ -0,0 +1,49 @@
+package com.shadcn.backend.config.props;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "app.absensi.photo")
+public class AbsensiPhotoProperties {
+    // Write check-in photos after the absensi is saved instead of on the request thread
+    private Boolean asyncEnabled = true;
+    // Threads writing photos to disk
+    private Integer writerThreads = 2;
+    // Photos waiting for a writer; when full the request thread writes its own photo
+    private Integer queueCapacity = 200;
+    // Base64 text held by queued photos; past it the request thread decodes to a staging file first
+    private Integer maxQueuedBytes = 64 * 1024 * 1024;
+
+    public Boolean getAsyncEnabled() {
+        return asyncEnabled;
+    }
+
+    public void setAsyncEnabled(Boolean asyncEnabled) {
+        this.asyncEnabled = asyncEnabled;
+    }
+
+    public Integer getWriterThreads() {
+        return writerThreads;
+    }
+
+    public void setWriterThreads(Integer writerThreads) {
+        this.writerThreads = writerThreads;
+    }
+
+    public Integer getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(Integer queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public Integer getMaxQueuedBytes() {
+        return maxQueuedBytes;
+    }
+
+    public void setMaxQueuedBytes(Integer maxQueuedBytes) {
+        this.maxQueuedBytes = maxQueuedBytes;
+    }
+}
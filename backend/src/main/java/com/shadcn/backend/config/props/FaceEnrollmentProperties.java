@@ -0,0 +1,39 @@
+package com.shadcn.backend.config.props;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "app.face.enrollment")
+public class FaceEnrollmentProperties {
+    // Match against centroid and pose prototypes computed at enrollment instead of every capture
+    private Boolean prototypesEnabled = true;
+    // Prototypes kept per face recognition, the centroid included
+    private Integer maxPrototypes = 3;
+    // A capture further from the centroid than median + factor x MAD is rejected as an outlier
+    private Double outlierMadFactor = 3.0;
+
+    public Boolean getPrototypesEnabled() {
+        return prototypesEnabled;
+    }
+
+    public void setPrototypesEnabled(Boolean prototypesEnabled) {
+        this.prototypesEnabled = prototypesEnabled;
+    }
+
+    public Integer getMaxPrototypes() {
+        return maxPrototypes;
+    }
+
+    public void setMaxPrototypes(Integer maxPrototypes) {
+        this.maxPrototypes = maxPrototypes;
+    }
+
+    public Double getOutlierMadFactor() {
+        return outlierMadFactor;
+    }
+
+    public void setOutlierMadFactor(Double outlierMadFactor) {
+        this.outlierMadFactor = outlierMadFactor;
+    }
+}
@@ -0,0 +1,89 @@
+package com.shadcn.backend.config.props;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "app.face.index")
+public class FaceIndexProperties {
+    // Use the approximate (IVF) index for 1:N matching; exact scan when disabled
+    private Boolean annEnabled = false;
+    // Face recognitions needed before the approximate index is built
+    private Integer annMinEntries = 2000;
+    // Number of IVF clusters; 0 or less means the square root of the descriptor count
+    private Integer annLists = 0;
+    // Clusters searched per query; higher is slower with better recall
+    private Integer annProbes = 8;
+    // File the index is saved to so restarts skip reloading from the database; empty disables
+    private String snapshotFile = "";
+    // Pegawai whose descriptors are kept for self verification at check-in
+    private Integer selfCacheSize = 5000;
+    // Bounds how long a cached pegawai name and summary can lag behind an edit
+    private Integer selfCacheExpireMinutes = 30;
+    // Descriptors accepted by one batch match request
+    private Integer batchMaxItems = 1000;
+
+    public Boolean getAnnEnabled() {
+        return annEnabled;
+    }
+
+    public void setAnnEnabled(Boolean annEnabled) {
+        this.annEnabled = annEnabled;
+    }
+
+    public Integer getAnnMinEntries() {
+        return annMinEntries;
+    }
+
+    public void setAnnMinEntries(Integer annMinEntries) {
+        this.annMinEntries = annMinEntries;
+    }
+
+    public Integer getAnnLists() {
+        return annLists;
+    }
+
+    public void setAnnLists(Integer annLists) {
+        this.annLists = annLists;
+    }
+
+    public Integer getAnnProbes() {
+        return annProbes;
+    }
+
+    public void setAnnProbes(Integer annProbes) {
+        this.annProbes = annProbes;
+    }
+
+    public String getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    public void setSnapshotFile(String snapshotFile) {
+        this.snapshotFile = snapshotFile;
+    }
+
+    public Integer getSelfCacheSize() {
+        return selfCacheSize;
+    }
+
+    public void setSelfCacheSize(Integer selfCacheSize) {
+        this.selfCacheSize = selfCacheSize;
+    }
+
+    public Integer getSelfCacheExpireMinutes() {
+        return selfCacheExpireMinutes;
+    }
+
+    public void setSelfCacheExpireMinutes(Integer selfCacheExpireMinutes) {
+        this.selfCacheExpireMinutes = selfCacheExpireMinutes;
+    }
+
+    public Integer getBatchMaxItems() {
+        return batchMaxItems;
+    }
+
+    public void setBatchMaxItems(Integer batchMaxItems) {
+        this.batchMaxItems = batchMaxItems;
+    }
+}
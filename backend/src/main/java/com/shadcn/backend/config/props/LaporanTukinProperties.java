@@ -0,0 +1,89 @@
+package com.shadcn.backend.config.props;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "app.laporan-tukin")
+public class LaporanTukinProperties {
+    // Calculate per-pegawai tukin on a dedicated pool when the report is large enough
+    private Boolean parallelEnabled = true;
+    // Pool size; 0 or less means the number of available processors
+    private Integer parallelism = 0;
+    // Minimum number of pegawai before the parallel path is used
+    private Integer parallelThreshold = 50;
+    // Generate jobs running at the same time; each holds one database connection
+    private Integer maxConcurrentJobs = 2;
+    // Jobs waiting for a free slot before new requests are rejected
+    private Integer jobQueueCapacity = 20;
+    // Transaction timeout for a single generate job
+    private Integer jobTimeoutSeconds = 600;
+    // How long finished jobs remain available for polling
+    private Integer jobRetentionMinutes = 60;
+    // Rows kept in memory per sheet by the streaming Excel export; older rows go to a temp file
+    private Integer excelRowWindow = 100;
+
+    public Boolean getParallelEnabled() {
+        return parallelEnabled;
+    }
+
+    public void setParallelEnabled(Boolean parallelEnabled) {
+        this.parallelEnabled = parallelEnabled;
+    }
+
+    public Integer getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(Integer parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public Integer getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    public void setParallelThreshold(Integer parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    public Integer getMaxConcurrentJobs() {
+        return maxConcurrentJobs;
+    }
+
+    public void setMaxConcurrentJobs(Integer maxConcurrentJobs) {
+        this.maxConcurrentJobs = maxConcurrentJobs;
+    }
+
+    public Integer getJobQueueCapacity() {
+        return jobQueueCapacity;
+    }
+
+    public void setJobQueueCapacity(Integer jobQueueCapacity) {
+        this.jobQueueCapacity = jobQueueCapacity;
+    }
+
+    public Integer getJobTimeoutSeconds() {
+        return jobTimeoutSeconds;
+    }
+
+    public void setJobTimeoutSeconds(Integer jobTimeoutSeconds) {
+        this.jobTimeoutSeconds = jobTimeoutSeconds;
+    }
+
+    public Integer getJobRetentionMinutes() {
+        return jobRetentionMinutes;
+    }
+
+    public void setJobRetentionMinutes(Integer jobRetentionMinutes) {
+        this.jobRetentionMinutes = jobRetentionMinutes;
+    }
+
+    public Integer getExcelRowWindow() {
+        return excelRowWindow;
+    }
+
+    public void setExcelRowWindow(Integer excelRowWindow) {
+        this.excelRowWindow = excelRowWindow;
+    }
+}
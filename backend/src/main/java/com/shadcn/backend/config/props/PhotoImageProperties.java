@@ -0,0 +1,69 @@
+package com.shadcn.backend.config.props;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "app.upload.image")
+public class PhotoImageProperties {
+    // Recompress uploaded JPEG and PNG photos and write a thumbnail next to them
+    private Boolean enabled = true;
+    // Longest side of a stored photo in pixels; larger photos are scaled down
+    private Integer maxDimension = 1280;
+    // JPEG quality of stored photos, 0 to 1
+    private Float quality = 0.8f;
+    // Longest side of a thumbnail in pixels
+    private Integer thumbnailDimension = 240;
+    // JPEG quality of thumbnails, 0 to 1
+    private Float thumbnailQuality = 0.7f;
+    // Process photos stored before this stage at startup, in the background
+    private Boolean backfillEnabled = true;
+
+    public Boolean getEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(Boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Integer getMaxDimension() {
+        return maxDimension;
+    }
+
+    public void setMaxDimension(Integer maxDimension) {
+        this.maxDimension = maxDimension;
+    }
+
+    public Float getQuality() {
+        return quality;
+    }
+
+    public void setQuality(Float quality) {
+        this.quality = quality;
+    }
+
+    public Integer getThumbnailDimension() {
+        return thumbnailDimension;
+    }
+
+    public void setThumbnailDimension(Integer thumbnailDimension) {
+        this.thumbnailDimension = thumbnailDimension;
+    }
+
+    public Float getThumbnailQuality() {
+        return thumbnailQuality;
+    }
+
+    public void setThumbnailQuality(Float thumbnailQuality) {
+        this.thumbnailQuality = thumbnailQuality;
+    }
+
+    public Boolean getBackfillEnabled() {
+        return backfillEnabled;
+    }
+
+    public void setBackfillEnabled(Boolean backfillEnabled) {
+        this.backfillEnabled = backfillEnabled;
+    }
+}
@@ -10,9 +10,11 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
 import jakarta.validation.Valid;
 import java.time.LocalDate;
@@ -86,6 +88,32 @@ public class AbsensiController {
         }
     }
     
+    /**
+     * Absensi with the photo as a binary multipart part, so the request never holds the
+     * photo as a Base64 string
+     */
+    @PostMapping(value = {"", "/check-in"}, consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<Map<String, Object>> createAbsensiMultipart(
+            @Valid @ModelAttribute AbsensiRequest request,
+            @RequestPart(value = "photo", required = false) MultipartFile photo) {
+        try {
+            AbsensiResponse response = absensiService.createAbsensi(request, photo);
+            
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", true);
+            result.put("message", "Absensi berhasil dicatat");
+            result.put("data", response);
+            
+            return ResponseEntity.ok(result);
+        } catch (RuntimeException e) {
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", false);
+            result.put("message", e.getMessage());
+            
+            return ResponseEntity.badRequest().body(result);
+        }
+    }
+    
     @GetMapping("/history/{pegawaiId}")
     @PreAuthorize("hasRole('USER') or hasRole('ADMIN') or hasRole('VERIFICATOR')")
     public ResponseEntity<PagedResponse<AbsensiResponse>> getAbsensiHistory(
@@ -3,6 +3,7 @@ package com.shadcn.backend.controller;
 import com.shadcn.backend.dto.*;
 import com.shadcn.backend.entity.FaceRecognition.FaceRecognitionStatus;
 import com.shadcn.backend.service.FaceRecognitionService;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -206,15 +207,32 @@ public class FaceRecognitionController {
         }
     }
     
-    // Get pegawai without face recognition
+    // Get pegawai without face recognition with pagination and filters
     @GetMapping("/pegawai-without-face")
-    public ResponseEntity<Map<String, Object>> getPegawaiWithoutFaceRecognition() {
+    public ResponseEntity<Map<String, Object>> getPegawaiWithoutFaceRecognition(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) Long lokasiId,
+            @RequestParam(required = false) Long jabatanId,
+            @RequestParam(defaultValue = "namaLengkap") String sortBy,
+            @RequestParam(defaultValue = "asc") String sortDir) {
         try {
-            List<PegawaiWithoutFaceResponse> pegawai = faceRecognitionService.getPegawaiWithoutFaceRecognition();
+            Page<PegawaiWithoutFaceResponse> pegawai = faceRecognitionService.getPegawaiWithoutFaceRecognition(
+                page, size, search, lokasiId, jabatanId, sortBy, sortDir);
+            
+            Map<String, Object> pagination = Map.of(
+                "currentPage", pegawai.getNumber(),
+                "totalPages", pegawai.getTotalPages(),
+                "totalItems", pegawai.getTotalElements(),
+                "pageSize", pegawai.getSize()
+            );
+            
             return ResponseEntity.ok(Map.of(
                 "success", true,
                 "message", "Pegawai without face recognition retrieved successfully",
-                "data", pegawai
+                "data", pegawai.getContent(),
+                "pagination", pagination
             ));
         } catch (Exception e) {
             log.error("Error getting pegawai without face recognition: ", e);
@@ -253,6 +271,30 @@ public class FaceRecognitionController {
         }
     }
 
+    // Match many descriptors at once - for kiosks replaying queued check-ins
+    @PostMapping("/match/batch")
+    public ResponseEntity<Map<String, Object>> matchFaceDescriptorBatch(@Valid @RequestBody FaceBatchMatchRequest request) {
+        try {
+            FaceBatchMatchResponse resp = faceRecognitionService.matchBatch(request);
+            return ResponseEntity.ok(Map.of(
+                "success", true,
+                "message", "Batch face matching completed",
+                "data", resp
+            ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                "success", false,
+                "message", e.getMessage()
+            ));
+        } catch (Exception e) {
+            log.error("Error matching face descriptor batch: ", e);
+            return ResponseEntity.status(500).body(Map.of(
+                "success", false,
+                "message", "Internal server error: " + e.getMessage()
+            ));
+        }
+    }
+
     // Get top-K matches for a descriptor
     @PostMapping("/topk")
     public ResponseEntity<Map<String, Object>> topK(@RequestBody FaceTopKRequest request) {
@@ -1,7 +1,13 @@
 package com.shadcn.backend.controller;
 
+import com.shadcn.backend.service.PhotoImageProcessor;
+import com.shadcn.backend.util.FileTransferUtil;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -19,12 +25,19 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/upload")
+@RequiredArgsConstructor
 @Slf4j
 public class FileUploadController {
 
+    // Photo names are unique per upload, so a cached copy only needs revalidating hourly
+    private static final CacheControl PHOTO_CACHE_CONTROL = CacheControl.maxAge(1, TimeUnit.HOURS).cachePublic();
+
+    private final PhotoImageProcessor photoImageProcessor;
+
     @Value("${app.upload.dir:uploads}")
     private String uploadDir;
 
@@ -79,6 +92,14 @@ public class FileUploadController {
             // Save file
             Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
             
+            // Bounded-resolution JPEG plus thumbnail; a PNG is stored under a .jpg name
+            Path storedPath = photoImageProcessor.process(filePath);
+            if (!storedPath.equals(filePath)) {
+                filePath = storedPath;
+                filename = storedPath.getFileName().toString();
+                contentType = "image/jpeg";
+            }
+            
             // Set file permissions for web access (644 equivalent)
             try {
                 // For Unix/Linux systems, set proper file permissions
@@ -90,8 +111,9 @@ public class FileUploadController {
                 log.warn("Could not set POSIX permissions for file {}: {}", filename, e.getMessage());
             }
             
-            log.info("Photo uploaded successfully: {} (size: {} bytes, saved to: {})", 
-                    filename, file.getSize(), filePath.toAbsolutePath());
+            long storedSize = Files.size(filePath);
+            log.info("Photo uploaded successfully: {} (size: {} bytes, stored: {} bytes, saved to: {})", 
+                    filename, file.getSize(), storedSize, filePath.toAbsolutePath());
 
             // Create response
             Map<String, Object> response = new HashMap<>();
@@ -99,7 +121,7 @@ public class FileUploadController {
             response.put("message", "File uploaded successfully");
             response.put("filename", filename);
             response.put("url", "/api/upload/photos/" + filename);
-            response.put("size", file.getSize());
+            response.put("size", storedSize);
             response.put("contentType", contentType);
 
             return ResponseEntity.ok(response);
@@ -113,27 +135,35 @@ public class FileUploadController {
 
     @GetMapping("/photos/{filename}")
     @PreAuthorize("hasRole('ADMIN') or hasRole('VERIFICATOR') or hasRole('USER') or hasRole('PEGAWAI')")
-      public ResponseEntity<byte[]> getPhoto(@PathVariable String filename) {
+    public void getPhoto(@PathVariable String filename,
+                         @RequestParam(required = false) String size,
+                         HttpServletRequest request, HttpServletResponse response) {
         try {
             Path filePath = Paths.get(uploadDir, "photos", filename);
             
             if (!Files.exists(filePath)) {
                 log.debug("Photo file not found: {}", filename);
-                return ResponseEntity.notFound().build();
+                response.setStatus(HttpStatus.NOT_FOUND.value());
+                return;
             }
-
-            byte[] fileContent = Files.readAllBytes(filePath);
-            String contentType = Files.probeContentType(filePath);
             
-            return ResponseEntity.ok()
-                    .header("Content-Type", contentType != null ? contentType : "application/octet-stream")
-                    .header("Cache-Control", "public, max-age=3600")
-                    .header("Access-Control-Allow-Origin", "*")
-                    .body(fileContent);
+            // size=thumb serves the thumbnail when the photo has one
+            if ("thumb".equalsIgnoreCase(size)) {
+                Path thumbnail = PhotoImageProcessor.thumbnailOf(filePath);
+                if (Files.exists(thumbnail)) {
+                    filePath = thumbnail;
+                }
+            }
+            
+            response.setHeader("Access-Control-Allow-Origin", "*");
+            FileTransferUtil.serve(filePath, null, PHOTO_CACHE_CONTROL, request, response);
 
         } catch (IOException e) {
             log.error("Error retrieving photo: {}", filename, e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            if (!response.isCommitted()) {
+                response.reset();
+                response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+            }
         }
     }
 
@@ -147,6 +177,7 @@ public class FileUploadController {
             }
 
             Files.delete(filePath);
+            Files.deleteIfExists(PhotoImageProcessor.thumbnailOf(filePath));
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
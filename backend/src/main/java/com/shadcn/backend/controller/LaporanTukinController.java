@@ -1,19 +1,27 @@
 package com.shadcn.backend.controller;
 
+import com.shadcn.backend.dto.LaporanTukinJobResponse;
 import com.shadcn.backend.dto.LaporanTukinRequest;
 import com.shadcn.backend.dto.LaporanTukinResponse;
 import com.shadcn.backend.model.Pegawai;
 import com.shadcn.backend.service.AuthService;
+import com.shadcn.backend.service.LaporanTukinFileCacheService;
+import com.shadcn.backend.service.LaporanTukinJobService;
 import com.shadcn.backend.service.LaporanTukinService;
+import com.shadcn.backend.util.FileTransferUtil;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -25,6 +33,7 @@ import java.util.Map;
 public class LaporanTukinController {
     
     private final LaporanTukinService laporanTukinService;
+    private final LaporanTukinJobService laporanTukinJobService;
     private final AuthService authService;
     
     @PostMapping("/generate")
@@ -55,14 +64,15 @@ public class LaporanTukinController {
                 return ResponseEntity.status(401).body(result);
             }
             
-            LaporanTukinResponse response = laporanTukinService.generateLaporanTukin(request, currentUser);
+            // Generation runs in the background; the client polls /jobs/{jobId} for progress
+            LaporanTukinJobResponse job = laporanTukinJobService.submit(request, currentUser);
             
             Map<String, Object> result = new HashMap<>();
             result.put("success", true);
-            result.put("message", "Laporan tunjangan kinerja berhasil digenerate");
-            result.put("data", response);
+            result.put("message", "Laporan tunjangan kinerja sedang digenerate");
+            result.put("data", job);
             
-            return ResponseEntity.ok(result);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(result);
         } catch (Exception e) {
             log.error("Error generating laporan tukin: ", e);
             
@@ -74,6 +84,29 @@ public class LaporanTukinController {
         }
     }
     
+    @GetMapping("/jobs/{jobId}")
+    @PreAuthorize("hasAnyRole('ADMIN', 'VERIFICATOR')")
+    public ResponseEntity<Map<String, Object>> getGenerateJob(@PathVariable String jobId) {
+        try {
+            LaporanTukinJobResponse job = laporanTukinJobService.getJob(jobId);
+            
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", true);
+            result.put("message", "Status job laporan berhasil diambil");
+            result.put("data", job);
+            
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            log.error("Error getting laporan tukin job {}: ", jobId, e);
+            
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", false);
+            result.put("message", e.getMessage());
+            
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(result);
+        }
+    }
+    
     @GetMapping("/histori")
     @PreAuthorize("hasAnyRole('ADMIN', 'VERIFICATOR')")
     public ResponseEntity<Map<String, Object>> getHistoriLaporan(
@@ -208,45 +241,49 @@ public class LaporanTukinController {
     
     @GetMapping("/{id}/download")
     @PreAuthorize("hasAnyRole('ADMIN', 'VERIFICATOR')")
-    public ResponseEntity<byte[]> downloadLaporanExcel(@PathVariable Long id) {
+    public void downloadLaporanExcel(@PathVariable Long id, HttpServletRequest request, HttpServletResponse response) {
         try {
-            byte[] excelData = laporanTukinService.generateExcelReport(id);
+            LaporanTukinFileCacheService.CachedReport report = laporanTukinService.getExcelReportFile(id);
+            if (new ServletWebRequest(request, response).checkNotModified(report.getEtag())) {
+                return;
+            }
             
             String filename = "Laporan_Tunjangan_Kinerja_" + id + ".xlsx";
             
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
-            headers.setContentDispositionFormData("attachment", filename);
-            headers.setContentLength(excelData.length);
+            response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "form-data; name=\"attachment\"; filename=\"" + filename + "\"");
             
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .body(excelData);
+            FileTransferUtil.transfer(report.getPath(), request, response);
         } catch (Exception e) {
             log.error("Error downloading laporan excel by id {}: ", id, e);
-            return ResponseEntity.badRequest().build();
+            if (!response.isCommitted()) {
+                response.reset();
+                response.setStatus(HttpStatus.BAD_REQUEST.value());
+            }
         }
     }
     
     @GetMapping("/{id}/download-pdf")
     @PreAuthorize("hasAnyRole('ADMIN', 'VERIFICATOR')")
-    public ResponseEntity<byte[]> downloadLaporanPDF(@PathVariable Long id) {
+    public void downloadLaporanPDF(@PathVariable Long id, HttpServletRequest request, HttpServletResponse response) {
         try {
-            byte[] pdfData = laporanTukinService.generatePDFReport(id);
+            LaporanTukinFileCacheService.CachedReport report = laporanTukinService.getPDFReportFile(id);
+            if (new ServletWebRequest(request, response).checkNotModified(report.getEtag())) {
+                return;
+            }
             
             String filename = "Laporan_Tunjangan_Kinerja_" + id + ".pdf";
             
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_PDF);
-            headers.setContentDispositionFormData("attachment", filename);
-            headers.setContentLength(pdfData.length);
+            response.setContentType(MediaType.APPLICATION_PDF_VALUE);
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "form-data; name=\"attachment\"; filename=\"" + filename + "\"");
             
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .body(pdfData);
+            FileTransferUtil.transfer(report.getPath(), request, response);
         } catch (Exception e) {
             log.error("Error downloading laporan PDF by id {}: ", id, e);
-            return ResponseEntity.badRequest().build();
+            if (!response.isCommitted()) {
+                response.reset();
+                response.setStatus(HttpStatus.BAD_REQUEST.value());
+            }
         }
     }
     
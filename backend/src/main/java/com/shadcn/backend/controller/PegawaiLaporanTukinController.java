@@ -5,6 +5,7 @@ import com.shadcn.backend.dto.LaporanTukinResponse;
 import com.shadcn.backend.model.Pegawai;
 import com.shadcn.backend.service.AuthService;
 import com.shadcn.backend.service.LaporanTukinService;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -257,9 +258,10 @@ public class PegawaiLaporanTukinController {
     
     @GetMapping("/{id}/download-pdf")
     @PreAuthorize("hasAnyRole('USER', 'ADMIN', 'VERIFICATOR')")
-    public ResponseEntity<byte[]> downloadLaporanPribadiPDF(
+    public void downloadLaporanPribadiPDF(
             @PathVariable Long id,
-            @RequestHeader(value = "Authorization", required = false) String authHeader) {
+            @RequestHeader(value = "Authorization", required = false) String authHeader,
+            HttpServletResponse response) {
         try {
             // Extract token from Authorization header
             String token = null;
@@ -274,18 +276,20 @@ public class PegawaiLaporanTukinController {
             }
             
             if (currentUser == null) {
-                return ResponseEntity.status(401).build();
+                response.setStatus(401);
+                return;
             }
             
-            byte[] pdfContent = laporanTukinService.downloadLaporanPribadiPDF(id, currentUser.getId());
+            response.setContentType(MediaType.APPLICATION_PDF_VALUE);
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"laporan-tukin-pribadi-" + id + ".pdf\"");
             
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"laporan-tukin-pribadi-" + id + ".pdf\"")
-                    .contentType(MediaType.APPLICATION_PDF)
-                    .body(pdfContent);
+            laporanTukinService.writeLaporanPribadiPDF(id, currentUser.getId(), response.getOutputStream());
         } catch (Exception e) {
             log.error("Error downloading laporan pribadi PDF: ", e);
-            return ResponseEntity.badRequest().build();
+            if (!response.isCommitted()) {
+                response.reset();
+                response.setStatus(400);
+            }
         }
     }
     
@@ -1,11 +1,12 @@
 package com.shadcn.backend.controller;
 
+import com.shadcn.backend.util.FileTransferUtil;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
-import org.springframework.http.HttpHeaders;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -105,70 +106,56 @@ public class TempFileController {
     }
 
     @GetMapping("/preview/{fileName}")
-    public ResponseEntity<Resource> previewTempFile(@PathVariable String fileName) {
+    public void previewTempFile(@PathVariable String fileName,
+                                HttpServletRequest request, HttpServletResponse response) {
         try {
             Path filePath = Paths.get(tempUploadDir).resolve(fileName);
-            Resource resource = new UrlResource(filePath.toUri());
 
-            if (!resource.exists() || !resource.isReadable()) {
+            if (!Files.isReadable(filePath)) {
                 log.warn("Temp file not found or not readable: {}", fileName);
-                return ResponseEntity.notFound().build();
-            }
-
-            // Determine content type
-            String contentType = Files.probeContentType(filePath);
-            if (contentType == null) {
-                contentType = MediaType.APPLICATION_OCTET_STREAM_VALUE;
+                response.setStatus(HttpStatus.NOT_FOUND.value());
+                return;
             }
 
             // For preview, use inline disposition for viewable files
             String disposition = "inline";
-            if (!isViewableFile(contentType)) {
+            if (!isViewableFile(FileTransferUtil.contentType(filePath))) {
                 disposition = "attachment";
             }
 
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .header(HttpHeaders.CONTENT_DISPOSITION, disposition + "; filename=\"" + getOriginalFileName(fileName) + "\"")
-                    .body(resource);
+            FileTransferUtil.serve(filePath, disposition + "; filename=\"" + getOriginalFileName(fileName) + "\"",
+                    CacheControl.noCache(), request, response);
 
-        } catch (IOException e) {
-            log.error("Error previewing temp file: {}", fileName, e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         } catch (Exception e) {
-            log.error("Unexpected error previewing temp file: {}", fileName, e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            log.error("Error previewing temp file: {}", fileName, e);
+            if (!response.isCommitted()) {
+                response.reset();
+                response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+            }
         }
     }
 
     @GetMapping("/download/{fileName}")
-    public ResponseEntity<Resource> downloadTempFile(@PathVariable String fileName) {
+    public void downloadTempFile(@PathVariable String fileName,
+                                 HttpServletRequest request, HttpServletResponse response) {
         try {
             Path filePath = Paths.get(tempUploadDir).resolve(fileName);
-            Resource resource = new UrlResource(filePath.toUri());
 
-            if (!resource.exists() || !resource.isReadable()) {
+            if (!Files.isReadable(filePath)) {
                 log.warn("Temp file not found or not readable: {}", fileName);
-                return ResponseEntity.notFound().build();
+                response.setStatus(HttpStatus.NOT_FOUND.value());
+                return;
             }
 
-            // Determine content type
-            String contentType = Files.probeContentType(filePath);
-            if (contentType == null) {
-                contentType = MediaType.APPLICATION_OCTET_STREAM_VALUE;
-            }
-
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + getOriginalFileName(fileName) + "\"")
-                    .body(resource);
+            FileTransferUtil.serve(filePath, "attachment; filename=\"" + getOriginalFileName(fileName) + "\"",
+                    CacheControl.noCache(), request, response);
 
-        } catch (IOException e) {
-            log.error("Error downloading temp file: {}", fileName, e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         } catch (Exception e) {
-            log.error("Unexpected error downloading temp file: {}", fileName, e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            log.error("Error downloading temp file: {}", fileName, e);
+            if (!response.isCommitted()) {
+                response.reset();
+                response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+            }
         }
     }
 
@@ -314,7 +301,7 @@ public class TempFileController {
                 "fileName", fileName,
                 "originalName", getOriginalFileName(fileName),
                 "size", Files.size(filePath),
-                "mimeType", Files.probeContentType(filePath),
+                "mimeType", FileTransferUtil.contentType(filePath),
                 "lastModified", Files.getLastModifiedTime(filePath).toString(),
                 "previewUrl", "/api/temp-files/preview/" + fileName,
                 "downloadUrl", "/api/temp-files/download/" + fileName
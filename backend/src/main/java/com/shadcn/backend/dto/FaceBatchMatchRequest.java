@@ -0,0 +1,24 @@
+package com.shadcn.backend.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FaceBatchMatchRequest {
+    private List<@NotNull(message = "Item batch tidak boleh null") @Valid Item> items;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+        private String clientId; // Id of the queued check-in on the kiosk, echoed back
+        private double[] faceDescriptor;
+    }
+}
@@ -0,0 +1,29 @@
+package com.shadcn.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class FaceBatchMatchResponse {
+    private List<Result> results; // Same order as the request items
+    private double threshold; // Global similarity threshold the matches were judged by
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Result {
+        private String clientId;
+        private boolean matched; // Best similarity reached the threshold
+        private Long faceRecognitionId;
+        private PegawaiResponse pegawai; // Only when matched
+        private double confidence; // Best similarity [0..1], also when not matched
+    }
+}
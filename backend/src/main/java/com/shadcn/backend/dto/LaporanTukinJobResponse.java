@@ -0,0 +1,29 @@
+package com.shadcn.backend.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LaporanTukinJobResponse {
+    
+    private String jobId;
+    private String status; // QUEUED, RUNNING, COMPLETED, FAILED
+    private Integer bulan;
+    private Integer tahun;
+    private Integer processed;
+    private Integer total;
+    private Integer progressPersen;
+    private Long laporanId;
+    private LaporanTukinResponse laporan;
+    private String errorMessage;
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+}
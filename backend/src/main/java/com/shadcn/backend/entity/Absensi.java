@@ -10,12 +10,17 @@ import java.time.LocalTime;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "absensi")
+@Table(name = "absensi", uniqueConstraints = {
+    @UniqueConstraint(name = Absensi.UNIQUE_PEGAWAI_TANGGAL_TYPE, columnNames = {"pegawai_id", "tanggal", "type"})
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Absensi {
     
+    // One masuk and one pulang per pegawai per day; createAbsensi relies on it to reject a second check-in
+    public static final String UNIQUE_PEGAWAI_TANGGAL_TYPE = "uk_absensi_pegawai_tanggal_type";
+    
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -26,9 +26,6 @@ public class FaceRecognition {
     private Pegawai pegawai;
     
     // Backward compatibility fields
-    @Column(name = "face_image_base64", columnDefinition = "LONGTEXT", nullable = true)
-    private String faceImageBase64;
-    
     @Column(name = "face_encoding", columnDefinition = "TEXT", nullable = true)
     private String faceEncoding; // JSON string of face descriptor array
     
@@ -40,10 +37,15 @@ public class FaceRecognition {
     
     // New MediaPipe 2024-2025 fields
     @Column(name = "face_descriptors", columnDefinition = "LONGTEXT", nullable = true)
-    private String faceDescriptors; // JSON array of all face descriptors from multiple positions
+    private String faceDescriptors; // Legacy JSON descriptors, moved to faceDescriptorData at startup
+    
+    @Column(name = "face_descriptor_data", columnDefinition = "MEDIUMBLOB", nullable = true)
+    private byte[] faceDescriptorData; // Descriptors from all positions, see FaceDescriptorCodec
+    
+    @Column(name = "face_prototype_data", columnDefinition = "BLOB", nullable = true)
+    private byte[] facePrototypeData; // Centroid and pose prototypes matched instead of every capture
     
-    @Column(name = "captured_images", columnDefinition = "LONGTEXT", nullable = true)
-    private String capturedImages; // JSON array of all captured images with positions
+    // The main image and captured images are kept in FaceRecognitionImage, loaded only for detail views
     
     @Column(name = "capture_steps", columnDefinition = "TEXT", nullable = true)
     private String captureSteps; // JSON array of capture step definitions
@@ -0,0 +1,37 @@
+package com.shadcn.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+/**
+ * Images of a face recognition, kept out of the face_recognition table so that listing
+ * and matching never read them. Shares the id of its face recognition.
+ */
+@Entity
+@Table(name = "face_recognition_image")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FaceRecognitionImage {
+    
+    @Id
+    @Column(name = "face_recognition_id")
+    private Long faceRecognitionId;
+    
+    @MapsId
+    @OneToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "face_recognition_id")
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private FaceRecognition faceRecognition;
+    
+    @Column(name = "face_image_base64", columnDefinition = "LONGTEXT", nullable = true)
+    private String faceImageBase64; // Main image, the first captured image
+    
+    @Column(name = "captured_images", columnDefinition = "LONGTEXT", nullable = true)
+    private String capturedImages; // JSON array of all captured images with positions
+}
@@ -0,0 +1,49 @@
+package com.shadcn.backend.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * Snapshot of one pegawai's computed tukin detail (including daily histori absensi)
+ * taken when a laporan is generated. The detail is stored as gzip-compressed JSON.
+ */
+@Entity
+@Table(name = "laporan_tukin_detail", indexes = {
+    @Index(name = "idx_laporan_tukin_detail_laporan", columnList = "laporan_id, urutan"),
+    @Index(name = "idx_laporan_tukin_detail_pegawai", columnList = "laporan_id, pegawai_id")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LaporanTukinDetail {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "laporan_id", nullable = false)
+    private Long laporanId;
+    
+    @Column(name = "pegawai_id", nullable = false)
+    private Long pegawaiId;
+    
+    // Position of the pegawai in the generated report
+    @Column(name = "urutan", nullable = false)
+    private Integer urutan;
+    
+    @Lob
+    @ToString.Exclude
+    @Column(name = "detail_data", nullable = false, columnDefinition = "LONGBLOB")
+    private byte[] detailData;
+    
+    @Column(name = "created_at", nullable = false)
+    @Builder.Default
+    private LocalDateTime createdAt = LocalDateTime.now();
+}
@@ -5,12 +5,14 @@ import com.shadcn.backend.model.Pegawai;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
 
 @Repository
 public interface AbsensiRepository extends JpaRepository<Absensi, Long> {
@@ -58,8 +60,17 @@ public interface AbsensiRepository extends JpaRepository<Absensi, Long> {
     // Find absensi by pegawai within date range (for stats)
     List<Absensi> findByPegawaiAndTanggalBetween(Pegawai pegawai, LocalDate startDate, LocalDate endDate);
     
-    // Check if pegawai already has absensi for specific date and type
-    Optional<Absensi> findByPegawaiAndTanggalAndType(Pegawai pegawai, LocalDate tanggal, Absensi.AbsensiType type);
+    // Find absensi for many pegawai within date range in one round trip (for laporan tukin).
+    // Shift times come from ShiftSchedules, so the shift is not fetched.
+    @Query("SELECT a FROM Absensi a " +
+           "WHERE a.pegawai.id IN :pegawaiIds AND a.tanggal BETWEEN :startDate AND :endDate " +
+           "ORDER BY a.id ASC")
+    List<Absensi> findByPegawaiIdInAndTanggalBetween(@Param("pegawaiIds") Collection<Long> pegawaiIds,
+                                                     @Param("startDate") LocalDate startDate,
+                                                     @Param("endDate") LocalDate endDate);
+    
+    // Check if pegawai already has absensi for specific date and type, used while the unique index is missing
+    boolean existsByPegawaiAndTanggalAndType(Pegawai pegawai, LocalDate tanggal, Absensi.AbsensiType type);
     
     // Count statistics
     @Query("SELECT COUNT(a) FROM Absensi a WHERE a.pegawai = :pegawai AND a.status = :status")
@@ -138,4 +149,17 @@ public interface AbsensiRepository extends JpaRepository<Absensi, Long> {
 
     // Delete methods
     long deleteByTanggalBetween(LocalDate startDate, LocalDate endDate);
+    
+    // Version of the absensi in a period, for caches of data derived from it
+    @Query("SELECT COUNT(a) AS jumlah, MAX(COALESCE(a.updatedAt, a.createdAt)) AS terakhirDiubah " +
+           "FROM Absensi a WHERE a.tanggal BETWEEN :startDate AND :endDate")
+    DataVersionProjection findDataVersionByTanggalBetween(@Param("startDate") LocalDate startDate,
+                                                          @Param("endDate") LocalDate endDate);
+    
+    // Set the photo of a saved absensi once its file is written; part of the check-in,
+    // so updatedAt and with it the data version of cached reports stay as they are
+    @Modifying
+    @Transactional
+    @Query("UPDATE Absensi a SET a.photoUrl = :photoUrl WHERE a.id = :id")
+    int updatePhotoUrl(@Param("id") Long id, @Param("photoUrl") String photoUrl);
 }
@@ -10,6 +10,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -50,6 +51,17 @@ public interface CutiRepository extends JpaRepository<Cuti, Long> {
         Pageable pageable
     );
     
+    // Find cuti for many pegawai by date range and status in one round trip (for laporan tukin)
+    @Query("SELECT c FROM Cuti c LEFT JOIN FETCH c.jenisCuti " +
+           "WHERE c.pegawai.id IN :pegawaiIds AND c.tanggalCuti BETWEEN :startDate AND :endDate " +
+           "AND c.statusApproval = :statusApproval ORDER BY c.createdAt DESC")
+    List<Cuti> findByPegawaiIdInAndTanggalCutiBetweenAndStatusApproval(
+        @Param("pegawaiIds") Collection<Long> pegawaiIds,
+        @Param("startDate") LocalDate startDate,
+        @Param("endDate") LocalDate endDate,
+        @Param("statusApproval") Cuti.StatusApproval statusApproval
+    );
+    
     // Count approved cuti for a pegawai in current year
     @Query("SELECT COUNT(c) FROM Cuti c WHERE c.pegawai = :pegawai AND c.statusApproval = 'DISETUJUI' AND YEAR(c.tanggalCuti) = :year")
     Long countApprovedCutiByPegawaiAndYear(@Param("pegawai") Pegawai pegawai, @Param("year") int year);
@@ -121,4 +133,10 @@ public interface CutiRepository extends JpaRepository<Cuti, Long> {
     // Daily statistics query - count employees on leave today
     @Query("SELECT COUNT(DISTINCT c.pegawai) FROM Cuti c WHERE c.tanggalCuti = :today AND c.statusApproval = 'DISETUJUI'")
     long countEmployeesOnLeaveToday(@Param("today") LocalDate today);
+    
+    // Version of the cuti in a period, for caches of data derived from it
+    @Query("SELECT COUNT(c) AS jumlah, MAX(COALESCE(c.updatedAt, c.createdAt)) AS terakhirDiubah " +
+           "FROM Cuti c WHERE c.tanggalCuti BETWEEN :startDate AND :endDate")
+    DataVersionProjection findDataVersionByTanggalCutiBetween(@Param("startDate") LocalDate startDate,
+                                                              @Param("endDate") LocalDate endDate);
 }
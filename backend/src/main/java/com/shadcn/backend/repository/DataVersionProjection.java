@@ -0,0 +1,12 @@
+package com.shadcn.backend.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Row count and latest modification time of a set of rows, used to detect whether
+ * data derived from them is still current.
+ */
+public interface DataVersionProjection {
+    Long getJumlah();
+    LocalDateTime getTerakhirDiubah();
+}
@@ -0,0 +1,13 @@
+package com.shadcn.backend.repository;
+
+/**
+ * Descriptors of a face recognition without its images, used to build the matching index.
+ */
+public interface FaceDescriptorProjection {
+    Long getId();
+    Long getPegawaiId();
+    byte[] getFacePrototypeData();
+    byte[] getFaceDescriptorData();
+    // Legacy JSON, only for rows not yet converted
+    String getFaceDescriptors();
+}
@@ -0,0 +1,9 @@
+package com.shadcn.backend.repository;
+
+import com.shadcn.backend.entity.FaceRecognitionImage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface FaceRecognitionImageRepository extends JpaRepository<FaceRecognitionImage, Long> {
+}
@@ -48,7 +48,18 @@ public interface FaceRecognitionRepository extends JpaRepository<FaceRecognition
     @Query("SELECT fr FROM FaceRecognition fr WHERE fr.status = 'ACTIVE' AND fr.faceEncoding IS NOT NULL")
     List<FaceRecognition> findAllActiveWithEncoding();
     
-    // Get pegawai IDs that already have face recognition
-    @Query("SELECT fr.pegawai.id FROM FaceRecognition fr")
-    List<Long> findAllPegawaiIdsWithFaceRecognition();
+    // Descriptors of all active face recognitions, without the image columns
+    @Query("SELECT fr.id AS id, fr.pegawai.id AS pegawaiId, fr.facePrototypeData AS facePrototypeData, " +
+           "fr.faceDescriptorData AS faceDescriptorData, " +
+           "fr.faceDescriptors AS faceDescriptors " +
+           "FROM FaceRecognition fr WHERE fr.status = 'ACTIVE' " +
+           "AND (fr.faceDescriptorData IS NOT NULL OR fr.faceDescriptors IS NOT NULL) " +
+           "ORDER BY fr.id ASC")
+    List<FaceDescriptorProjection> findActiveDescriptors();
+    
+    // Version of the active descriptors, to check whether a saved index is still current
+    @Query("SELECT COUNT(fr) AS jumlah, MAX(COALESCE(fr.updatedAt, fr.createdAt)) AS terakhirDiubah " +
+           "FROM FaceRecognition fr WHERE fr.status = 'ACTIVE' " +
+           "AND (fr.faceDescriptorData IS NOT NULL OR fr.faceDescriptors IS NOT NULL)")
+    DataVersionProjection findActiveDescriptorVersion();
 }
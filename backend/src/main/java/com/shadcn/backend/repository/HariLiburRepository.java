@@ -46,4 +46,10 @@ public interface HariLiburRepository extends JpaRepository<HariLibur, Long> {
     void deleteByTahunLiburAndIsNasionalFalseAndNamaLiburContaining(Integer tahun, String namaLibur);
     
     boolean existsByTanggalLiburAndIsNasionalTrueAndIsActiveTrue(LocalDate tanggalLibur);
+    
+    // Version of the holidays in a period, for caches of data derived from them
+    @Query("SELECT COUNT(h) AS jumlah, MAX(COALESCE(h.updatedAt, h.createdAt)) AS terakhirDiubah " +
+           "FROM HariLibur h WHERE h.tanggalLibur BETWEEN :startDate AND :endDate")
+    DataVersionProjection findDataVersionByTanggalLiburBetween(@Param("startDate") LocalDate startDate,
+                                                               @Param("endDate") LocalDate endDate);
 }
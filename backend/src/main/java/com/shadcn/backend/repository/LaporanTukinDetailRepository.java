@@ -0,0 +1,24 @@
+package com.shadcn.backend.repository;
+
+import com.shadcn.backend.model.LaporanTukinDetail;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface LaporanTukinDetailRepository extends JpaRepository<LaporanTukinDetail, Long> {
+    
+    List<LaporanTukinDetail> findByLaporanIdOrderByUrutanAsc(Long laporanId);
+    
+    List<LaporanTukinDetail> findByLaporanIdAndPegawaiIdOrderByUrutanAsc(Long laporanId, Long pegawaiId);
+    
+    boolean existsByLaporanId(Long laporanId);
+    
+    @Modifying
+    @Query("DELETE FROM LaporanTukinDetail d WHERE d.laporanId = :laporanId")
+    void deleteByLaporanId(@Param("laporanId") Long laporanId);
+}
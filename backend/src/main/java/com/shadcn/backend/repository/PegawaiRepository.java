@@ -41,6 +41,10 @@ public interface PegawaiRepository extends JpaRepository<Pegawai, Long> {
     
     List<Pegawai> findByIsActive(Boolean isActive);
     
+    // Same as findByIsActive but with jabatan and lokasi loaded, for report generation
+    @Query("SELECT p FROM Pegawai p LEFT JOIN FETCH p.jabatan LEFT JOIN FETCH p.lokasi WHERE p.isActive = :isActive")
+    List<Pegawai> findByIsActiveWithJabatanAndLokasi(@Param("isActive") Boolean isActive);
+    
     List<Pegawai> findByJabatan_Nama(String jabatanNama);
     
     Long countByIsActive(Boolean isActive);
@@ -89,6 +93,28 @@ public interface PegawaiRepository extends JpaRepository<Pegawai, Long> {
                                         @Param("role") String role,
                                         Pageable pageable);
     
+    // Pegawai without any face recognition, as an anti-join on face_recognition.pegawai_id
+    @Query(value = "SELECT p.id AS id, p.namaLengkap AS namaLengkap, p.nip AS nip, p.email AS email, " +
+                   "p.noTelp AS noTelp, j.id AS jabatanId, j.nama AS jabatanNama, p.isActive AS isActive " +
+                   "FROM Pegawai p LEFT JOIN p.jabatan j WHERE " +
+                   "NOT EXISTS (SELECT 1 FROM FaceRecognition fr WHERE fr.pegawai = p) AND " +
+                   "(:search IS NULL OR :search = '' OR " +
+                   " LOWER(p.namaLengkap) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
+                   " LOWER(p.nip) LIKE LOWER(CONCAT('%', :search, '%'))) AND " +
+                   "(:lokasiId IS NULL OR p.lokasi.id = :lokasiId) AND " +
+                   "(:jabatanId IS NULL OR j.id = :jabatanId)",
+           countQuery = "SELECT COUNT(p) FROM Pegawai p WHERE " +
+                   "NOT EXISTS (SELECT 1 FROM FaceRecognition fr WHERE fr.pegawai = p) AND " +
+                   "(:search IS NULL OR :search = '' OR " +
+                   " LOWER(p.namaLengkap) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
+                   " LOWER(p.nip) LIKE LOWER(CONCAT('%', :search, '%'))) AND " +
+                   "(:lokasiId IS NULL OR p.lokasi.id = :lokasiId) AND " +
+                   "(:jabatanId IS NULL OR p.jabatan.id = :jabatanId)")
+    Page<PegawaiWithoutFaceProjection> findWithoutFaceRecognition(@Param("search") String search,
+                                                                  @Param("lokasiId") Long lokasiId,
+                                                                  @Param("jabatanId") Long jabatanId,
+                                                                  Pageable pageable);
+    
     // Monthly statistics for dashboard
     @Query("SELECT COUNT(p) FROM Pegawai p WHERE YEAR(p.createdAt) = :year AND MONTH(p.createdAt) = :month")
     Long countByCreatedAtYearAndMonth(@Param("year") int year, @Param("month") int month);
@@ -0,0 +1,15 @@
+package com.shadcn.backend.repository;
+
+/**
+ * The columns of the pegawai-without-face report, read without loading Pegawai entities.
+ */
+public interface PegawaiWithoutFaceProjection {
+    Long getId();
+    String getNamaLengkap();
+    String getNip();
+    String getEmail();
+    String getNoTelp();
+    Long getJabatanId();
+    String getJabatanNama();
+    Boolean getIsActive();
+}
@@ -7,6 +7,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -20,6 +21,13 @@ public interface PemotonganRepository extends JpaRepository<Pemotongan, Long> {
     List<Pemotongan> findByBulanPemotonganAndTahunPemotonganAndIsActiveTrueOrderByCreatedAtDesc(
         Integer bulan, Integer tahun);
     
+    @Query("SELECT p FROM Pemotongan p WHERE p.pegawai.id IN :pegawaiIds AND " +
+           "p.bulanPemotongan = :bulan AND p.tahunPemotongan = :tahun AND p.isActive = true " +
+           "ORDER BY p.id ASC")
+    List<Pemotongan> findActiveByPegawaiIdInAndPeriode(@Param("pegawaiIds") Collection<Long> pegawaiIds,
+                                                       @Param("bulan") Integer bulan,
+                                                       @Param("tahun") Integer tahun);
+    
     List<Pemotongan> findByPegawaiIdAndIsActiveTrueOrderByTahunPemotonganDescBulanPemotonganDesc(
         Long pegawaiId);
     
@@ -38,4 +46,9 @@ public interface PemotonganRepository extends JpaRepository<Pemotongan, Long> {
     
     boolean existsByPegawaiIdAndBulanPemotonganAndTahunPemotonganAndIsActiveTrue(
         Long pegawaiId, Integer bulan, Integer tahun);
+    
+    // Version of the pemotongan in a period, for caches of data derived from it
+    @Query("SELECT COUNT(p) AS jumlah, MAX(COALESCE(p.updatedAt, p.createdAt)) AS terakhirDiubah " +
+           "FROM Pemotongan p WHERE p.bulanPemotongan = :bulan AND p.tahunPemotongan = :tahun")
+    DataVersionProjection findDataVersionByPeriode(@Param("bulan") Integer bulan, @Param("tahun") Integer tahun);
 }
@@ -1,13 +1,12 @@
 package com.shadcn.backend.seeder;
 
 import com.shadcn.backend.entity.Absensi;
-import com.shadcn.backend.entity.PemotonganAbsen;
 import com.shadcn.backend.entity.Shift;
 import com.shadcn.backend.model.Pegawai;
 import com.shadcn.backend.repository.AbsensiRepository;
 import com.shadcn.backend.repository.PegawaiRepository;
-import com.shadcn.backend.repository.PemotonganAbsenRepository;
 import com.shadcn.backend.repository.ShiftRepository;
+import com.shadcn.backend.service.PemotonganAbsenRules;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -20,9 +19,7 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.List;
-import java.util.Map;
 import java.util.Random;
-import java.util.stream.Collectors;
 
 @Component
 @Profile("local")
@@ -34,7 +31,7 @@ public class AbsensiSeptember2025Seeder implements CommandLineRunner {
     private final AbsensiRepository absensiRepository;
     private final PegawaiRepository pegawaiRepository;
     private final ShiftRepository shiftRepository;
-    private final PemotonganAbsenRepository pemotonganAbsenRepository;
+    private final PemotonganAbsenRules pemotonganAbsenRules;
     
     @Value("${app.seeder.insert-dummy-data:no}")
     private String insertDummyData;
@@ -245,23 +242,7 @@ public class AbsensiSeptember2025Seeder implements CommandLineRunner {
      * @return Penalty percentage from database or fallback value
      */
     private BigDecimal getPenaltyPercentageForLateness(int lateMinutes) {
-        // Get penalty rules from database
-        List<PemotonganAbsen> pemotonganRules = pemotonganAbsenRepository.findAllActiveOrderByKode();
-        Map<String, BigDecimal> rulePercentages = pemotonganRules.stream()
-                .collect(Collectors.toMap(
-                        PemotonganAbsen::getKode,
-                        PemotonganAbsen::getPersentase
-                ));
-        
-        // Apply same logic as LaporanTukinService
-        if (lateMinutes <= 30) {
-            return rulePercentages.getOrDefault("TL0", BigDecimal.valueOf(0.00));
-        } else if (lateMinutes <= 60) {
-            return rulePercentages.getOrDefault("TL1", BigDecimal.valueOf(0.50));
-        } else if (lateMinutes <= 90) {
-            return rulePercentages.getOrDefault("TL2", BigDecimal.valueOf(1.25));
-        } else {
-            return rulePercentages.getOrDefault("TL3", BigDecimal.valueOf(2.50));
-        }
+        // Same compiled rules as LaporanTukinService
+        return pemotonganAbsenRules.current().persentaseTerlambat(lateMinutes);
     }
 }
@@ -0,0 +1,174 @@
+package com.shadcn.backend.seeder;
+
+import com.shadcn.backend.entity.Absensi;
+import com.shadcn.backend.service.AbsensiService;
+import com.shadcn.backend.service.PhotoImageProcessor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Date;
+import java.sql.Time;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Creates the unique index on absensi (pegawai_id, tanggal, type) that createAbsensi
+ * relies on to reject a second check-in, for databases where ddl-auto could not add it
+ * because of existing duplicates. Such duplicates come from concurrent submissions of the
+ * same check-in.
+ * <p>
+ * Absensi rows are payroll input, so by default duplicates are only reported and the index
+ * is not created. With {@code app.seeder.absensi-unique-index.delete-duplicates=true} the
+ * earliest MASUK and the latest PULANG of each group are kept, so lateness and leaving-early
+ * deductions stay judged on the first check-in and the last check-out. The others are deleted
+ * in one transaction, their photos after it, and the index is created right after.
+ * Until the index exists, AbsensiService looks up an existing check-in before inserting.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@Order(2) // Run before the seeders that insert absensi
+public class AbsensiUniqueIndexSeeder implements CommandLineRunner {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final AbsensiService absensiService;
+
+    @Value("${app.seeder.absensi-unique-index.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.seeder.absensi-unique-index.delete-duplicates:false}")
+    private boolean deleteDuplicates;
+
+    @Value("${app.upload.dir:uploads}")
+    private String uploadDir;
+
+    @Override
+    public void run(String... args) {
+        if (hasIndex("absensi", Absensi.UNIQUE_PEGAWAI_TANGGAL_TYPE)) {
+            absensiService.setUniqueIndexPresent(true);
+            return;
+        }
+        if (!enabled) {
+            log.warn("Absensi unique index migration is disabled and the index is missing; " +
+                    "check-ins are looked up before insert to reject duplicates.");
+            return;
+        }
+
+        List<DuplicateRow> rows = findDuplicates();
+        if (!rows.isEmpty()) {
+            List<DuplicateRow> removed = reportDuplicates(rows);
+            if (!deleteDuplicates) {
+                log.warn("Unique index {} not created: {} absensi rows are duplicates. Check-ins are looked up " +
+                        "before insert until they are resolved by hand or app.seeder.absensi-unique-index.delete-duplicates=true " +
+                        "deletes them", Absensi.UNIQUE_PEGAWAI_TANGGAL_TYPE, removed.size());
+                return;
+            }
+            deleteRows(removed);
+        }
+
+        // MySQL commits DDL on its own, so the index follows the delete transaction directly;
+        // a duplicate checked in between fails it, and the next startup reports that one
+        try {
+            jdbcTemplate.execute("CREATE UNIQUE INDEX " + Absensi.UNIQUE_PEGAWAI_TANGGAL_TYPE +
+                    " ON absensi (pegawai_id, tanggal, type)");
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Unique index {} not created, a duplicate absensi was inserted meanwhile: {}",
+                    Absensi.UNIQUE_PEGAWAI_TANGGAL_TYPE, e.getMostSpecificCause().getMessage());
+            return;
+        }
+        absensiService.setUniqueIndexPresent(true);
+        log.info("Created unique index {} on absensi", Absensi.UNIQUE_PEGAWAI_TANGGAL_TYPE);
+    }
+
+    private List<DuplicateRow> findDuplicates() {
+        return jdbcTemplate.query(
+                "SELECT a.id, a.pegawai_id, a.tanggal, a.type, a.waktu, a.photo_url FROM absensi a " +
+                "JOIN (SELECT pegawai_id, tanggal, type FROM absensi GROUP BY pegawai_id, tanggal, type " +
+                "HAVING COUNT(*) > 1) d ON a.pegawai_id = d.pegawai_id AND a.tanggal = d.tanggal AND a.type = d.type " +
+                "ORDER BY a.pegawai_id, a.tanggal, a.type, a.waktu, a.id",
+                (rs, rowNum) -> new DuplicateRow(rs.getLong("id"), rs.getLong("pegawai_id"), rs.getDate("tanggal"),
+                        rs.getString("type"), rs.getTime("waktu"), rs.getString("photo_url")));
+    }
+
+    /**
+     * Logs each duplicate group with the row that would be kept and returns the others.
+     */
+    private List<DuplicateRow> reportDuplicates(List<DuplicateRow> rows) {
+        Map<String, List<DuplicateRow>> groups = new LinkedHashMap<>();
+        for (DuplicateRow row : rows) {
+            groups.computeIfAbsent(row.pegawaiId() + "/" + row.tanggal() + "/" + row.type(), key -> new ArrayList<>())
+                    .add(row);
+        }
+        List<DuplicateRow> removed = new ArrayList<>();
+        groups.forEach((key, group) -> {
+            // Ordered by waktu: the first check-in counts for MASUK, the last check-out for PULANG
+            DuplicateRow kept = Absensi.AbsensiType.PULANG.name().equals(group.get(0).type())
+                    ? group.get(group.size() - 1)
+                    : group.get(0);
+            List<String> others = new ArrayList<>();
+            for (DuplicateRow row : group) {
+                if (row != kept) {
+                    removed.add(row);
+                    others.add(row.id() + "@" + row.waktu());
+                }
+            }
+            log.warn("Absensi ganda pegawai {} tanggal {} {}: dipertahankan {}@{}, ganda {}",
+                    kept.pegawaiId(), kept.tanggal(), kept.type(), kept.id(), kept.waktu(), others);
+        });
+        return removed;
+    }
+
+    private void deleteRows(List<DuplicateRow> removed) {
+        List<Long> ids = removed.stream().map(DuplicateRow::id).toList();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+                List<Long> batch = ids.subList(from, Math.min(ids.size(), from + BATCH_SIZE));
+                jdbcTemplate.update("DELETE FROM absensi WHERE id IN (" +
+                        String.join(",", batch.stream().map(String::valueOf).toList()) + ")");
+            }
+        });
+        log.warn("Menghapus {} absensi ganda sebelum membuat unique index: {}", ids.size(), ids);
+
+        // Photos of the deleted rows are referenced nowhere else
+        for (DuplicateRow row : removed) {
+            if (row.photoUrl() == null || row.photoUrl().isBlank()) {
+                continue;
+            }
+            Path photo = Paths.get(uploadDir).resolve(row.photoUrl()).normalize();
+            try {
+                Files.deleteIfExists(photo);
+                Files.deleteIfExists(PhotoImageProcessor.thumbnailOf(photo));
+            } catch (IOException e) {
+                log.warn("Could not delete photo {} of deleted absensi {}: {}", row.photoUrl(), row.id(), e.getMessage());
+            }
+        }
+    }
+
+    private boolean hasIndex(String table, String index) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.statistics " +
+                "WHERE table_schema = DATABASE() AND table_name = ? AND index_name = ?",
+                Integer.class, table, index);
+        return count != null && count > 0;
+    }
+
+    private record DuplicateRow(long id, long pegawaiId, Date tanggal, String type, Time waktu, String photoUrl) {
+    }
+}
@@ -0,0 +1,196 @@
+package com.shadcn.backend.seeder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shadcn.backend.service.FaceEmbeddingIndex;
+import com.shadcn.backend.service.FaceEnrollmentProcessor;
+import com.shadcn.backend.service.FaceRecognitionService;
+import com.shadcn.backend.util.FaceDescriptorCodec;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves face recognitions saved before the binary descriptor column and the image table
+ * to the new storage: JSON descriptors become face_descriptor_data, and the image columns
+ * of face_recognition move to face_recognition_image. Each row is converted in its own
+ * transaction and rows already converted are skipped, so an interrupted run resumes.
+ * Also computes the enrollment prototypes of rows without them, or clears all prototypes
+ * when {@code app.face.enrollment.prototypes-enabled} is off.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@Order(6) // Run after the master data seeders
+public class FaceRecognitionStorageSeeder implements CommandLineRunner {
+
+    private static final int BATCH_SIZE = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final FaceEnrollmentProcessor faceEnrollmentProcessor;
+    private final FaceEmbeddingIndex faceEmbeddingIndex;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Value("${app.seeder.face-recognition-storage.enabled:true}")
+    private boolean enabled;
+
+    @Override
+    public void run(String... args) throws Exception {
+        if (!enabled) {
+            log.info("Face recognition storage migration is disabled. Skipping.");
+            return;
+        }
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        int descriptors = migrateDescriptors(transaction);
+        int images = hasColumn("face_recognition", "captured_images") ? migrateImages(transaction) : 0;
+        int prototypes = faceEnrollmentProcessor.isEnabled()
+                ? computePrototypes(transaction)
+                : jdbcTemplate.update("UPDATE face_recognition SET face_prototype_data = NULL WHERE face_prototype_data IS NOT NULL");
+        if (prototypes > 0) {
+            // The match vectors changed without a new updated_at, so a saved index is stale
+            faceEmbeddingIndex.reloadFromDatabase();
+        }
+        if (descriptors > 0 || images > 0 || prototypes > 0) {
+            log.info("✅ Face recognition storage migrated: {} descriptor sets, {} image sets, {} prototype sets",
+                    descriptors, images, prototypes);
+        }
+    }
+
+    private int computePrototypes(TransactionTemplate transaction) {
+        int computed = 0;
+        long lastId = 0;
+        while (true) {
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                    "SELECT id, face_descriptor_data FROM face_recognition " +
+                    "WHERE id > ? AND face_prototype_data IS NULL AND face_descriptor_data IS NOT NULL " +
+                    "ORDER BY id LIMIT " + BATCH_SIZE, lastId);
+            if (rows.isEmpty()) {
+                return computed;
+            }
+            for (Map<String, Object> row : rows) {
+                long id = ((Number) row.get("id")).longValue();
+                lastId = id;
+                List<FaceDescriptorCodec.Descriptor> prototypes;
+                try {
+                    prototypes = faceEnrollmentProcessor.prototypes(
+                            FaceDescriptorCodec.decode((byte[]) row.get("face_descriptor_data")));
+                } catch (IllegalArgumentException e) {
+                    log.warn("Face recognition {}: prototypes tidak dapat dihitung: {}", id, e.getMessage());
+                    continue;
+                }
+                if (prototypes.isEmpty()) {
+                    continue;
+                }
+                byte[] data = FaceDescriptorCodec.encode(prototypes);
+                transaction.executeWithoutResult(status -> jdbcTemplate.update(
+                        "UPDATE face_recognition SET face_prototype_data = ? WHERE id = ? AND face_prototype_data IS NULL",
+                        data, id));
+                computed++;
+            }
+        }
+    }
+
+    private int migrateDescriptors(TransactionTemplate transaction) {
+        int migrated = 0;
+        long lastId = 0;
+        while (true) {
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                    "SELECT id, face_descriptors FROM face_recognition " +
+                    "WHERE id > ? AND face_descriptor_data IS NULL AND face_descriptors IS NOT NULL " +
+                    "ORDER BY id LIMIT " + BATCH_SIZE, lastId);
+            if (rows.isEmpty()) {
+                return migrated;
+            }
+            for (Map<String, Object> row : rows) {
+                long id = ((Number) row.get("id")).longValue();
+                lastId = id;
+                byte[] data = encode(id, (String) row.get("face_descriptors"));
+                if (data == null) {
+                    continue;
+                }
+                transaction.executeWithoutResult(status -> jdbcTemplate.update(
+                        "UPDATE face_recognition SET face_descriptor_data = ?, face_descriptors = NULL " +
+                        "WHERE id = ? AND face_descriptor_data IS NULL", data, id));
+                migrated++;
+            }
+        }
+    }
+
+    private int migrateImages(TransactionTemplate transaction) {
+        int migrated = 0;
+        long lastId = 0;
+        while (true) {
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                    "SELECT id, face_image_base64, captured_images FROM face_recognition " +
+                    "WHERE id > ? AND (face_image_base64 IS NOT NULL OR captured_images IS NOT NULL) " +
+                    "ORDER BY id LIMIT " + BATCH_SIZE, lastId);
+            if (rows.isEmpty()) {
+                return migrated;
+            }
+            for (Map<String, Object> row : rows) {
+                long id = ((Number) row.get("id")).longValue();
+                lastId = id;
+                transaction.executeWithoutResult(status -> {
+                    // Images saved through the new table win over the old columns
+                    jdbcTemplate.update(
+                            "INSERT IGNORE INTO face_recognition_image (face_recognition_id, face_image_base64, captured_images) " +
+                            "VALUES (?, ?, ?)", id, row.get("face_image_base64"), row.get("captured_images"));
+                    jdbcTemplate.update(
+                            "UPDATE face_recognition SET face_image_base64 = NULL, captured_images = NULL WHERE id = ?", id);
+                });
+                migrated++;
+            }
+        }
+    }
+
+    // Binary descriptors for the JSON of one row, or null when it cannot be parsed
+    private byte[] encode(long id, String json) {
+        try {
+            List<FaceDescriptorCodec.Descriptor> descriptors = new ArrayList<>();
+            try {
+                for (FaceRecognitionService.FaceDescriptorDto dto :
+                        objectMapper.readValue(json, FaceRecognitionService.FaceDescriptorDto[].class)) {
+                    if (dto.getDescriptor() != null) {
+                        descriptors.add(new FaceDescriptorCodec.Descriptor(dto.getPosition(), dto.getStepId(),
+                                dto.getLandmarks(), toFloat(dto.getDescriptor())));
+                    }
+                }
+            } catch (Exception e) {
+                // Legacy array of arrays
+                for (double[] descriptor : objectMapper.readValue(json, double[][].class)) {
+                    descriptors.add(new FaceDescriptorCodec.Descriptor(null, null, null, toFloat(descriptor)));
+                }
+            }
+            return FaceDescriptorCodec.encode(descriptors);
+        } catch (Exception e) {
+            log.warn("Face recognition {}: descriptors tidak dapat dikonversi, JSON dipertahankan: {}", id, e.getMessage());
+            return null;
+        }
+    }
+
+    private boolean hasColumn(String table, String column) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.columns " +
+                "WHERE table_schema = DATABASE() AND table_name = ? AND column_name = ?",
+                Integer.class, table, column);
+        return count != null && count > 0;
+    }
+
+    private static float[] toFloat(double[] values) {
+        float[] result = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (float) values[i];
+        }
+        return result;
+    }
+}
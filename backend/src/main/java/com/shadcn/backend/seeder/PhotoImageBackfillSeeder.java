@@ -0,0 +1,67 @@
+package com.shadcn.backend.seeder;
+
+import com.shadcn.backend.config.props.PhotoImageProperties;
+import com.shadcn.backend.service.PhotoImageProcessor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Recompresses photos stored before the image processing stage and writes their
+ * thumbnails. A photo with a thumbnail counts as processed, so an interrupted run resumes
+ * and later startups only look at the directory. Runs on a background thread so startup
+ * does not wait for it.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@Order(7)
+public class PhotoImageBackfillSeeder implements CommandLineRunner {
+
+    private final PhotoImageProcessor photoImageProcessor;
+    private final PhotoImageProperties properties;
+
+    @Value("${app.upload.dir:uploads}")
+    private String uploadDir;
+
+    @Override
+    public void run(String... args) {
+        if (!photoImageProcessor.isEnabled() || !Boolean.TRUE.equals(properties.getBackfillEnabled())) {
+            log.info("Photo image backfill is disabled. Skipping.");
+            return;
+        }
+        Path photos = Paths.get(uploadDir, "photos");
+        if (!Files.isDirectory(photos)) {
+            return;
+        }
+        Thread.ofVirtual().name("photo-backfill").start(() -> backfill(photos));
+    }
+
+    private void backfill(Path photos) {
+        List<Path> pending;
+        try (Stream<Path> files = Files.list(photos)) {
+            pending = files.filter(Files::isRegularFile)
+                    .filter(file -> !Files.exists(PhotoImageProcessor.thumbnailOf(file)))
+                    .toList();
+        } catch (IOException e) {
+            log.warn("Could not list photos for backfill: {}", e.getMessage());
+            return;
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        log.info("Processing {} photos stored before the image processing stage", pending.size());
+        pending.forEach(photoImageProcessor::backfill);
+        log.info("Photo image backfill finished");
+    }
+}
@@ -0,0 +1,144 @@
+package com.shadcn.backend.service;
+
+import com.shadcn.backend.config.props.AbsensiPhotoProperties;
+import com.shadcn.backend.repository.AbsensiRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.file.Path;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Writes check-in photos to disk and sets them on the saved absensi, so a check-in
+ * returns once its row is inserted. A Base64 photo is queued as is on the bounded
+ * absensiPhotoExecutor while the Base64 text already queued stays under
+ * {@code max-queued-bytes}; past that the request thread decodes it into a staging file
+ * and only the path is queued. An uploaded part is always moved to a staging file first.
+ * When the queue is full the request thread stores its own photo, which slows check-ins
+ * down to the disk instead of holding more photos in memory.
+ * <p>
+ * A photo that cannot be written is logged and the absensi keeps no photo, as before.
+ */
+@Service
+@Slf4j
+public class AbsensiPhotoWriter {
+
+    private final AbsensiRepository absensiRepository;
+    private final PhotoUploadService photoUploadService;
+    private final AbsensiPhotoProperties properties;
+    private final ThreadPoolTaskExecutor absensiPhotoExecutor;
+    // Base64 characters, one byte each, of the photos queued without a staging file
+    private final Semaphore queuedBase64Bytes;
+
+    public AbsensiPhotoWriter(AbsensiRepository absensiRepository,
+                              PhotoUploadService photoUploadService,
+                              AbsensiPhotoProperties properties,
+                              @Qualifier("absensiPhotoExecutor") ThreadPoolTaskExecutor absensiPhotoExecutor,
+                              MeterRegistry meterRegistry) {
+        this.absensiRepository = absensiRepository;
+        this.photoUploadService = photoUploadService;
+        this.properties = properties;
+        this.absensiPhotoExecutor = absensiPhotoExecutor;
+        this.queuedBase64Bytes = new Semaphore(properties.getMaxQueuedBytes());
+        Gauge.builder("absensi.photo.queue", absensiPhotoExecutor, ThreadPoolTaskExecutor::getQueueSize)
+                .description("Check-in photos waiting to be written")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Writes the Base64 photo of a saved absensi once the surrounding transaction, if any,
+     * has committed, so the writer never updates a row that is not visible yet.
+     */
+    public void write(Long absensiId, String photoBase64) {
+        afterCommit(() -> {
+            int size = photoBase64.length();
+            if (Boolean.TRUE.equals(properties.getAsyncEnabled()) && queuedBase64Bytes.tryAcquire(size)) {
+                try {
+                    absensiPhotoExecutor.execute(() -> {
+                        try {
+                            Path staged = stage(absensiId, photoBase64);
+                            if (staged != null) {
+                                store(absensiId, staged);
+                            }
+                        } finally {
+                            queuedBase64Bytes.release(size);
+                        }
+                    });
+                    return;
+                } catch (TaskRejectedException e) {
+                    queuedBase64Bytes.release(size);
+                }
+            }
+            // Over the byte budget or queue full: decode here so the queue holds a path, not the text
+            Path staged = stage(absensiId, photoBase64);
+            if (staged != null) {
+                submit(absensiId, staged);
+            }
+        });
+    }
+
+    private Path stage(Long absensiId, String photoBase64) {
+        try {
+            return photoUploadService.stagePhotoFromBase64(photoBase64);
+        } catch (Exception e) {
+            log.warn("Failed to upload photo for absensi {}: {}", absensiId, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes a photo already staged with {@link PhotoUploadService#stageMultipartPhoto} once
+     * the surrounding transaction, if any, has committed.
+     */
+    public void write(Long absensiId, Path stagedPhoto) {
+        afterCommit(() -> submit(absensiId, stagedPhoto));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private void submit(Long absensiId, Path staged) {
+        if (!Boolean.TRUE.equals(properties.getAsyncEnabled())) {
+            store(absensiId, staged);
+            return;
+        }
+        try {
+            absensiPhotoExecutor.execute(() -> store(absensiId, staged));
+        } catch (TaskRejectedException e) {
+            log.debug("Photo queue full, writing photo of absensi {} on the request thread", absensiId);
+            store(absensiId, staged);
+        }
+    }
+
+    private void store(Long absensiId, Path staged) {
+        try {
+            String photoUrl = photoUploadService.saveStagedPhoto(staged, "photos");
+            updatePhotoUrl(absensiId, photoUrl);
+        } catch (Exception e) {
+            log.warn("Failed to upload photo for absensi {}: {}", absensiId, e.getMessage());
+        }
+    }
+
+    private void updatePhotoUrl(Long absensiId, String photoUrl) {
+        if (absensiRepository.updatePhotoUrl(absensiId, photoUrl) == 0) {
+            log.warn("Absensi {} no longer exists, photo {} is not referenced", absensiId, photoUrl);
+        }
+    }
+}
@@ -6,27 +6,30 @@ import com.shadcn.backend.dto.AbsensiStats;
 import com.shadcn.backend.dto.PagedResponse;
 import com.shadcn.backend.dto.ShiftResponse;
 import com.shadcn.backend.entity.Absensi;
-import com.shadcn.backend.entity.PemotonganAbsen;
 import com.shadcn.backend.entity.Shift;
 import com.shadcn.backend.entity.Absensi.AbsensiStatus;
 import com.shadcn.backend.model.Pegawai;
 import com.shadcn.backend.repository.AbsensiRepository;
-import com.shadcn.backend.repository.PemotonganAbsenRepository;
 import com.shadcn.backend.repository.ShiftRepository;
 import com.shadcn.backend.repository.PegawaiRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.util.stream.Collectors;
-import java.util.Base64;
 import java.util.List;
 import java.util.Optional;
 import java.util.*;
@@ -37,11 +40,16 @@ import java.util.*;
 public class AbsensiService {
     
     private final AbsensiRepository absensiRepository;
-    private final PemotonganAbsenRepository pemotonganAbsenRepository;
+    private final PemotonganAbsenRules pemotonganAbsenRules;
     private final ShiftRepository shiftRepository;
+    private final ShiftSchedules shiftSchedules;
     private final PegawaiRepository pegawaiRepository;
+    private final AbsensiPhotoWriter absensiPhotoWriter;
     private final PhotoUploadService photoUploadService;
     
+    // Set by AbsensiUniqueIndexSeeder once the (pegawai, tanggal, type) unique index exists
+    private volatile boolean uniqueIndexPresent;
+    
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss");
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
     
@@ -146,94 +154,148 @@ public class AbsensiService {
         return locationInfo;
     }
     
+    /**
+     * Record whether the absensi unique index exists. Until it does, createAbsensi looks up
+     * an existing check-in before inserting instead of relying on the index alone.
+     */
+    public void setUniqueIndexPresent(boolean uniqueIndexPresent) {
+        this.uniqueIndexPresent = uniqueIndexPresent;
+    }
+    
     public AbsensiResponse createAbsensi(AbsensiRequest request) {
         try {
-            // Validate pegawai
-            Pegawai pegawai = pegawaiRepository.findById(request.getPegawaiId())
-                    .orElseThrow(() -> new RuntimeException("Pegawai tidak ditemukan"));
-            
-            // Validate shift
-            Shift shift = shiftRepository.findById(request.getShiftId())
-                    .orElseThrow(() -> new RuntimeException("Shift tidak ditemukan"));
+            Absensi savedAbsensi = insertAbsensi(request);
             
-            // Parse absensi type
-            Absensi.AbsensiType type = parseAbsensiType(request.getType());
-            
-            // Check if already has absensi for this date and type
-            LocalDate today = LocalDate.now();
-            Optional<Absensi> existingAbsensi = absensiRepository
-                    .findByPegawaiAndTanggalAndType(pegawai, today, type);
-            
-            if (existingAbsensi.isPresent()) {
-                throw new RuntimeException("Anda sudah melakukan absensi " + request.getType() + " hari ini");
+            // Photo is written off the request thread and set on the saved absensi afterwards
+            if (request.getPhotoBase64() != null && !request.getPhotoBase64().isEmpty()) {
+                absensiPhotoWriter.write(savedAbsensi.getId(), request.getPhotoBase64());
             }
             
-            // Validate location based on shift lock
-            validateLocationForAbsensi(request, pegawai, shift);
-            
-            // Calculate distance based on shift location lock
-            double distance = 0.0;
-            if (shift.getLockLokasi() != null && shift.getLockLokasi().equals("HARUS_DI_KANTOR")) {
-                // For locked location shifts, calculate distance to office
-                if (pegawai.getLokasi() != null && pegawai.getLokasi().getLatitude() != null && pegawai.getLokasi().getLongitude() != null) {
-                    distance = calculateDistance(
-                        request.getLatitude(), 
-                        request.getLongitude(),
-                        Double.parseDouble(pegawai.getLokasi().getLatitude()), 
-                        Double.parseDouble(pegawai.getLokasi().getLongitude())
-                    );
-                }
-            } else {
-                // For flexible location shifts, calculate distance to home
-                if (pegawai.getLatitude() != null && pegawai.getLongitude() != null) {
-                    distance = calculateDistance(
-                        request.getLatitude(), 
-                        request.getLongitude(),
-                        pegawai.getLatitude(), 
-                        pegawai.getLongitude()
-                    );
-                }
-            }
+            return convertToAbsensiResponse(savedAbsensi);
             
-            // Upload photo if provided
-            String photoUrl = null;
-            if (request.getPhotoBase64() != null && !request.getPhotoBase64().isEmpty()) {
-                try {
-                    photoUrl = uploadPhotoFromBase64(request.getPhotoBase64(), pegawai.getId());
-                } catch (Exception e) {
-                    log.warn("Failed to upload photo for absensi: {}", e.getMessage());
-                }
+        } catch (Exception e) {
+            log.error("Error submitting absensi for pegawai {}: {}", request.getPegawaiId(), e.getMessage(), e);
+            throw new RuntimeException("Gagal melakukan absensi: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Submit absensi with the photo uploaded as a multipart part instead of a Base64 field
+     */
+    public AbsensiResponse createAbsensi(AbsensiRequest request, MultipartFile photo) {
+        Path stagedPhoto = null;
+        try {
+            // A part that is not a JPEG or PNG photo rejects the check-in before it is saved
+            if (photo != null && !photo.isEmpty()) {
+                stagedPhoto = photoUploadService.stageMultipartPhoto(photo);
             }
             
-            // Determine status and keterangan based on time, shift, and penalty rules
-            LocalTime currentTime = LocalTime.now();
-            AbsensiStatusAndKeterangan statusAndKeterangan = determineAbsensiStatusAndKeterangan(type, shift, currentTime, pegawai);
+            Absensi savedAbsensi = insertAbsensi(request);
             
-            // Create absensi record
-            Absensi absensi = new Absensi();
-            absensi.setPegawai(pegawai);
-            absensi.setShift(shift);
-            absensi.setType(type);
-            absensi.setTanggal(today);
-            absensi.setWaktu(currentTime);
-            absensi.setLatitude(request.getLatitude());
-            absensi.setLongitude(request.getLongitude());
-            absensi.setJarak(distance);
-            absensi.setPhotoUrl(photoUrl);
-            absensi.setStatus(statusAndKeterangan.status);
-            absensi.setKeterangan(statusAndKeterangan.keterangan);
-            
-            // Save absensi
-            Absensi savedAbsensi = absensiRepository.save(absensi);
+            if (stagedPhoto != null) {
+                absensiPhotoWriter.write(savedAbsensi.getId(), stagedPhoto);
+                stagedPhoto = null;
+            }
             
             return convertToAbsensiResponse(savedAbsensi);
             
         } catch (Exception e) {
+            deleteStagedPhoto(stagedPhoto);
             log.error("Error submitting absensi for pegawai {}: {}", request.getPegawaiId(), e.getMessage(), e);
             throw new RuntimeException("Gagal melakukan absensi: " + e.getMessage());
         }
     }
     
+    private void deleteStagedPhoto(Path stagedPhoto) {
+        if (stagedPhoto == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(stagedPhoto);
+        } catch (IOException e) {
+            log.warn("Could not delete staged photo {}: {}", stagedPhoto.getFileName(), e.getMessage());
+        }
+    }
+    
+    private Absensi insertAbsensi(AbsensiRequest request) {
+        // Validate pegawai
+        Pegawai pegawai = pegawaiRepository.findById(request.getPegawaiId())
+                .orElseThrow(() -> new RuntimeException("Pegawai tidak ditemukan"));
+        
+        // Validate shift
+        ShiftSchedules.Jadwal jadwal = shiftSchedules.get(request.getShiftId());
+        if (jadwal == null) {
+            throw new RuntimeException("Shift tidak ditemukan");
+        }
+        
+        // Parse absensi type
+        Absensi.AbsensiType type = parseAbsensiType(request.getType());
+        
+        LocalDate today = LocalDate.now();
+        
+        // Without the unique index, e.g. while old duplicates keep it from being created,
+        // a second check-in is looked up before the insert as it was before the index
+        if (!uniqueIndexPresent && absensiRepository.existsByPegawaiAndTanggalAndType(pegawai, today, type)) {
+            throw new RuntimeException("Anda sudah melakukan absensi " + request.getType() + " hari ini");
+        }
+        
+        // Validate location based on shift lock
+        validateLocationForAbsensi(request, pegawai, jadwal);
+        
+        // Calculate distance based on shift location lock
+        double distance = 0.0;
+        if (jadwal.getLockLokasi() != null && jadwal.getLockLokasi().equals("HARUS_DI_KANTOR")) {
+            // For locked location shifts, calculate distance to office
+            if (pegawai.getLokasi() != null && pegawai.getLokasi().getLatitude() != null && pegawai.getLokasi().getLongitude() != null) {
+                distance = calculateDistance(
+                    request.getLatitude(), 
+                    request.getLongitude(),
+                    Double.parseDouble(pegawai.getLokasi().getLatitude()), 
+                    Double.parseDouble(pegawai.getLokasi().getLongitude())
+                );
+            }
+        } else {
+            // For flexible location shifts, calculate distance to home
+            if (pegawai.getLatitude() != null && pegawai.getLongitude() != null) {
+                distance = calculateDistance(
+                    request.getLatitude(), 
+                    request.getLongitude(),
+                    pegawai.getLatitude(), 
+                    pegawai.getLongitude()
+                );
+            }
+        }
+        
+        // Determine status and keterangan based on time, shift, and penalty rules
+        LocalTime currentTime = LocalTime.now();
+        AbsensiStatusAndKeterangan statusAndKeterangan = determineAbsensiStatusAndKeterangan(type, jadwal, currentTime, pegawai);
+        
+        // Create absensi record
+        Absensi absensi = new Absensi();
+        absensi.setPegawai(pegawai);
+        absensi.setShift(shiftRepository.getReferenceById(jadwal.getId()));
+        absensi.setType(type);
+        absensi.setTanggal(today);
+        absensi.setWaktu(currentTime);
+        absensi.setLatitude(request.getLatitude());
+        absensi.setLongitude(request.getLongitude());
+        absensi.setJarak(distance);
+        absensi.setStatus(statusAndKeterangan.status);
+        absensi.setKeterangan(statusAndKeterangan.keterangan);
+        
+        // Save absensi; the unique index on pegawai, tanggal and type rejects a second check-in,
+        // including one submitted at the same moment
+        try {
+            return absensiRepository.saveAndFlush(absensi);
+        } catch (DataIntegrityViolationException e) {
+            String cause = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+            if (cause != null && cause.contains(Absensi.UNIQUE_PEGAWAI_TANGGAL_TYPE)) {
+                throw new RuntimeException("Anda sudah melakukan absensi " + request.getType() + " hari ini");
+            }
+            throw e;
+        }
+    }
+    
     @Transactional(readOnly = true)
     public PagedResponse<AbsensiResponse> getAbsensiHistory(Long pegawaiId, String bulan, String tahun, String startDate, String endDate, String type, String status, org.springframework.data.domain.Pageable pageable) {
         // Find pegawai
@@ -676,11 +738,15 @@ public class AbsensiService {
     }
     
     /**
-     * Enhanced method to determine status and keterangan with dynamic penalty calculation
+     * Enhanced method to determine status and keterangan with dynamic penalty calculation.
+     * Package-private for AbsensiStatusBenchmark.
      */
-    private AbsensiStatusAndKeterangan determineAbsensiStatusAndKeterangan(Absensi.AbsensiType type, Shift shift, LocalTime currentTime, Pegawai pegawai) {
-        LocalTime jamMasuk = LocalTime.parse(shift.getJamMasuk());
-        LocalTime jamKeluar = LocalTime.parse(shift.getJamKeluar());
+    AbsensiStatusAndKeterangan determineAbsensiStatusAndKeterangan(Absensi.AbsensiType type, ShiftSchedules.Jadwal jadwal, LocalTime currentTime, Pegawai pegawai) {
+        LocalTime jamMasuk = jadwal.getJamMasuk();
+        LocalTime jamKeluar = jadwal.getJamKeluar();
+        if (jamMasuk == null || jamKeluar == null) {
+            throw new RuntimeException("Jam shift " + jadwal.getNamaShift() + " tidak valid");
+        }
         
         if (type == Absensi.AbsensiType.MASUK) {
             return determineCheckInStatusAndKeterangan(currentTime, jamMasuk);
@@ -735,24 +801,8 @@ public class AbsensiService {
      */
     private BigDecimal getPenaltyPercentageForLateness(int lateMinutes) {
         try {
-            // Get penalty rules from database
-            List<PemotonganAbsen> pemotonganRules = pemotonganAbsenRepository.findAllActiveOrderByKode();
-            Map<String, BigDecimal> rulePercentages = pemotonganRules.stream()
-                    .collect(Collectors.toMap(
-                            PemotonganAbsen::getKode,
-                            PemotonganAbsen::getPersentase
-                    ));
-            
-            // Apply same logic as LaporanTukinService
-            if (lateMinutes <= 30) {
-                return rulePercentages.getOrDefault("TL0", BigDecimal.valueOf(0.00));
-            } else if (lateMinutes <= 60) {
-                return rulePercentages.getOrDefault("TL1", BigDecimal.valueOf(0.50));
-            } else if (lateMinutes <= 90) {
-                return rulePercentages.getOrDefault("TL2", BigDecimal.valueOf(1.25));
-            } else {
-                return rulePercentages.getOrDefault("TL3", BigDecimal.valueOf(2.50));
-            }
+            // Same compiled rules as LaporanTukinService
+            return pemotonganAbsenRules.current().persentaseTerlambat(lateMinutes);
         } catch (Exception e) {
             log.warn("Failed to get penalty percentage from database, using fallback values: {}", e.getMessage());
             // Fallback to hardcoded values if database access fails
@@ -766,7 +816,7 @@ public class AbsensiService {
     /**
      * Helper class to return both status and keterangan
      */
-    private static class AbsensiStatusAndKeterangan {
+    static class AbsensiStatusAndKeterangan {
         final Absensi.AbsensiStatus status;
         final String keterangan;
         
@@ -804,8 +854,8 @@ public class AbsensiService {
     /**
      * Validate location for attendance based on shift lock location
      */
-    private void validateLocationForAbsensi(AbsensiRequest request, Pegawai pegawai, Shift shift) {
-        if (shift.getLockLokasi() != null && shift.getLockLokasi().equals("HARUS_DI_KANTOR")) {
+    private void validateLocationForAbsensi(AbsensiRequest request, Pegawai pegawai, ShiftSchedules.Jadwal jadwal) {
+        if (jadwal.getLockLokasi() != null && jadwal.getLockLokasi().equals("HARUS_DI_KANTOR")) {
             // For office-locked shifts, validate employee is within office radius
             if (pegawai.getLokasi() == null) {
                 throw new RuntimeException("Pegawai belum memiliki lokasi kantor yang terdaftar");
@@ -861,29 +911,6 @@ public class AbsensiService {
         return R * c; // Distance in meters
     }
     
-    private String uploadPhotoFromBase64(String base64Data, Long pegawaiId) throws Exception {
-        try {
-            // Remove base64 prefix if present
-            String cleanBase64 = base64Data;
-            if (base64Data.contains(",")) {
-                cleanBase64 = base64Data.split(",")[1];
-            }
-            
-            // Decode base64
-            byte[] imageBytes = Base64.getDecoder().decode(cleanBase64);
-            
-            // Generate filename
-            String filename = "absensi_" + pegawaiId + "_" + System.currentTimeMillis() + ".jpg";
-            
-            // Use the file upload service
-            return photoUploadService.saveFileFromBytes(imageBytes, filename, "photos");
-            
-        } catch (Exception e) {
-            log.error("Error uploading photo from base64: {}", e.getMessage());
-            throw new Exception("Failed to upload photo: " + e.getMessage());
-        }
-    }
-    
     private ShiftResponse convertToShiftResponse(Shift shift) {
         ShiftResponse response = new ShiftResponse();
         response.setId(shift.getId());
@@ -904,17 +931,18 @@ public class AbsensiService {
         response.setTanggal(absensi.getTanggal().format(DATE_FORMATTER));
         response.setWaktu(absensi.getWaktu().format(TIME_FORMATTER));
         response.setType(absensi.getType().name().toLowerCase());
-        response.setShift(absensi.getShift() != null ? absensi.getShift().getNamaShift() : "");
-        response.setShiftLockLokasi(absensi.getShift() != null ? absensi.getShift().getLockLokasi() : "");
+        ShiftSchedules.Jadwal jadwal = shiftSchedules.get(absensi);
+        response.setShift(jadwal != null ? jadwal.getNamaShift() : "");
+        response.setShiftLockLokasi(jadwal != null ? jadwal.getLockLokasi() : "");
         
         // Set lokasi based on shift lock location
         String lokasi = "Tidak ada lokasi";
-        if (absensi.getShift() != null) {
-            if ("HARUS_DI_KANTOR".equals(absensi.getShift().getLockLokasi())) {
+        if (jadwal != null) {
+            if ("HARUS_DI_KANTOR".equals(jadwal.getLockLokasi())) {
                 // Absensi di kantor - gunakan nama lokasi kantor
                 lokasi = absensi.getPegawai().getLokasi() != null ? 
                         absensi.getPegawai().getLokasi().getNamaLokasi() : "Kantor";
-            } else if ("BISA_DI_RUMAH".equals(absensi.getShift().getLockLokasi())) {
+            } else if ("BISA_DI_RUMAH".equals(jadwal.getLockLokasi())) {
                 // Work from home - set as "Di Rumah"
                 lokasi = "Di Rumah";
             } else {
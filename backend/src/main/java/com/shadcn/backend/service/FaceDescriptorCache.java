@@ -0,0 +1,147 @@
+package com.shadcn.backend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.shadcn.backend.config.props.FaceIndexProperties;
+import com.shadcn.backend.dto.PegawaiResponse;
+import com.shadcn.backend.entity.FaceRecognition;
+import com.shadcn.backend.entity.FaceRecognition.FaceRecognitionStatus;
+import com.shadcn.backend.repository.FaceRecognitionRepository;
+import com.shadcn.backend.util.FaceDistanceKernel;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+
+/**
+ * Descriptors of the active face recognition of each pegawai, parsed once with their
+ * squared norms, for self verification at check-in. A check only computes distances;
+ * the database is read on the first check of a pegawai and after an invalidation.
+ * {@link FaceRecognitionService} invalidates a pegawai on create, update and delete.
+ * Hits and misses are reported as the {@code face.descriptors} cache.
+ */
+@Component
+@Slf4j
+public class FaceDescriptorCache {
+
+    private final FaceRecognitionRepository faceRecognitionRepository;
+    private final FaceEmbeddingIndex faceEmbeddingIndex;
+    private final FaceDistanceKernel kernel = FaceDistanceKernel.get();
+    private final Cache<Long, PegawaiDescriptors> cache;
+
+    public FaceDescriptorCache(FaceRecognitionRepository faceRecognitionRepository,
+                               FaceEmbeddingIndex faceEmbeddingIndex,
+                               FaceIndexProperties faceIndexProperties,
+                               MeterRegistry meterRegistry) {
+        this.faceRecognitionRepository = faceRecognitionRepository;
+        this.faceEmbeddingIndex = faceEmbeddingIndex;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(faceIndexProperties.getSelfCacheSize())
+                .expireAfterWrite(Duration.ofMinutes(faceIndexProperties.getSelfCacheExpireMinutes()))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "face.descriptors");
+    }
+
+    /**
+     * Descriptors of the pegawai, loaded on a miss. A pegawai without an active face
+     * recognition is cached too, as an entry with a null face recognition id.
+     */
+    public PegawaiDescriptors get(Long pegawaiId) {
+        return cache.get(pegawaiId, this::load);
+    }
+
+    /**
+     * Drop the pegawai after the current transaction commits, so a concurrent check
+     * cannot cache the old descriptors again.
+     */
+    public void invalidate(Long pegawaiId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidate(pegawaiId);
+                }
+            });
+        } else {
+            cache.invalidate(pegawaiId);
+        }
+    }
+
+    private PegawaiDescriptors load(Long pegawaiId) {
+        FaceRecognition faceRecognition = faceRecognitionRepository
+                .findByPegawaiIdAndStatus(pegawaiId, FaceRecognitionStatus.ACTIVE)
+                .orElse(null);
+        if (faceRecognition == null) {
+            return new PegawaiDescriptors(kernel, null, null, null, new float[0][]);
+        }
+        float[][] vectors = faceEmbeddingIndex.descriptors(faceRecognition.getFacePrototypeData(),
+                faceRecognition.getFaceDescriptorData(), faceRecognition.getFaceDescriptors());
+        log.debug("Cached {} descriptors for pegawai {}", vectors != null ? vectors.length : 0, pegawaiId);
+        return new PegawaiDescriptors(kernel, faceRecognition.getId(), faceRecognition.getPegawai().getNamaLengkap(),
+                PegawaiResponse.from(faceRecognition.getPegawai()), vectors != null ? vectors : new float[0][]);
+    }
+
+    /**
+     * Immutable descriptors of one pegawai with the pegawai summary the check responds with.
+     */
+    @Getter
+    public static final class PegawaiDescriptors {
+        @Getter(AccessLevel.NONE)
+        private final FaceDistanceKernel kernel;
+        private final Long faceRecognitionId;
+        private final String namaLengkap;
+        private final PegawaiResponse pegawai;
+        private final float[][] vectors;
+        private final double[] squaredNorms;
+
+        private PegawaiDescriptors(FaceDistanceKernel kernel, Long faceRecognitionId, String namaLengkap,
+                                   PegawaiResponse pegawai, float[][] vectors) {
+            this.kernel = kernel;
+            this.faceRecognitionId = faceRecognitionId;
+            this.namaLengkap = namaLengkap;
+            this.pegawai = pegawai;
+            this.vectors = vectors;
+            this.squaredNorms = new double[vectors.length];
+            for (int v = 0; v < vectors.length; v++) {
+                squaredNorms[v] = squaredNorm(vectors[v]);
+            }
+        }
+
+        /**
+         * Similarity in [0..1] of the closest descriptor, from
+         * |q - v|² = |q|² + |v|² - 2 q·v. Descriptors of another length do not compare;
+         * 0 when none does.
+         */
+        public double similarity(double[] query) {
+            float[] q = FaceEmbeddingIndex.toFloat(query);
+            double queryNorm = squaredNorm(q);
+            double minDistanceSquared = Double.MAX_VALUE;
+            for (int v = 0; v < vectors.length; v++) {
+                if (vectors[v].length != q.length) {
+                    continue;
+                }
+                double distanceSquared = queryNorm + squaredNorms[v] - 2.0 * kernel.dot(q, vectors[v], 0);
+                minDistanceSquared = Math.min(minDistanceSquared, Math.max(0.0, distanceSquared));
+            }
+            if (minDistanceSquared == Double.MAX_VALUE) {
+                return 0.0;
+            }
+            return Math.max(0.0, 1.0 - (Math.sqrt(minDistanceSquared) / 2.0));
+        }
+    }
+
+    private static double squaredNorm(float[] vector) {
+        double sum = 0.0;
+        for (float value : vector) {
+            sum += (double) value * value;
+        }
+        return sum;
+    }
+}
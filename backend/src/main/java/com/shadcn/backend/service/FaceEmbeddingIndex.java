@@ -0,0 +1,641 @@
+package com.shadcn.backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shadcn.backend.config.props.FaceIndexProperties;
+import com.shadcn.backend.repository.DataVersionProjection;
+import com.shadcn.backend.repository.FaceDescriptorProjection;
+import com.shadcn.backend.repository.FaceRecognitionRepository;
+import com.shadcn.backend.util.FaceDescriptorCodec;
+import com.shadcn.backend.util.FaceDistanceKernel;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resident index of the descriptors of all active face recognitions, packed into one
+ * float array, so 1:N matching runs without the database or JSON parsing. Loaded at
+ * startup and updated by {@link FaceRecognitionService} on create, update and delete.
+ * <p>
+ * With {@code app.face.index.ann-enabled} and enough face recognitions, a query only
+ * scores the face recognitions of its nearest IVF clusters ({@link FaceIvfIndex}); the
+ * candidates are still scored exactly, so thresholds mean the same as in a full scan.
+ * The index is saved to {@code app.face.index.snapshot-file} and reused at startup while
+ * the active descriptors are unchanged.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FaceEmbeddingIndex {
+
+    // Queries scored per pass over the entries in bestAll
+    private static final int BATCH_BLOCK = 64;
+
+    private final FaceRecognitionRepository faceRecognitionRepository;
+    private final FaceIndexProperties faceIndexProperties;
+    private final FaceMatchMetrics faceMatchMetrics;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final FaceDistanceKernel kernel = FaceDistanceKernel.get();
+    // Transactions with an index change registered but not yet completed
+    private final AtomicInteger pendingWrites = new AtomicInteger();
+
+    // Guarded by this; ordered by face recognition id so ties resolve as the old scan did
+    private TreeMap<Long, Entry> entries;
+    private FaceIvfIndex ivf;
+    private volatile Snapshot snapshot;
+    // Changed since the snapshot file was last written
+    private volatile boolean dirty;
+    // Guarded by this; the next load ignores the snapshot file
+    private boolean reloadFromDatabase;
+
+    @PostConstruct
+    public void registerMetrics() {
+        // Read the current snapshot only; a scrape never triggers a load
+        faceMatchMetrics.indexGauges(
+                () -> {
+                    Snapshot current = snapshot;
+                    return current != null ? current.size() : 0;
+                },
+                () -> {
+                    Snapshot current = snapshot;
+                    return current != null ? current.vectorCount() : 0;
+                });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        log.info("Face embedding index ready with {} face recognitions", snapshot().size());
+    }
+
+    /**
+     * Best matching face recognition, or null when none scores above zero.
+     */
+    public Match best(double[] query) {
+        Snapshot current = snapshot();
+        float[] q = toFloat(query);
+        int[] candidates = current.candidates(kernel, q, faceIndexProperties.getAnnProbes());
+        int count = candidates != null ? candidates.length : current.size();
+        Match best = null;
+        // Entries are pruned against the best distance so far
+        float bestDistance = Float.MAX_VALUE;
+        int compared = 0;
+        for (int i = 0; i < count; i++) {
+            int e = candidates != null ? candidates[i] : i;
+            compared += current.vectorCount(e);
+            float distance = current.minDistanceSquared(kernel, e, q, bestDistance);
+            double similarity = similarity(distance);
+            if (similarity > (best != null ? best.similarity : 0.0)) {
+                best = current.match(e, similarity);
+                bestDistance = distance;
+            }
+        }
+        faceMatchMetrics.descriptorsCompared("best", compared);
+        return best;
+    }
+
+    /**
+     * Best match of each query, exactly as {@link #best} returns it, or null. Queries are
+     * scored in blocks: one pass over the entries (or over the union of the IVF candidates)
+     * serves every query of the block, so each descriptor is read once per block.
+     */
+    public List<Match> bestAll(List<double[]> queries) {
+        Snapshot current = snapshot();
+        int probes = faceIndexProperties.getAnnProbes();
+        List<Match> results = new ArrayList<>(queries.size());
+        for (int from = 0; from < queries.size(); from += BATCH_BLOCK) {
+            int n = Math.min(BATCH_BLOCK, queries.size() - from);
+            float[][] q = new float[n][];
+            BitSet[] candidates = new BitSet[n];
+            BitSet union = new BitSet(current.size());
+            boolean fullScan = false;
+            for (int i = 0; i < n; i++) {
+                q[i] = toFloat(queries.get(from + i));
+                candidates[i] = current.candidateSet(kernel, q[i], probes);
+                if (candidates[i] == null) {
+                    fullScan = true;
+                } else {
+                    union.or(candidates[i]);
+                }
+            }
+
+            Match[] best = new Match[n];
+            int[] compared = new int[n];
+            float[] bestDistance = new float[n];
+            Arrays.fill(bestDistance, Float.MAX_VALUE);
+            // Ascending entry order with a strict comparison keeps the ties of best()
+            for (int e = fullScan ? 0 : union.nextSetBit(0); e >= 0 && e < current.size();
+                 e = fullScan ? e + 1 : union.nextSetBit(e + 1)) {
+                for (int i = 0; i < n; i++) {
+                    if (candidates[i] != null && !candidates[i].get(e)) {
+                        continue;
+                    }
+                    compared[i] += current.vectorCount(e);
+                    float distance = current.minDistanceSquared(kernel, e, q[i], bestDistance[i]);
+                    double similarity = similarity(distance);
+                    if (similarity > (best[i] != null ? best[i].similarity : 0.0)) {
+                        best[i] = current.match(e, similarity);
+                        bestDistance[i] = distance;
+                    }
+                }
+            }
+            for (int count : compared) {
+                faceMatchMetrics.descriptorsCompared("batch", count);
+            }
+            results.addAll(Arrays.asList(best));
+        }
+        return results;
+    }
+
+    /**
+     * The {@code k} best matching face recognitions, highest similarity first.
+     */
+    public List<Match> topK(double[] query, int k) {
+        Snapshot current = snapshot();
+        float[] q = toFloat(query);
+        int[] candidates = current.candidates(kernel, q, faceIndexProperties.getAnnProbes());
+        int count = candidates != null ? candidates.length : current.size();
+        PriorityQueue<Match> pq = new PriorityQueue<>(k, (a, b) -> Double.compare(a.similarity, b.similarity));
+        // Once k candidates are held, entries are pruned against the worst of them
+        float bound = Float.MAX_VALUE;
+        int compared = 0;
+        for (int i = 0; i < count; i++) {
+            int e = candidates != null ? candidates[i] : i;
+            compared += current.vectorCount(e);
+            float distance = current.minDistanceSquared(kernel, e, q, bound);
+            double similarity = similarity(distance);
+            if (pq.size() < k) {
+                pq.offer(current.match(e, similarity));
+            } else if (pq.peek().similarity < similarity) {
+                pq.poll();
+                pq.offer(current.match(e, similarity));
+            }
+            if (pq.size() == k) {
+                bound = distanceSquared(pq.peek().similarity);
+            }
+        }
+        faceMatchMetrics.descriptorsCompared("top_k", compared);
+        List<Match> list = new ArrayList<>(pq);
+        list.sort((a, b) -> Double.compare(b.similarity, a.similarity));
+        return list;
+    }
+
+    public int size() {
+        return snapshot().size();
+    }
+
+    /**
+     * Add or replace a face recognition after the current transaction commits. Inactive
+     * face recognitions are removed instead.
+     */
+    public void put(Long faceRecognitionId, Long pegawaiId, float[][] vectors, boolean active) {
+        if (!active || vectors == null) {
+            remove(faceRecognitionId);
+            return;
+        }
+        Entry entry = new Entry(faceRecognitionId, pegawaiId, vectors);
+        afterCommit(() -> apply(faceRecognitionId, entry));
+    }
+
+    /**
+     * Remove a face recognition after the current transaction commits.
+     */
+    public void remove(Long faceRecognitionId) {
+        afterCommit(() -> apply(faceRecognitionId, null));
+    }
+
+    /**
+     * Drop the loaded entries and reload them from the database on next use, bypassing
+     * the snapshot file; for changes made outside {@link FaceRecognitionService}.
+     */
+    public synchronized void reloadFromDatabase() {
+        entries = null;
+        ivf = null;
+        snapshot = null;
+        reloadFromDatabase = true;
+    }
+
+    /**
+     * Write the snapshot file when the index changed and no index change is in flight,
+     * so the saved version always describes exactly the saved entries.
+     */
+    @Scheduled(fixedDelay = 300000)
+    public void saveSnapshot() {
+        Path file = snapshotFile();
+        if (file == null || !dirty || pendingWrites.get() > 0) {
+            return;
+        }
+        DataVersionProjection version = faceRecognitionRepository.findActiveDescriptorVersion();
+        FaceIndexSnapshotFile contents;
+        synchronized (this) {
+            if (entries == null || pendingWrites.get() > 0) {
+                return;
+            }
+            contents = new FaceIndexSnapshotFile(jumlah(version), terakhirDiubah(version),
+                    new ArrayList<>(entries.values()), ivf);
+            dirty = false;
+        }
+        try {
+            contents.write(file);
+            log.info("Saved face embedding index with {} face recognitions to {}", contents.entries.size(), file);
+        } catch (IOException e) {
+            dirty = true;
+            log.warn("Failed to save face embedding index to {}: {}", file, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        saveSnapshot();
+    }
+
+    /**
+     * Vectors a face recognition is matched with: its enrollment prototypes, else its
+     * binary descriptors, else the legacy JSON when it has not been converted yet. Null
+     * when it has none of them.
+     */
+    public float[][] descriptors(byte[] prototypeData, byte[] descriptorData, String descriptorsJson) {
+        if (prototypeData != null) {
+            try {
+                return FaceDescriptorCodec.decodeVectors(prototypeData);
+            } catch (IllegalArgumentException e) {
+                log.warn("Failed to decode face prototypes, using the descriptors: {}", e.getMessage());
+            }
+        }
+        if (descriptorData != null) {
+            try {
+                return FaceDescriptorCodec.decodeVectors(descriptorData);
+            } catch (IllegalArgumentException e) {
+                log.warn("Failed to decode face descriptors: {}", e.getMessage());
+                return new float[0][];
+            }
+        }
+        return descriptorsJson != null ? parseDescriptors(descriptorsJson) : null;
+    }
+
+    /**
+     * Parse stored descriptors, either the MediaPipe list of descriptor objects or the
+     * legacy array of arrays. Unparseable data yields no descriptors.
+     */
+    public float[][] parseDescriptors(String json) {
+        try {
+            FaceRecognitionService.FaceDescriptorDto[] descriptorObjects =
+                    objectMapper.readValue(json, FaceRecognitionService.FaceDescriptorDto[].class);
+            List<float[]> vectors = new ArrayList<>(descriptorObjects.length);
+            for (FaceRecognitionService.FaceDescriptorDto descriptorObj : descriptorObjects) {
+                if (descriptorObj.getDescriptor() != null) {
+                    vectors.add(toFloat(descriptorObj.getDescriptor()));
+                }
+            }
+            return vectors.toArray(new float[0][]);
+        } catch (Exception e) {
+            try {
+                double[][] legacy = objectMapper.readValue(json, double[][].class);
+                float[][] vectors = new float[legacy.length][];
+                for (int i = 0; i < legacy.length; i++) {
+                    vectors[i] = toFloat(legacy[i]);
+                }
+                return vectors;
+            } catch (Exception legacyError) {
+                log.warn("Failed to parse face descriptors: {}", legacyError.getMessage());
+                return new float[0][];
+            }
+        }
+    }
+
+    /**
+     * Similarity in [0..1] for a squared euclidean distance, as used by the thresholds.
+     */
+    static double similarity(float distanceSquared) {
+        if (distanceSquared == Float.MAX_VALUE) {
+            return 0.0;
+        }
+        return Math.max(0.0, 1.0 - (Math.sqrt(distanceSquared) / 2.0));
+    }
+
+    // Inverse of similarity, for pruning; similarity 0 cannot prune anything
+    private static float distanceSquared(double similarity) {
+        if (similarity <= 0.0) {
+            return Float.MAX_VALUE;
+        }
+        double distance = (1.0 - similarity) * 2.0;
+        return Math.nextUp((float) (distance * distance));
+    }
+
+    static float[] toFloat(double[] values) {
+        float[] result = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (float) values[i];
+        }
+        return result;
+    }
+
+    private Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                current = snapshot;
+                if (current == null) {
+                    current = new Snapshot(entries().values(), ivf);
+                    snapshot = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    // Replace or, with a null entry, remove a face recognition
+    private synchronized void apply(Long faceRecognitionId, Entry entry) {
+        Map<Long, Entry> current = entries();
+        Entry previous = entry != null ? current.put(faceRecognitionId, entry) : current.remove(faceRecognitionId);
+        if (previous == null && entry == null) {
+            return;
+        }
+        if (ivf != null) {
+            FaceIvfIndex updated = previous != null ? ivf.without(previous, kernel) : ivf;
+            ivf = entry != null ? updated.with(entry, kernel) : updated;
+        }
+        ivf = trainedIvf(ivf);
+        snapshot = new Snapshot(entries.values(), ivf);
+        dirty = true;
+    }
+
+    // Caller holds the lock
+    private Map<Long, Entry> entries() {
+        if (entries == null) {
+            FaceIvfIndex savedIvf = null;
+            Path file = snapshotFile();
+            FaceIndexSnapshotFile saved = file != null && !reloadFromDatabase ? readSnapshotFile(file) : null;
+            reloadFromDatabase = false;
+            if (saved != null) {
+                entries = new TreeMap<>();
+                for (Entry entry : saved.entries) {
+                    entries.put(entry.faceRecognitionId, entry);
+                }
+                savedIvf = saved.ivf;
+                log.info("Loaded {} face recognitions into the embedding index from {}", entries.size(), file);
+            } else {
+                entries = new TreeMap<>();
+                for (FaceDescriptorProjection row : faceRecognitionRepository.findActiveDescriptors()) {
+                    entries.put(row.getId(), new Entry(row.getId(), row.getPegawaiId(),
+                            descriptors(row.getFacePrototypeData(), row.getFaceDescriptorData(), row.getFaceDescriptors())));
+                }
+                log.debug("Loaded {} face recognitions into the embedding index", entries.size());
+            }
+            ivf = trainedIvf(savedIvf);
+            dirty = file != null && (saved == null || ivf != savedIvf);
+        }
+        return entries;
+    }
+
+    /**
+     * The IVF index to use: none when disabled or below the minimum size, otherwise
+     * {@code existing} until the descriptor count has doubled since it was trained or
+     * the most common descriptor length changed. Caller holds the lock.
+     */
+    private FaceIvfIndex trainedIvf(FaceIvfIndex existing) {
+        if (!Boolean.TRUE.equals(faceIndexProperties.getAnnEnabled())
+                || entries.size() < faceIndexProperties.getAnnMinEntries()) {
+            return null;
+        }
+        Map<Integer, Integer> perDimension = new HashMap<>();
+        for (Entry entry : entries.values()) {
+            for (float[] vector : entry.vectors) {
+                perDimension.merge(vector.length, 1, Integer::sum);
+            }
+        }
+        Map.Entry<Integer, Integer> dominant = perDimension.entrySet().stream()
+                .max(Map.Entry.comparingByValue())
+                .orElse(null);
+        if (dominant == null) {
+            return null;
+        }
+        if (existing != null && existing.dimension() == dominant.getKey()
+                && dominant.getValue() <= 2L * existing.trainedVectors()) {
+            return existing;
+        }
+        long started = System.currentTimeMillis();
+        FaceIvfIndex trained = FaceIvfIndex.train(new ArrayList<>(entries.values()), dominant.getKey(),
+                faceIndexProperties.getAnnLists(), kernel);
+        log.info("Trained face IVF index with {} lists over {} descriptors in {} ms",
+                trained.lists().length, trained.trainedVectors(), System.currentTimeMillis() - started);
+        return trained;
+    }
+
+    // Saved index, or null when missing, unreadable or older than the database
+    private FaceIndexSnapshotFile readSnapshotFile(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            FaceIndexSnapshotFile saved = FaceIndexSnapshotFile.read(file);
+            DataVersionProjection version = faceRecognitionRepository.findActiveDescriptorVersion();
+            if (saved.jumlah != jumlah(version) || !saved.terakhirDiubah.equals(terakhirDiubah(version))) {
+                log.info("Face embedding index in {} is out of date, loading from the database", file);
+                return null;
+            }
+            return saved;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to read face embedding index from {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private Path snapshotFile() {
+        String path = faceIndexProperties.getSnapshotFile();
+        return path == null || path.isBlank() ? null : Paths.get(path);
+    }
+
+    private static long jumlah(DataVersionProjection version) {
+        return version != null && version.getJumlah() != null ? version.getJumlah() : 0L;
+    }
+
+    private static String terakhirDiubah(DataVersionProjection version) {
+        return version != null && version.getTerakhirDiubah() != null ? version.getTerakhirDiubah().toString() : "";
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            pendingWrites.incrementAndGet();
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    pendingWrites.decrementAndGet();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * A scored face recognition.
+     */
+    @Getter
+    public static final class Match {
+        private final Long faceRecognitionId;
+        private final Long pegawaiId;
+        private final double similarity;
+
+        Match(Long faceRecognitionId, Long pegawaiId, double similarity) {
+            this.faceRecognitionId = faceRecognitionId;
+            this.pegawaiId = pegawaiId;
+            this.similarity = similarity;
+        }
+    }
+
+    @Getter
+    static final class Entry {
+        private final Long faceRecognitionId;
+        private final Long pegawaiId;
+        private final float[][] vectors;
+
+        Entry(Long faceRecognitionId, Long pegawaiId, float[][] vectors) {
+            this.faceRecognitionId = faceRecognitionId;
+            this.pegawaiId = pegawaiId;
+            this.vectors = vectors;
+        }
+    }
+
+    /**
+     * Immutable packed form of the entries. Vector {@code v} occupies
+     * {@code data[dataStart[v] .. dataStart[v + 1])}, and entry {@code e} owns vectors
+     * {@code vectorStart[e] .. vectorStart[e + 1]}.
+     */
+    private static final class Snapshot {
+        private final long[] faceRecognitionIds;
+        private final long[] pegawaiIds;
+        private final int[] vectorStart;
+        private final int[] dataStart;
+        private final float[] data;
+        private final FaceIvfIndex ivf;
+        // Entry position per face recognition id, only with an IVF index
+        private final Map<Long, Integer> positions;
+
+        Snapshot(Iterable<Entry> source, FaceIvfIndex ivf) {
+            List<Entry> list = new ArrayList<>();
+            source.forEach(list::add);
+            int vectorCount = 0;
+            int dataLength = 0;
+            for (Entry entry : list) {
+                vectorCount += entry.vectors.length;
+                for (float[] vector : entry.vectors) {
+                    dataLength += vector.length;
+                }
+            }
+
+            faceRecognitionIds = new long[list.size()];
+            pegawaiIds = new long[list.size()];
+            vectorStart = new int[list.size() + 1];
+            dataStart = new int[vectorCount + 1];
+            data = new float[dataLength];
+
+            int v = 0;
+            int offset = 0;
+            for (int e = 0; e < list.size(); e++) {
+                Entry entry = list.get(e);
+                faceRecognitionIds[e] = entry.faceRecognitionId;
+                pegawaiIds[e] = entry.pegawaiId;
+                vectorStart[e] = v;
+                for (float[] vector : entry.vectors) {
+                    dataStart[v++] = offset;
+                    System.arraycopy(vector, 0, data, offset, vector.length);
+                    offset += vector.length;
+                }
+            }
+            vectorStart[list.size()] = v;
+            dataStart[vectorCount] = offset;
+
+            this.ivf = ivf;
+            positions = ivf != null ? new HashMap<>(list.size() * 2) : null;
+            if (ivf != null) {
+                for (int e = 0; e < list.size(); e++) {
+                    positions.put(faceRecognitionIds[e], e);
+                }
+            }
+        }
+
+        /**
+         * Ascending positions of the entries listed under the IVF clusters nearest to
+         * {@code q}, or null to scan all entries.
+         */
+        int[] candidates(FaceDistanceKernel kernel, float[] q, int probes) {
+            BitSet selected = candidateSet(kernel, q, probes);
+            return selected != null ? selected.stream().toArray() : null;
+        }
+
+        BitSet candidateSet(FaceDistanceKernel kernel, float[] q, int probes) {
+            if (ivf == null || q.length != ivf.dimension()) {
+                return null;
+            }
+            BitSet selected = new BitSet(size());
+            for (long[] list : ivf.probe(q, probes, kernel)) {
+                for (long faceRecognitionId : list) {
+                    Integer e = positions.get(faceRecognitionId);
+                    if (e != null) {
+                        selected.set(e);
+                    }
+                }
+            }
+            return selected;
+        }
+
+        int size() {
+            return faceRecognitionIds.length;
+        }
+
+        int vectorCount() {
+            return vectorStart[size()];
+        }
+
+        int vectorCount(int e) {
+            return vectorStart[e + 1] - vectorStart[e];
+        }
+
+        Match match(int e, double similarity) {
+            return new Match(faceRecognitionIds[e], pegawaiIds[e], similarity);
+        }
+
+        /**
+         * Smallest squared distance from {@code q} to the vectors of entry {@code e};
+         * vectors of another length are skipped. Float.MAX_VALUE when nothing compares.
+         * A result above {@code bound} is only known to be above it, not exact.
+         */
+        float minDistanceSquared(FaceDistanceKernel kernel, int e, float[] q, float bound) {
+            float min = Float.MAX_VALUE;
+            for (int v = vectorStart[e]; v < vectorStart[e + 1]; v++) {
+                int from = dataStart[v];
+                if (dataStart[v + 1] - from != q.length) {
+                    continue;
+                }
+                min = Math.min(min, kernel.squaredL2(q, data, from, Math.min(min, bound)));
+            }
+            return min;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.shadcn.backend.service;
+
+import com.shadcn.backend.config.props.FaceEnrollmentProperties;
+import com.shadcn.backend.util.FaceDescriptorCodec;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns the captures of an enrollment into the few vectors used for matching: the centroid
+ * of the captures plus the pose means that differ most from it. Captures far from the
+ * centroid (median + factor x MAD of the distances) are rejected first, so one blurred or
+ * misdetected capture does not pull the prototypes. Only captures of the most common
+ * descriptor length take part.
+ * <p>
+ * The descriptors are raw landmark coordinates, not unit-length embeddings, so the
+ * prototypes are plain means and are not rescaled; the similarity thresholds keep their
+ * distance scale.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FaceEnrollmentProcessor {
+
+    public static final String CENTROID = "centroid";
+
+    private final FaceEnrollmentProperties faceEnrollmentProperties;
+
+    public boolean isEnabled() {
+        return Boolean.TRUE.equals(faceEnrollmentProperties.getPrototypesEnabled());
+    }
+
+    /**
+     * Prototypes of the captures, centroid first. Empty when there is nothing to compare.
+     */
+    public List<FaceDescriptorCodec.Descriptor> prototypes(List<FaceDescriptorCodec.Descriptor> captures) {
+        List<FaceDescriptorCodec.Descriptor> usable = dominantLength(captures);
+        if (usable.isEmpty()) {
+            return List.of();
+        }
+        List<FaceDescriptorCodec.Descriptor> inliers = rejectOutliers(usable);
+        float[] centroid = mean(inliers);
+        Integer landmarks = inliers.get(0).getLandmarks();
+
+        List<FaceDescriptorCodec.Descriptor> prototypes = new ArrayList<>();
+        prototypes.add(new FaceDescriptorCodec.Descriptor(CENTROID, null, landmarks, centroid));
+
+        // Mean per pose; captures without a pose label each count as their own pose
+        Map<String, List<FaceDescriptorCodec.Descriptor>> byPose = new LinkedHashMap<>();
+        for (int i = 0; i < inliers.size(); i++) {
+            FaceDescriptorCodec.Descriptor capture = inliers.get(i);
+            String pose = capture.getPosition() != null ? capture.getPosition()
+                    : capture.getStepId() != null ? capture.getStepId() : "capture-" + i;
+            byPose.computeIfAbsent(pose, key -> new ArrayList<>()).add(capture);
+        }
+        Map<String, float[]> poseMeans = new LinkedHashMap<>();
+        byPose.forEach((pose, members) -> poseMeans.put(pose, mean(members)));
+
+        // Farthest-point selection: each next prototype is the pose furthest from all chosen
+        int max = Math.max(1, faceEnrollmentProperties.getMaxPrototypes());
+        while (prototypes.size() < max && !poseMeans.isEmpty()) {
+            String furthest = null;
+            double furthestDistance = 0.0;
+            for (Map.Entry<String, float[]> pose : poseMeans.entrySet()) {
+                double nearest = Double.MAX_VALUE;
+                for (FaceDescriptorCodec.Descriptor chosen : prototypes) {
+                    nearest = Math.min(nearest, distance(pose.getValue(), chosen.getVector()));
+                }
+                if (nearest > furthestDistance) {
+                    furthestDistance = nearest;
+                    furthest = pose.getKey();
+                }
+            }
+            if (furthest == null) {
+                break; // Every remaining pose coincides with a prototype
+            }
+            prototypes.add(new FaceDescriptorCodec.Descriptor(furthest, null, landmarks, poseMeans.remove(furthest)));
+        }
+
+        log.debug("Enrollment reduced to {} prototypes from {} captures ({} rejected as outliers)",
+                prototypes.size(), captures.size(), usable.size() - inliers.size());
+        return prototypes;
+    }
+
+    private List<FaceDescriptorCodec.Descriptor> dominantLength(List<FaceDescriptorCodec.Descriptor> captures) {
+        Map<Integer, Integer> counts = new HashMap<>();
+        for (FaceDescriptorCodec.Descriptor capture : captures) {
+            if (capture.getVector().length > 0) {
+                counts.merge(capture.getVector().length, 1, Integer::sum);
+            }
+        }
+        int length = counts.entrySet().stream()
+                .max(Map.Entry.comparingByValue())
+                .map(Map.Entry::getKey)
+                .orElse(0);
+        return captures.stream().filter(capture -> capture.getVector().length == length && length > 0).toList();
+    }
+
+    private List<FaceDescriptorCodec.Descriptor> rejectOutliers(List<FaceDescriptorCodec.Descriptor> captures) {
+        // Median and MAD need enough captures to say what is unusual
+        if (captures.size() < 3) {
+            return captures;
+        }
+        float[] centroid = mean(captures);
+        double[] distances = new double[captures.size()];
+        for (int i = 0; i < distances.length; i++) {
+            distances[i] = distance(captures.get(i).getVector(), centroid);
+        }
+        double median = median(distances.clone());
+        double[] deviations = new double[distances.length];
+        for (int i = 0; i < distances.length; i++) {
+            deviations[i] = Math.abs(distances[i] - median);
+        }
+        // A floor on the MAD so near-identical captures do not make every small difference an outlier
+        double mad = Math.max(median(deviations), 0.05 * median);
+        double limit = median + faceEnrollmentProperties.getOutlierMadFactor() * mad;
+
+        List<FaceDescriptorCodec.Descriptor> inliers = new ArrayList<>(captures.size());
+        for (int i = 0; i < distances.length; i++) {
+            if (distances[i] <= limit) {
+                inliers.add(captures.get(i));
+            }
+        }
+        return inliers;
+    }
+
+    private static float[] mean(List<FaceDescriptorCodec.Descriptor> captures) {
+        int length = captures.get(0).getVector().length;
+        double[] sum = new double[length];
+        for (FaceDescriptorCodec.Descriptor capture : captures) {
+            float[] vector = capture.getVector();
+            for (int d = 0; d < length; d++) {
+                sum[d] += vector[d];
+            }
+        }
+        float[] mean = new float[length];
+        for (int d = 0; d < length; d++) {
+            mean[d] = (float) (sum[d] / captures.size());
+        }
+        return mean;
+    }
+
+    private static double distance(float[] a, float[] b) {
+        double sum = 0.0;
+        for (int d = 0; d < a.length; d++) {
+            double diff = a[d] - b[d];
+            sum += diff * diff;
+        }
+        return Math.sqrt(sum);
+    }
+
+    private static double median(double[] values) {
+        Arrays.sort(values);
+        int middle = values.length / 2;
+        return values.length % 2 == 1 ? values[middle] : (values[middle - 1] + values[middle]) / 2.0;
+    }
+}
@@ -0,0 +1,130 @@
+package com.shadcn.backend.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary snapshot of the face embedding index: the descriptor version it was taken at,
+ * every entry with its float32 descriptors, and the IVF clusters when present.
+ */
+final class FaceIndexSnapshotFile {
+
+    private static final int MAGIC = 0x46494458; // "FIDX"
+    private static final int FORMAT = 1;
+
+    final long jumlah;
+    final String terakhirDiubah;
+    final List<FaceEmbeddingIndex.Entry> entries;
+    final FaceIvfIndex ivf;
+
+    FaceIndexSnapshotFile(long jumlah, String terakhirDiubah, List<FaceEmbeddingIndex.Entry> entries, FaceIvfIndex ivf) {
+        this.jumlah = jumlah;
+        this.terakhirDiubah = terakhirDiubah;
+        this.entries = entries;
+        this.ivf = ivf;
+    }
+
+    /**
+     * Write through a temp file and an atomic move, so readers never see a partial file.
+     */
+    void write(Path file) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT);
+                out.writeLong(jumlah);
+                out.writeUTF(terakhirDiubah);
+
+                out.writeInt(entries.size());
+                for (FaceEmbeddingIndex.Entry entry : entries) {
+                    out.writeLong(entry.getFaceRecognitionId());
+                    out.writeLong(entry.getPegawaiId());
+                    out.writeInt(entry.getVectors().length);
+                    for (float[] vector : entry.getVectors()) {
+                        writeFloats(out, vector);
+                    }
+                }
+
+                out.writeBoolean(ivf != null);
+                if (ivf != null) {
+                    out.writeInt(ivf.dimension());
+                    out.writeInt(ivf.trainedVectors());
+                    writeFloats(out, ivf.centroids());
+                    out.writeInt(ivf.lists().length);
+                    for (long[] list : ivf.lists()) {
+                        out.writeInt(list.length);
+                        for (long id : list) {
+                            out.writeLong(id);
+                        }
+                    }
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    static FaceIndexSnapshotFile read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT) {
+                throw new IOException("Format snapshot index wajah tidak dikenali: " + file);
+            }
+            long jumlah = in.readLong();
+            String terakhirDiubah = in.readUTF();
+
+            int entryCount = in.readInt();
+            List<FaceEmbeddingIndex.Entry> entries = new ArrayList<>(entryCount);
+            for (int e = 0; e < entryCount; e++) {
+                long faceRecognitionId = in.readLong();
+                long pegawaiId = in.readLong();
+                float[][] vectors = new float[in.readInt()][];
+                for (int v = 0; v < vectors.length; v++) {
+                    vectors[v] = readFloats(in);
+                }
+                entries.add(new FaceEmbeddingIndex.Entry(faceRecognitionId, pegawaiId, vectors));
+            }
+
+            FaceIvfIndex ivf = null;
+            if (in.readBoolean()) {
+                int dimension = in.readInt();
+                int trainedVectors = in.readInt();
+                float[] centroids = readFloats(in);
+                long[][] lists = new long[in.readInt()][];
+                for (int c = 0; c < lists.length; c++) {
+                    lists[c] = new long[in.readInt()];
+                    for (int i = 0; i < lists[c].length; i++) {
+                        lists[c][i] = in.readLong();
+                    }
+                }
+                ivf = new FaceIvfIndex(dimension, trainedVectors, centroids, lists);
+            }
+            return new FaceIndexSnapshotFile(jumlah, terakhirDiubah, entries, ivf);
+        }
+    }
+
+    private static void writeFloats(DataOutputStream out, float[] values) throws IOException {
+        out.writeInt(values.length);
+        for (float value : values) {
+            out.writeFloat(value);
+        }
+    }
+
+    private static float[] readFloats(DataInputStream in) throws IOException {
+        float[] values = new float[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readFloat();
+        }
+        return values;
+    }
+}
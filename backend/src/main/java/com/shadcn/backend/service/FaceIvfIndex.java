@@ -0,0 +1,205 @@
+package com.shadcn.backend.service;
+
+import com.shadcn.backend.util.FaceDistanceKernel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Inverted-file (IVF-flat) index over face descriptors of one length. Descriptors are
+ * clustered by k-means; each cluster lists the face recognitions with a descriptor
+ * nearest to it. A query only visits the face recognitions of its nearest clusters,
+ * which {@link FaceEmbeddingIndex} then re-ranks exactly. Immutable: inserts and deletes
+ * return a new index sharing the untouched lists.
+ */
+final class FaceIvfIndex {
+
+    private static final int KMEANS_ITERATIONS = 10;
+    // Training sample per cluster; the rest of the descriptors are only assigned
+    private static final int SAMPLE_PER_LIST = 64;
+    private static final long[] EMPTY = new long[0];
+
+    private final int dimension;
+    private final int trainedVectors;
+    private final float[] centroids;
+    private final long[][] lists;
+
+    FaceIvfIndex(int dimension, int trainedVectors, float[] centroids, long[][] lists) {
+        this.dimension = dimension;
+        this.trainedVectors = trainedVectors;
+        this.centroids = centroids;
+        this.lists = lists;
+    }
+
+    /**
+     * Cluster the descriptors of {@code dimension} length and assign every face recognition.
+     */
+    static FaceIvfIndex train(List<FaceEmbeddingIndex.Entry> entries, int dimension, int listCount,
+                              FaceDistanceKernel kernel) {
+        List<float[]> vectors = new ArrayList<>();
+        for (FaceEmbeddingIndex.Entry entry : entries) {
+            for (float[] vector : entry.getVectors()) {
+                if (vector.length == dimension) {
+                    vectors.add(vector);
+                }
+            }
+        }
+        int lists = Math.max(1, Math.min(listCount > 0 ? listCount : (int) Math.round(Math.sqrt(vectors.size())),
+                vectors.size()));
+
+        // Fixed seed so a rebuild from the same data gives the same clusters
+        List<float[]> sample = new ArrayList<>(vectors);
+        Collections.shuffle(sample, new Random(42));
+        sample = sample.subList(0, Math.min(sample.size(), lists * SAMPLE_PER_LIST));
+
+        float[] centroids = new float[lists * dimension];
+        for (int c = 0; c < lists; c++) {
+            System.arraycopy(sample.get(c), 0, centroids, c * dimension, dimension);
+        }
+
+        int[] assignment = new int[sample.size()];
+        for (int iteration = 0; iteration < KMEANS_ITERATIONS; iteration++) {
+            for (int i = 0; i < sample.size(); i++) {
+                assignment[i] = nearest(kernel, centroids, lists, sample.get(i));
+            }
+            float[] sums = new float[centroids.length];
+            int[] counts = new int[lists];
+            for (int i = 0; i < sample.size(); i++) {
+                float[] vector = sample.get(i);
+                int base = assignment[i] * dimension;
+                for (int d = 0; d < dimension; d++) {
+                    sums[base + d] += vector[d];
+                }
+                counts[assignment[i]]++;
+            }
+            for (int c = 0; c < lists; c++) {
+                // An empty cluster keeps its previous centroid
+                if (counts[c] > 0) {
+                    for (int d = 0; d < dimension; d++) {
+                        centroids[c * dimension + d] = sums[c * dimension + d] / counts[c];
+                    }
+                }
+            }
+        }
+
+        FaceIvfIndex index = new FaceIvfIndex(dimension, vectors.size(), centroids, emptyLists(lists));
+        List<List<Long>> members = new ArrayList<>(lists);
+        for (int c = 0; c < lists; c++) {
+            members.add(new ArrayList<>());
+        }
+        for (FaceEmbeddingIndex.Entry entry : entries) {
+            for (int c : index.clustersOf(entry, kernel)) {
+                members.get(c).add(entry.getFaceRecognitionId());
+            }
+        }
+        for (int c = 0; c < lists; c++) {
+            index.lists[c] = members.get(c).stream().mapToLong(Long::longValue).toArray();
+        }
+        return index;
+    }
+
+    int dimension() {
+        return dimension;
+    }
+
+    int trainedVectors() {
+        return trainedVectors;
+    }
+
+    float[] centroids() {
+        return centroids;
+    }
+
+    long[][] lists() {
+        return lists;
+    }
+
+    /**
+     * Index with the face recognition listed under the clusters of its descriptors.
+     */
+    FaceIvfIndex with(FaceEmbeddingIndex.Entry entry, FaceDistanceKernel kernel) {
+        int[] clusters = clustersOf(entry, kernel);
+        if (clusters.length == 0) {
+            return this;
+        }
+        long[][] updated = lists.clone();
+        for (int c : clusters) {
+            long[] list = Arrays.copyOf(updated[c], updated[c].length + 1);
+            list[list.length - 1] = entry.getFaceRecognitionId();
+            updated[c] = list;
+        }
+        return new FaceIvfIndex(dimension, trainedVectors, centroids, updated);
+    }
+
+    /**
+     * Index without the face recognition; {@code entry} is the version that was indexed.
+     */
+    FaceIvfIndex without(FaceEmbeddingIndex.Entry entry, FaceDistanceKernel kernel) {
+        int[] clusters = clustersOf(entry, kernel);
+        if (clusters.length == 0) {
+            return this;
+        }
+        long[][] updated = lists.clone();
+        long id = entry.getFaceRecognitionId();
+        for (int c : clusters) {
+            updated[c] = Arrays.stream(updated[c]).filter(listed -> listed != id).toArray();
+        }
+        return new FaceIvfIndex(dimension, trainedVectors, centroids, updated);
+    }
+
+    /**
+     * Face recognitions listed under the {@code probes} clusters nearest to {@code q}.
+     */
+    long[][] probe(float[] q, int probes, FaceDistanceKernel kernel) {
+        int clusterCount = lists.length;
+        int wanted = Math.min(Math.max(1, probes), clusterCount);
+        float[] distances = new float[clusterCount];
+        for (int c = 0; c < clusterCount; c++) {
+            distances[c] = kernel.squaredL2(q, centroids, c * dimension, Float.MAX_VALUE);
+        }
+        // Partial selection of the nearest clusters; probes is small
+        long[][] result = new long[wanted][];
+        boolean[] taken = new boolean[clusterCount];
+        for (int p = 0; p < wanted; p++) {
+            int best = -1;
+            for (int c = 0; c < clusterCount; c++) {
+                if (!taken[c] && (best < 0 || distances[c] < distances[best])) {
+                    best = c;
+                }
+            }
+            taken[best] = true;
+            result[p] = lists[best];
+        }
+        return result;
+    }
+
+    private int[] clustersOf(FaceEmbeddingIndex.Entry entry, FaceDistanceKernel kernel) {
+        return Arrays.stream(entry.getVectors())
+                .filter(vector -> vector.length == dimension)
+                .mapToInt(vector -> nearest(kernel, centroids, lists.length, vector))
+                .distinct()
+                .toArray();
+    }
+
+    private static int nearest(FaceDistanceKernel kernel, float[] centroids, int lists, float[] vector) {
+        int best = 0;
+        float bestDistance = Float.MAX_VALUE;
+        for (int c = 0; c < lists; c++) {
+            float distance = kernel.squaredL2(vector, centroids, c * vector.length, bestDistance);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    private static long[][] emptyLists(int count) {
+        long[][] lists = new long[count][];
+        Arrays.fill(lists, EMPTY);
+        return lists;
+    }
+}
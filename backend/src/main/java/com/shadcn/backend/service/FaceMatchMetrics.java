@@ -0,0 +1,90 @@
+package com.shadcn.backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Micrometer meters of face matching, scraped from /actuator/prometheus:
+ * <ul>
+ *   <li>{@code face.match.duration} per operation, with a histogram for p99 alerts;</li>
+ *   <li>{@code face.match.outcome} per operation and outcome against its threshold;</li>
+ *   <li>{@code face.match.descriptors.compared} per search, to be read against the
+ *       {@code face.index.descriptors} gauge for the share of the index a query scans.</li>
+ * </ul>
+ * The self-verification cache reports as {@code cache.gets{cache="face.descriptors"}}.
+ */
+@Component
+@RequiredArgsConstructor
+public class FaceMatchMetrics {
+
+    public static final String MATCH = "match";
+    public static final String TOP_K = "top_k";
+    public static final String BATCH = "batch";
+    public static final String TEST_SELF = "test_self";
+    public static final String TEST_SPECIFIC = "test_specific";
+    public static final String TEST_ALL = "test_all";
+
+    public enum Outcome {
+        ACCEPTED, REJECTED, NO_ENROLLMENT
+    }
+
+    private final MeterRegistry meterRegistry;
+
+    public Timer.Sample start() {
+        return Timer.start(meterRegistry);
+    }
+
+    public void stop(Timer.Sample sample, String operation) {
+        sample.stop(Timer.builder("face.match.duration")
+                .description("Time to answer a face match or test request")
+                .tag("operation", operation)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .register(meterRegistry));
+    }
+
+    public void outcome(String operation, Outcome outcome) {
+        Counter.builder("face.match.outcome")
+                .description("Face match results by threshold outcome")
+                .tag("operation", operation)
+                .tag("outcome", outcome.name().toLowerCase(Locale.ROOT))
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void outcome(String operation, double similarity, double threshold) {
+        outcome(operation, similarity >= threshold ? Outcome.ACCEPTED : Outcome.REJECTED);
+    }
+
+    /**
+     * Descriptors one query was compared against; {@code search} is best, top_k, batch,
+     * self or specific.
+     */
+    public void descriptorsCompared(String search, int count) {
+        DistributionSummary.builder("face.match.descriptors.compared")
+                .description("Stored descriptors scored for one query")
+                .tag("search", search)
+                .register(meterRegistry)
+                .record(count);
+    }
+
+    public void indexGauges(Supplier<Number> faceRecognitions, Supplier<Number> descriptors) {
+        Gauge.builder("face.index.size", faceRecognitions)
+                .description("Face recognitions in the embedding index")
+                .register(meterRegistry);
+        Gauge.builder("face.index.descriptors", descriptors)
+                .description("Descriptors in the embedding index")
+                .register(meterRegistry);
+    }
+}
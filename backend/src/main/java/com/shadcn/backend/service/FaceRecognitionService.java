@@ -1,18 +1,25 @@
 package com.shadcn.backend.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shadcn.backend.config.props.FaceIndexProperties;
 import com.shadcn.backend.dto.*;
 import com.shadcn.backend.entity.FaceRecognition;
 import com.shadcn.backend.entity.FaceRecognition.FaceRecognitionStatus;
+import com.shadcn.backend.entity.FaceRecognitionImage;
 import com.shadcn.backend.model.Pegawai;
+import com.shadcn.backend.repository.FaceRecognitionImageRepository;
 import com.shadcn.backend.repository.FaceRecognitionRepository;
 import com.shadcn.backend.repository.PegawaiRepository;
+import com.shadcn.backend.repository.PegawaiWithoutFaceProjection;
+import com.shadcn.backend.util.FaceDescriptorCodec;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.JpaSort;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -28,7 +35,13 @@ import java.util.stream.Collectors;
 public class FaceRecognitionService {
     
     private final FaceRecognitionRepository faceRecognitionRepository;
+    private final FaceRecognitionImageRepository faceRecognitionImageRepository;
     private final PegawaiRepository pegawaiRepository;
+    private final FaceEmbeddingIndex faceEmbeddingIndex;
+    private final FaceDescriptorCache faceDescriptorCache;
+    private final FaceIndexProperties faceIndexProperties;
+    private final FaceEnrollmentProcessor faceEnrollmentProcessor;
+    private final FaceMatchMetrics faceMatchMetrics;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     // Thresholds configurable via application properties
@@ -49,19 +62,20 @@ public class FaceRecognitionService {
     public Page<FaceRecognitionResponse> getAllFaceRecognitions(int page, int size, String search, FaceRecognitionStatus status) {
         Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "createdAt"));
         Page<FaceRecognition> faceRecognitions = faceRecognitionRepository.findWithFilters(search, status, pageable);
-        return faceRecognitions.map(this::convertToResponse);
+        // Listing leaves out the images
+        return faceRecognitions.map(faceRecognition -> convertToResponse(faceRecognition, null));
     }
     
     // Get face recognition by ID
     public Optional<FaceRecognitionResponse> getFaceRecognitionById(Long id) {
         return faceRecognitionRepository.findById(id)
-                .map(this::convertToResponse);
+                .map(this::convertToDetailResponse);
     }
     
     // Get face recognition by pegawai ID
     public Optional<FaceRecognitionResponse> getFaceRecognitionByPegawaiId(Long pegawaiId) {
         return faceRecognitionRepository.findByPegawaiId(pegawaiId)
-                .map(this::convertToResponse);
+                .map(this::convertToDetailResponse);
     }
     
     // Create new face recognition
@@ -77,18 +91,20 @@ public class FaceRecognitionService {
         
         FaceRecognition faceRecognition = new FaceRecognition();
         faceRecognition.setPegawai(pegawai);
+        FaceRecognitionImage images = null;
         
         // Handle both old and new data structures
         try {
             // New MediaPipe structure
             if (request.getFaceDescriptors() != null && !request.getFaceDescriptors().isEmpty()) {
-                faceRecognition.setFaceDescriptors(objectMapper.writeValueAsString(request.getFaceDescriptors()));
+                setDescriptors(faceRecognition, request.getFaceDescriptors());
                 faceRecognition.setTrainingImagesCount(request.getFaceDescriptors().size());
                 
                 // Use first image as main image for backward compatibility
                 if (request.getCapturedImages() != null && !request.getCapturedImages().isEmpty()) {
-                    faceRecognition.setFaceImageBase64(request.getCapturedImages().get(0).getImageBase64());
-                    faceRecognition.setCapturedImages(objectMapper.writeValueAsString(request.getCapturedImages()));
+                    images = new FaceRecognitionImage();
+                    images.setFaceImageBase64(request.getCapturedImages().get(0).getImageBase64());
+                    images.setCapturedImages(objectMapper.writeValueAsString(request.getCapturedImages()));
                 }
                 
                 // Use test result confidence for backward compatibility
@@ -115,7 +131,10 @@ public class FaceRecognitionService {
             }
             // Backward compatibility - old structure
             else {
-                faceRecognition.setFaceImageBase64(request.getFaceImageBase64());
+                if (request.getFaceImageBase64() != null) {
+                    images = new FaceRecognitionImage();
+                    images.setFaceImageBase64(request.getFaceImageBase64());
+                }
                 faceRecognition.setFaceEncoding(request.getFaceEncoding());
                 faceRecognition.setFaceConfidence(request.getFaceConfidence());
                 faceRecognition.setTrainingImagesCount(1);
@@ -127,9 +146,15 @@ public class FaceRecognitionService {
             faceRecognition.setStatus(FaceRecognitionStatus.ACTIVE);
             
             FaceRecognition saved = faceRecognitionRepository.save(faceRecognition);
+            if (images != null) {
+                images.setFaceRecognition(saved);
+                images = faceRecognitionImageRepository.save(images);
+            }
+            faceEmbeddingIndex.put(saved.getId(), pegawai.getId(), storedDescriptors(saved), true);
+            faceDescriptorCache.invalidate(pegawai.getId());
             log.info("Successfully created face recognition with ID: {}", saved.getId());
             
-            return convertToResponse(saved);
+            return convertToResponse(saved, images);
             
         } catch (Exception e) {
             log.error("Error creating face recognition: ", e);
@@ -146,13 +171,16 @@ public class FaceRecognitionService {
             // Handle both old and new data structures
             if (request.getFaceDescriptors() != null && !request.getFaceDescriptors().isEmpty()) {
                 // New MediaPipe structure
-                faceRecognition.setFaceDescriptors(objectMapper.writeValueAsString(request.getFaceDescriptors()));
+                setDescriptors(faceRecognition, request.getFaceDescriptors());
+                faceRecognition.setFaceDescriptors(null);
                 faceRecognition.setTrainingImagesCount(request.getFaceDescriptors().size());
                 
                 if (request.getCapturedImages() != null && !request.getCapturedImages().isEmpty()) {
                     // Use first image as main image for backward compatibility
-                    faceRecognition.setFaceImageBase64(request.getCapturedImages().get(0).getImageBase64());
-                    faceRecognition.setCapturedImages(objectMapper.writeValueAsString(request.getCapturedImages()));
+                    FaceRecognitionImage images = imagesOf(faceRecognition);
+                    images.setFaceImageBase64(request.getCapturedImages().get(0).getImageBase64());
+                    images.setCapturedImages(objectMapper.writeValueAsString(request.getCapturedImages()));
+                    faceRecognitionImageRepository.save(images);
                 }
                 
                 if (request.getTestResult() != null) {
@@ -178,7 +206,9 @@ public class FaceRecognitionService {
             // Backward compatibility - old structure
             else {
                 if (request.getFaceImageBase64() != null) {
-                    faceRecognition.setFaceImageBase64(request.getFaceImageBase64());
+                    FaceRecognitionImage images = imagesOf(faceRecognition);
+                    images.setFaceImageBase64(request.getFaceImageBase64());
+                    faceRecognitionImageRepository.save(images);
                 }
                 if (request.getFaceEncoding() != null) {
                     faceRecognition.setFaceEncoding(request.getFaceEncoding());
@@ -199,9 +229,12 @@ public class FaceRecognitionService {
             }
             
             FaceRecognition updated = faceRecognitionRepository.save(faceRecognition);
+            faceEmbeddingIndex.put(updated.getId(), updated.getPegawai().getId(), storedDescriptors(updated),
+                    updated.getStatus() == FaceRecognitionStatus.ACTIVE);
+            faceDescriptorCache.invalidate(updated.getPegawai().getId());
             log.info("Successfully updated face recognition with ID: {}", updated.getId());
             
-            return convertToResponse(updated);
+            return convertToDetailResponse(updated);
             
         } catch (Exception e) {
             log.error("Error updating face recognition: ", e);
@@ -211,11 +244,13 @@ public class FaceRecognitionService {
     
     // Delete face recognition
     public void deleteFaceRecognition(Long id) {
-        if (!faceRecognitionRepository.existsById(id)) {
-            throw new RuntimeException("Face recognition not found with ID: " + id);
-        }
+        FaceRecognition faceRecognition = faceRecognitionRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Face recognition not found with ID: " + id));
         
-        faceRecognitionRepository.deleteById(id);
+        faceRecognitionImageRepository.deleteById(id);
+        faceRecognitionRepository.delete(faceRecognition);
+        faceEmbeddingIndex.remove(id);
+        faceDescriptorCache.invalidate(faceRecognition.getPegawai().getId());
         log.info("Deleted face recognition ID: {}", id);
     }
     
@@ -234,20 +269,27 @@ public class FaceRecognitionService {
                 .build();
     }
     
-    // Get pegawai without face recognition
-    public List<PegawaiWithoutFaceResponse> getPegawaiWithoutFaceRecognition() {
-        List<Long> pegawaiIdsWithFace = faceRecognitionRepository.findAllPegawaiIdsWithFaceRecognition();
-        List<Pegawai> allPegawai = pegawaiRepository.findAll();
-        
-        return allPegawai.stream()
-                .filter(pegawai -> !pegawaiIdsWithFace.contains(pegawai.getId()))
-                // Note: Pegawai doesn't have status field, so we'll include all
-                .map(this::convertToPegawaiWithoutFaceResponse)
-                .collect(Collectors.toList());
+    // Get pegawai without face recognition, one page of the anti-join at a time
+    @Transactional(readOnly = true)
+    public Page<PegawaiWithoutFaceResponse> getPegawaiWithoutFaceRecognition(int page, int size, String search,
+                                                                            Long lokasiId, Long jabatanId,
+                                                                            String sortBy, String sortDir) {
+        // Sort keys map to query paths; anything else sorts by name
+        String path = switch (sortBy != null ? sortBy : "") {
+            case "nip" -> "p.nip";
+            case "email" -> "p.email";
+            case "jabatan" -> "j.nama";
+            default -> "p.namaLengkap";
+        };
+        Sort.Direction direction = "desc".equalsIgnoreCase(sortDir) ? Sort.Direction.DESC : Sort.Direction.ASC;
+        Pageable pageable = PageRequest.of(page, size, JpaSort.unsafe(direction, path).andUnsafe(Sort.Direction.ASC, "p.id"));
+        return pegawaiRepository.findWithoutFaceRecognition(search, lokasiId, jabatanId, pageable)
+                .map(this::convertToPegawaiWithoutFaceResponse);
     }
     
     // Match face descriptor with existing face recognitions
     public Optional<FaceRecognitionResponse> matchFaceDescriptor(FaceMatchRequest request) {
+        Timer.Sample sample = faceMatchMetrics.start();
         try {
             if (request.getFaceDescriptor() == null || request.getFaceDescriptor().trim().isEmpty()) {
                 return Optional.empty();
@@ -256,31 +298,19 @@ public class FaceRecognitionService {
             // Parse incoming descriptor JSON to double[]
             double[] inputDescriptor = objectMapper.readValue(request.getFaceDescriptor(), double[].class);
 
-            // Reuse the all-face recognition logic to find best match
-            List<FaceRecognition> allFaceRecognitions = faceRecognitionRepository.findByStatus(FaceRecognitionStatus.ACTIVE);
-            if (allFaceRecognitions.isEmpty()) {
-                return Optional.empty();
-            }
-
-            double maxSimilarity = 0.0;
-            FaceRecognition bestMatch = null;
-
-            for (FaceRecognition fr : allFaceRecognitions) {
-                if (fr.getFaceDescriptors() == null || fr.getFaceDescriptors().trim().isEmpty()) continue;
-                double similarity = calculateSimilarity(inputDescriptor, fr.getFaceDescriptors());
-                if (similarity > maxSimilarity) {
-                    maxSimilarity = similarity;
-                    bestMatch = fr;
-                }
-            }
-
-            if (bestMatch != null && maxSimilarity >= globalConfidenceThreshold) {
-                return Optional.of(convertToResponse(bestMatch));
+            // Score against the resident index, load only the winner
+            FaceEmbeddingIndex.Match bestMatch = faceEmbeddingIndex.best(inputDescriptor);
+            recordOutcome(FaceMatchMetrics.MATCH, bestMatch, globalConfidenceThreshold);
+            if (bestMatch != null && bestMatch.getSimilarity() >= globalConfidenceThreshold) {
+                return faceRecognitionRepository.findById(bestMatch.getFaceRecognitionId())
+                        .map(faceRecognition -> convertToResponse(faceRecognition, null));
             }
             return Optional.empty();
         } catch (Exception e) {
             log.error("Error during matchFaceDescriptor: ", e);
             return Optional.empty();
+        } finally {
+            faceMatchMetrics.stop(sample, FaceMatchMetrics.MATCH);
         }
     }
 
@@ -289,39 +319,151 @@ public class FaceRecognitionService {
             return FaceTopKResponse.builder().candidates(java.util.Collections.emptyList()).build();
         }
 
-        List<FaceRecognition> allFaceRecognitions = faceRecognitionRepository.findByStatus(FaceRecognitionStatus.ACTIVE);
-        if (allFaceRecognitions.isEmpty()) {
-            return FaceTopKResponse.builder().candidates(java.util.Collections.emptyList()).build();
-        }
-
         int k = request.getK() != null && request.getK() > 0 ? request.getK() : 5;
 
-        java.util.PriorityQueue<FaceTopKResponse.Candidate> pq = new java.util.PriorityQueue<>(k,
-            java.util.Comparator.comparingDouble(FaceTopKResponse.Candidate::getConfidence));
+        // No outcome is counted: top-k returns candidates without applying a threshold
+        Timer.Sample sample = faceMatchMetrics.start();
+        try {
+            List<FaceEmbeddingIndex.Match> matches = faceEmbeddingIndex.topK(request.getFaceDescriptor(), k);
+            return FaceTopKResponse.builder().candidates(toCandidates(matches)).build();
+        } finally {
+            faceMatchMetrics.stop(sample, FaceMatchMetrics.TOP_K);
+        }
+    }
 
-        for (FaceRecognition fr : allFaceRecognitions) {
-            if (fr.getFaceDescriptors() == null || fr.getFaceDescriptors().trim().isEmpty()) continue;
-            double sim = calculateSimilarity(request.getFaceDescriptor(), fr.getFaceDescriptors());
-            FaceTopKResponse.Candidate cand = FaceTopKResponse.Candidate.builder()
-                .faceRecognitionId(fr.getId())
-                .pegawai(convertToPegawaiResponse(fr.getPegawai()))
-                .confidence(sim)
-                .build();
-            if (pq.size() < k) {
-                pq.offer(cand);
-            } else if (pq.peek().getConfidence() < sim) {
-                pq.poll();
-                pq.offer(cand);
+    // Match many descriptors in one pass over the index, e.g. a kiosk replaying its offline queue
+    public FaceBatchMatchResponse matchBatch(FaceBatchMatchRequest request) {
+        List<FaceBatchMatchRequest.Item> items = request != null && request.getItems() != null
+                ? request.getItems() : java.util.Collections.emptyList();
+        if (items.size() > faceIndexProperties.getBatchMaxItems()) {
+            throw new IllegalArgumentException("Maksimal " + faceIndexProperties.getBatchMaxItems()
+                    + " face descriptor per batch");
+        }
+        if (items.stream().anyMatch(java.util.Objects::isNull)) {
+            throw new IllegalArgumentException("Item batch tidak boleh null");
+        }
+
+        // Items without a descriptor are answered as not matched without being scored
+        List<double[]> queries = new java.util.ArrayList<>(items.size());
+        for (FaceBatchMatchRequest.Item item : items) {
+            if (item.getFaceDescriptor() != null && item.getFaceDescriptor().length > 0) {
+                queries.add(item.getFaceDescriptor());
             }
         }
+        Timer.Sample sample = faceMatchMetrics.start();
+        List<FaceEmbeddingIndex.Match> matches = faceEmbeddingIndex.bestAll(queries);
+        faceMatchMetrics.stop(sample, FaceMatchMetrics.BATCH);
+        for (FaceEmbeddingIndex.Match match : matches) {
+            recordOutcome(FaceMatchMetrics.BATCH, match, globalConfidenceThreshold);
+        }
+
+        java.util.Map<Long, Pegawai> pegawaiById = pegawaiRepository.findAllById(
+                matches.stream()
+                    .filter(match -> match != null && match.getSimilarity() >= globalConfidenceThreshold)
+                    .map(FaceEmbeddingIndex.Match::getPegawaiId)
+                    .collect(Collectors.toSet()))
+            .stream()
+            .collect(Collectors.toMap(Pegawai::getId, java.util.function.Function.identity()));
+
+        List<FaceBatchMatchResponse.Result> results = new java.util.ArrayList<>(items.size());
+        int next = 0;
+        for (FaceBatchMatchRequest.Item item : items) {
+            FaceEmbeddingIndex.Match match = item.getFaceDescriptor() != null && item.getFaceDescriptor().length > 0
+                    ? matches.get(next++) : null;
+            Pegawai pegawai = match != null && match.getSimilarity() >= globalConfidenceThreshold
+                    ? pegawaiById.get(match.getPegawaiId()) : null;
+            results.add(FaceBatchMatchResponse.Result.builder()
+                .clientId(item.getClientId())
+                .matched(pegawai != null)
+                .faceRecognitionId(pegawai != null ? match.getFaceRecognitionId() : null)
+                .pegawai(pegawai != null ? convertToPegawaiResponse(pegawai) : null)
+                .confidence(match != null ? match.getSimilarity() : 0.0)
+                .build());
+        }
+        log.info("Batch matched {} face descriptors, {} recognized", items.size(),
+                results.stream().filter(FaceBatchMatchResponse.Result::isMatched).count());
+        return FaceBatchMatchResponse.builder()
+            .results(results)
+            .threshold(globalConfidenceThreshold)
+            .build();
+    }
 
-        java.util.List<FaceTopKResponse.Candidate> list = new java.util.ArrayList<>(pq);
-        list.sort((a, b) -> Double.compare(b.getConfidence(), a.getConfidence()));
-        return FaceTopKResponse.builder().candidates(list).build();
+    // Against an empty index there is nothing to match, which is counted apart from a rejection
+    private void recordOutcome(String operation, FaceEmbeddingIndex.Match match, double threshold) {
+        if (match == null && faceEmbeddingIndex.size() == 0) {
+            faceMatchMetrics.outcome(operation, FaceMatchMetrics.Outcome.NO_ENROLLMENT);
+        } else {
+            faceMatchMetrics.outcome(operation, match != null ? match.getSimilarity() : 0.0, threshold);
+        }
+    }
+
+    // Resolve the pegawai of the scored matches in one query, keeping the score order
+    private List<FaceTopKResponse.Candidate> toCandidates(List<FaceEmbeddingIndex.Match> matches) {
+        java.util.Map<Long, Pegawai> pegawaiById = pegawaiRepository.findAllById(
+                matches.stream().map(FaceEmbeddingIndex.Match::getPegawaiId).collect(Collectors.toSet()))
+            .stream()
+            .collect(Collectors.toMap(Pegawai::getId, java.util.function.Function.identity()));
+
+        java.util.List<FaceTopKResponse.Candidate> list = new java.util.ArrayList<>(matches.size());
+        for (FaceEmbeddingIndex.Match match : matches) {
+            Pegawai pegawai = pegawaiById.get(match.getPegawaiId());
+            if (pegawai == null) continue;
+            list.add(FaceTopKResponse.Candidate.builder()
+                .faceRecognitionId(match.getFaceRecognitionId())
+                .pegawai(convertToPegawaiResponse(pegawai))
+                .confidence(match.getSimilarity())
+                .build());
+        }
+        return list;
+    }
+    
+    // Images of a face recognition for update, a new row when it has none yet
+    private FaceRecognitionImage imagesOf(FaceRecognition faceRecognition) {
+        return faceRecognitionImageRepository.findById(faceRecognition.getId()).orElseGet(() -> {
+            FaceRecognitionImage images = new FaceRecognitionImage();
+            images.setFaceRecognition(faceRecognition);
+            return images;
+        });
+    }
+    
+    // Store the captures and, when enabled, the prototypes they are matched with
+    private void setDescriptors(FaceRecognition faceRecognition, List<FaceRecognitionCreateRequest.FaceDescriptorData> descriptors) {
+        List<FaceDescriptorCodec.Descriptor> captures = toCodecDescriptors(descriptors);
+        faceRecognition.setFaceDescriptorData(FaceDescriptorCodec.encode(captures));
+        List<FaceDescriptorCodec.Descriptor> prototypes = faceEnrollmentProcessor.isEnabled()
+                ? faceEnrollmentProcessor.prototypes(captures) : List.of();
+        faceRecognition.setFacePrototypeData(prototypes.isEmpty() ? null : FaceDescriptorCodec.encode(prototypes));
+    }
+    
+    private List<FaceDescriptorCodec.Descriptor> toCodecDescriptors(List<FaceRecognitionCreateRequest.FaceDescriptorData> descriptors) {
+        List<FaceDescriptorCodec.Descriptor> encoded = new java.util.ArrayList<>(descriptors.size());
+        for (FaceRecognitionCreateRequest.FaceDescriptorData descriptor : descriptors) {
+            if (descriptor.getDescriptor() == null) {
+                continue;
+            }
+            float[] vector = new float[descriptor.getDescriptor().size()];
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] = descriptor.getDescriptor().get(i).floatValue();
+            }
+            encoded.add(new FaceDescriptorCodec.Descriptor(
+                    descriptor.getPosition(), descriptor.getStepId(), descriptor.getLandmarks(), vector));
+        }
+        return encoded;
+    }
+    
+    private float[][] storedDescriptors(FaceRecognition faceRecognition) {
+        return faceEmbeddingIndex.descriptors(faceRecognition.getFacePrototypeData(),
+                faceRecognition.getFaceDescriptorData(), faceRecognition.getFaceDescriptors());
     }
     
-    // Convert entity to response DTO
-    private FaceRecognitionResponse convertToResponse(FaceRecognition faceRecognition) {
+    // Detail views include the images
+    private FaceRecognitionResponse convertToDetailResponse(FaceRecognition faceRecognition) {
+        return convertToResponse(faceRecognition,
+                faceRecognitionImageRepository.findById(faceRecognition.getId()).orElse(null));
+    }
+    
+    // Convert entity to response DTO; images may be null to leave them out
+    private FaceRecognitionResponse convertToResponse(FaceRecognition faceRecognition, FaceRecognitionImage images) {
         Pegawai pegawai = faceRecognition.getPegawai();
         
         FaceRecognitionResponse.PegawaiSummaryDto.JabatanDto jabatanDto = null;
@@ -346,7 +488,7 @@ public class FaceRecognitionService {
         return FaceRecognitionResponse.builder()
                 .id(faceRecognition.getId())
                 .pegawai(pegawaiDto)
-                .faceImageBase64(faceRecognition.getFaceImageBase64())
+                .faceImageBase64(images != null ? images.getFaceImageBase64() : null)
                 .faceConfidence(faceRecognition.getFaceConfidence())
                 .trainingImagesCount(faceRecognition.getTrainingImagesCount())
                 .status(faceRecognition.getStatus())
@@ -354,8 +496,8 @@ public class FaceRecognitionService {
                 .createdAt(faceRecognition.getCreatedAt())
                 .updatedAt(faceRecognition.getUpdatedAt())
                 // Add MediaPipe specific fields (parsed from JSON)
-                .faceDescriptors(parseJsonToFaceDescriptors(faceRecognition.getFaceDescriptors()))
-                .capturedImages(parseJsonToCapturedImages(faceRecognition.getCapturedImages()))
+                .faceDescriptors(toFaceDescriptorData(faceRecognition))
+                .capturedImages(images != null ? parseJsonToCapturedImages(images.getCapturedImages()) : null)
                 .captureSteps(parseJsonToCaptureSteps(faceRecognition.getCaptureSteps()))
                 .testResult(parseJsonToTestResult(faceRecognition.getTestResult()))
                 .statistics(parseJsonToStatistics(faceRecognition.getStatistics()))
@@ -366,6 +508,28 @@ public class FaceRecognitionService {
                 .build();
     }
     
+    private List<FaceRecognitionCreateRequest.FaceDescriptorData> toFaceDescriptorData(FaceRecognition faceRecognition) {
+        if (faceRecognition.getFaceDescriptorData() == null) {
+            return parseJsonToFaceDescriptors(faceRecognition.getFaceDescriptors());
+        }
+        try {
+            List<FaceDescriptorCodec.Descriptor> descriptors = FaceDescriptorCodec.decode(faceRecognition.getFaceDescriptorData());
+            List<FaceRecognitionCreateRequest.FaceDescriptorData> result = new java.util.ArrayList<>(descriptors.size());
+            for (FaceDescriptorCodec.Descriptor descriptor : descriptors) {
+                List<Double> values = new java.util.ArrayList<>(descriptor.getVector().length);
+                for (float value : descriptor.getVector()) {
+                    values.add((double) value);
+                }
+                result.add(new FaceRecognitionCreateRequest.FaceDescriptorData(
+                        descriptor.getPosition(), descriptor.getStepId(), values, descriptor.getLandmarks()));
+            }
+            return result;
+        } catch (IllegalArgumentException e) {
+            log.warn("Failed to decode FaceDescriptors: {}", e.getMessage());
+            return null;
+        }
+    }
+    
     // Helper methods to parse JSON strings to specific types
     private List<FaceRecognitionCreateRequest.FaceDescriptorData> parseJsonToFaceDescriptors(String jsonString) {
         if (jsonString == null || jsonString.trim().isEmpty()) {
@@ -432,12 +596,12 @@ public class FaceRecognitionService {
     }
     
     // Convert pegawai to response DTO
-    private PegawaiWithoutFaceResponse convertToPegawaiWithoutFaceResponse(Pegawai pegawai) {
+    private PegawaiWithoutFaceResponse convertToPegawaiWithoutFaceResponse(PegawaiWithoutFaceProjection pegawai) {
         PegawaiWithoutFaceResponse.JabatanDto jabatanDto = null;
-        if (pegawai.getJabatan() != null) {
+        if (pegawai.getJabatanId() != null) {
             jabatanDto = PegawaiWithoutFaceResponse.JabatanDto.builder()
-                    .id(pegawai.getJabatan().getId())
-                    .nama(pegawai.getJabatan().getNama())
+                    .id(pegawai.getJabatanId())
+                    .nama(pegawai.getJabatanNama())
                     .build();
         }
         
@@ -448,7 +612,7 @@ public class FaceRecognitionService {
                 .email(pegawai.getEmail())
                 .nomorTelepon(pegawai.getNoTelp())
                 .jabatan(jabatanDto)
-                .status("ACTIVE") // Default since Pegawai doesn't have status field
+                .status(Boolean.FALSE.equals(pegawai.getIsActive()) ? "INACTIVE" : "ACTIVE")
                 .build();
     }
     
@@ -466,6 +630,10 @@ public class FaceRecognitionService {
                 .build();
         }
         
+        String operation = request.getPegawaiId() != null ? FaceMatchMetrics.TEST_SELF
+            : request.getTargetFaceRecognitionId() != null ? FaceMatchMetrics.TEST_SPECIFIC
+            : FaceMatchMetrics.TEST_ALL;
+        Timer.Sample sample = faceMatchMetrics.start();
         try {
             // If testing against specific pegawai's face recognition (for attendance)
             if (request.getPegawaiId() != null) {
@@ -487,17 +655,20 @@ public class FaceRecognitionService {
                 .confidence(0.0)
                 .message("Test gagal: " + e.getMessage())
                 .build();
+        } finally {
+            faceMatchMetrics.stop(sample, operation);
         }
     }
     
     private FaceTestResponse testAgainstPegawaiFaceRecognition(FaceTestRequest request) {
         log.info("Testing against pegawai face recognition ID: {}", request.getPegawaiId());
         
-        Optional<FaceRecognition> faceRecognitionOpt = faceRecognitionRepository.findByPegawaiIdAndStatus(
-            request.getPegawaiId(), FaceRecognition.FaceRecognitionStatus.ACTIVE);
+        // Parsed descriptors from the cache; the database is only read on a miss
+        FaceDescriptorCache.PegawaiDescriptors stored = faceDescriptorCache.get(request.getPegawaiId());
         
-        if (!faceRecognitionOpt.isPresent()) {
+        if (stored.getFaceRecognitionId() == null) {
             log.warn("No active face recognition found for pegawai ID: {}", request.getPegawaiId());
+            faceMatchMetrics.outcome(FaceMatchMetrics.TEST_SELF, FaceMatchMetrics.Outcome.NO_ENROLLMENT);
             return FaceTestResponse.builder()
                 .isMatch(false)
                 .confidence(0.0)
@@ -505,9 +676,9 @@ public class FaceRecognitionService {
                 .build();
         }
         
-        FaceRecognition faceRecognition = faceRecognitionOpt.get();
-        if (faceRecognition.getFaceDescriptors() == null || faceRecognition.getFaceDescriptors().trim().isEmpty()) {
+        if (stored.getVectors().length == 0) {
             log.warn("No face descriptors found for pegawai ID: {}", request.getPegawaiId());
+            faceMatchMetrics.outcome(FaceMatchMetrics.TEST_SELF, FaceMatchMetrics.Outcome.NO_ENROLLMENT);
             return FaceTestResponse.builder()
                 .isMatch(false)
                 .confidence(0.0)
@@ -515,16 +686,18 @@ public class FaceRecognitionService {
                 .build();
         }
         
-        log.info("Found stored descriptors for pegawai: {}", faceRecognition.getPegawai().getNamaLengkap());
-        log.debug("Stored descriptors JSON length: {}", faceRecognition.getFaceDescriptors().length());
+        log.info("Found stored descriptors for pegawai: {}", stored.getNamaLengkap());
+        log.debug("Stored descriptors: {}", stored.getVectors().length);
         
-        // Parse stored descriptors and compare
-    double similarity = calculateSimilarity(request.getFaceDescriptor(), faceRecognition.getFaceDescriptors());
+        // Compare against the stored descriptors
+    double similarity = stored.similarity(request.getFaceDescriptor());
     double confidence = similarity; // confidence is similarity in [0..1]
     boolean isMatch = similarity >= selfConfidenceThreshold;
+        faceMatchMetrics.descriptorsCompared("self", stored.getVectors().length);
+        faceMatchMetrics.outcome(FaceMatchMetrics.TEST_SELF, similarity, selfConfidenceThreshold);
         
         log.info("=== PEGAWAI FACE RECOGNITION TEST RESULT ===");
-        log.info("Pegawai: {}", faceRecognition.getPegawai().getNamaLengkap());
+        log.info("Pegawai: {}", stored.getNamaLengkap());
     log.info("Similarity: {}", similarity);
     log.info("Confidence: {}%", confidence * 100);
     log.info("Threshold (self): {}", selfConfidenceThreshold);
@@ -533,9 +706,9 @@ public class FaceRecognitionService {
         
         String message = isMatch 
             ? String.format("Wajah berhasil dikenali sebagai %s dengan confidence %.1f%%", 
-                faceRecognition.getPegawai().getNamaLengkap(), confidence * 100)
+                stored.getNamaLengkap(), confidence * 100)
             : String.format("Wajah tidak sesuai dengan %s. Confidence: %.1f%%", 
-                faceRecognition.getPegawai().getNamaLengkap(), confidence * 100);
+                stored.getNamaLengkap(), confidence * 100);
         
     log.info("Pegawai face recognition test result: match={}, confidence={}%, similarity={}", isMatch, confidence * 100, similarity);
         
@@ -543,10 +716,10 @@ public class FaceRecognitionService {
             .isMatch(isMatch)
             .confidence(confidence) // Keep as decimal for consistency
             .message(message)
-            .matchedFaceRecognitionId(faceRecognition.getId());
+            .matchedFaceRecognitionId(stored.getFaceRecognitionId());
         
         if (isMatch) {
-            responseBuilder.pegawai(convertToPegawaiResponse(faceRecognition.getPegawai()));
+            responseBuilder.pegawai(stored.getPegawai());
         }
         
         return responseBuilder.build();
@@ -559,6 +732,7 @@ public class FaceRecognitionService {
         
         if (!faceRecognitionOpt.isPresent()) {
             log.warn("Face recognition not found for ID: {}", request.getTargetFaceRecognitionId());
+            faceMatchMetrics.outcome(FaceMatchMetrics.TEST_SPECIFIC, FaceMatchMetrics.Outcome.NO_ENROLLMENT);
             return FaceTestResponse.builder()
                 .isMatch(false)
                 .confidence(0.0)
@@ -567,8 +741,10 @@ public class FaceRecognitionService {
         }
         
         FaceRecognition faceRecognition = faceRecognitionOpt.get();
-        if (faceRecognition.getFaceDescriptors() == null || faceRecognition.getFaceDescriptors().trim().isEmpty()) {
+        float[][] storedDescriptors = storedDescriptors(faceRecognition);
+        if (storedDescriptors == null || storedDescriptors.length == 0) {
             log.warn("No face descriptors found for face recognition ID: {}", request.getTargetFaceRecognitionId());
+            faceMatchMetrics.outcome(FaceMatchMetrics.TEST_SPECIFIC, FaceMatchMetrics.Outcome.NO_ENROLLMENT);
             return FaceTestResponse.builder()
                 .isMatch(false)
                 .confidence(0.0)
@@ -577,12 +753,14 @@ public class FaceRecognitionService {
         }
         
         log.info("Found stored descriptors for pegawai: {}", faceRecognition.getPegawai().getNamaLengkap());
-        log.debug("Stored descriptors JSON length: {}", faceRecognition.getFaceDescriptors().length());
+        log.debug("Stored descriptors: {}", storedDescriptors.length);
         
-        // Parse stored descriptors and compare
-    double similarity = calculateSimilarity(request.getFaceDescriptor(), faceRecognition.getFaceDescriptors());
+        // Compare against the stored descriptors
+    double similarity = calculateSimilarity(request.getFaceDescriptor(), storedDescriptors);
     double confidence = similarity; // [0..1]
     boolean isMatch = similarity >= specificConfidenceThreshold;
+        faceMatchMetrics.descriptorsCompared("specific", storedDescriptors.length);
+        faceMatchMetrics.outcome(FaceMatchMetrics.TEST_SPECIFIC, similarity, specificConfidenceThreshold);
         
         log.info("=== FACE RECOGNITION TEST RESULT ===");
     log.info("Similarity: {}", similarity);
@@ -611,10 +789,8 @@ public class FaceRecognitionService {
     }
     
     private FaceTestResponse testAgainstAllFaceRecognitions(FaceTestRequest request) {
-        // Get all active face recognitions
-        List<FaceRecognition> allFaceRecognitions = faceRecognitionRepository.findByStatus(FaceRecognitionStatus.ACTIVE);
-        
-        if (allFaceRecognitions.isEmpty()) {
+        if (faceEmbeddingIndex.size() == 0) {
+            faceMatchMetrics.outcome(FaceMatchMetrics.TEST_ALL, FaceMatchMetrics.Outcome.NO_ENROLLMENT);
             return FaceTestResponse.builder()
                 .isMatch(false)
                 .confidence(0.0)
@@ -622,32 +798,22 @@ public class FaceRecognitionService {
                 .build();
         }
         
-        double maxSimilarity = 0.0;
-        FaceRecognition bestMatch = null;
-        
-        // Compare against all face recognitions
-        for (FaceRecognition faceRecognition : allFaceRecognitions) {
-            if (faceRecognition.getFaceDescriptors() == null || faceRecognition.getFaceDescriptors().trim().isEmpty()) {
-                continue;
-            }
-            
-            double similarity = calculateSimilarity(request.getFaceDescriptor(), faceRecognition.getFaceDescriptors());
-            if (similarity > maxSimilarity) {
-                maxSimilarity = similarity;
-                bestMatch = faceRecognition;
-            }
-        }
+        // Compare against all face recognitions in the resident index
+        FaceEmbeddingIndex.Match match = faceEmbeddingIndex.best(request.getFaceDescriptor());
+        double maxSimilarity = match != null ? match.getSimilarity() : 0.0;
+        Pegawai bestMatch = match != null ? pegawaiRepository.findById(match.getPegawaiId()).orElse(null) : null;
         
         // Convert similarity to distance for threshold comparison
     double confidence = maxSimilarity; // [0..1]
     boolean isMatch = maxSimilarity >= globalConfidenceThreshold;
+        faceMatchMetrics.outcome(FaceMatchMetrics.TEST_ALL, maxSimilarity, globalConfidenceThreshold);
         
         log.info("=== FACE RECOGNITION ALL TEST RESULT ===");
     log.info("Max Similarity: {}", maxSimilarity);
     log.info("Confidence: {}%", confidence * 100);
     log.info("Threshold (global): {}", globalConfidenceThreshold);
     log.info("Is Match: {} (similarity {} >= {})", isMatch, maxSimilarity, globalConfidenceThreshold);
-        log.info("Best Match: {}", bestMatch != null ? bestMatch.getPegawai().getNamaLengkap() : "None");
+        log.info("Best Match: {}", bestMatch != null ? bestMatch.getNamaLengkap() : "None");
         log.info("=======================================");
         
         String message = isMatch 
@@ -661,73 +827,38 @@ public class FaceRecognitionService {
         
         if (isMatch && bestMatch != null) {
             responseBuilder
-                .pegawai(convertToPegawaiResponse(bestMatch.getPegawai()))
-                .matchedFaceRecognitionId(bestMatch.getId());
+                .pegawai(convertToPegawaiResponse(bestMatch))
+                .matchedFaceRecognitionId(match.getFaceRecognitionId());
         }
         
         return responseBuilder.build();
     }
     
-    private double calculateSimilarity(double[] inputDescriptor, String storedDescriptorsJson) {
-        try {
-            log.debug("Calculating similarity for input descriptor length: {}", inputDescriptor.length);
-            log.debug("Stored descriptors JSON: {}", storedDescriptorsJson);
-            
-            // Try to parse as MediaPipe structure first (array of descriptor objects)
-            try {
-                FaceDescriptorDto[] descriptorObjects = objectMapper.readValue(storedDescriptorsJson, FaceDescriptorDto[].class);
-                
-                double minDistance = Double.MAX_VALUE;
-                
-                // Compare against each stored descriptor using Euclidean distance (same as frontend)
-                for (FaceDescriptorDto descriptorObj : descriptorObjects) {
-                    if (descriptorObj.getDescriptor() != null) {
-                        double[] storedDescriptor = descriptorObj.getDescriptor();
-                        double distance = euclideanDistance(inputDescriptor, storedDescriptor);
-                        minDistance = Math.min(minDistance, distance);
-                        log.debug("Distance to descriptor {}: {}", descriptorObj.getPosition(), distance);
-                    }
-                }
-                
-                // Convert distance to similarity (lower distance = higher similarity)
-                // Use same threshold logic as frontend (0.65 threshold)
-                double similarity = Math.max(0.0, 1.0 - (minDistance / 2.0)); // Normalize distance to similarity
-                log.debug("Final similarity score: {}", similarity);
-                return similarity;
-                
-            } catch (Exception e) {
-                log.warn("Failed to parse as MediaPipe structure, trying legacy format: {}", e.getMessage());
-                
-                // Fallback to legacy format (simple double array)
-                double[][] storedDescriptors = objectMapper.readValue(storedDescriptorsJson, double[][].class);
-                
-                double minDistance = Double.MAX_VALUE;
-                
-                for (double[] storedDescriptor : storedDescriptors) {
-                    double distance = euclideanDistance(inputDescriptor, storedDescriptor);
-                    minDistance = Math.min(minDistance, distance);
-                }
-                
-                return Math.max(0.0, 1.0 - (minDistance / 2.0));
-            }
-            
-        } catch (Exception e) {
-            log.error("Error calculating similarity: ", e);
-            return 0.0;
+    private double calculateSimilarity(double[] inputDescriptor, float[][] storedDescriptors) {
+        log.debug("Calculating similarity for input descriptor length: {}", inputDescriptor.length);
+        
+        // Compare against each stored descriptor using Euclidean distance (same as frontend)
+        double minDistance = Double.MAX_VALUE;
+        for (float[] storedDescriptor : storedDescriptors) {
+            minDistance = Math.min(minDistance, euclideanDistance(inputDescriptor, storedDescriptor));
         }
+        
+        // Convert distance to similarity (lower distance = higher similarity)
+        double similarity = Math.max(0.0, 1.0 - (minDistance / 2.0)); // Normalize distance to similarity
+        log.debug("Final similarity score: {}", similarity);
+        return similarity;
     }
     
-    private double euclideanDistance(double[] desc1, double[] desc2) {
+    private double euclideanDistance(double[] desc1, float[] desc2) {
         if (desc1.length != desc2.length) {
             log.warn("Descriptor length mismatch: {} vs {}", desc1.length, desc2.length);
             return Double.MAX_VALUE;
         }
         
         double distance = 0.0;
-        int minLength = Math.min(desc1.length, desc2.length);
-        
-        for (int i = 0; i < minLength; i++) {
-            distance += Math.pow(desc1[i] - desc2[i], 2);
+        for (int i = 0; i < desc1.length; i++) {
+            double diff = desc1[i] - desc2[i];
+            distance += diff * diff;
         }
         
         return Math.sqrt(distance);
@@ -21,6 +21,7 @@ import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.DayOfWeek;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -31,6 +32,7 @@ public class HariLiburService {
 
     private final HariLiburRepository hariLiburRepository;
     private final RestTemplate restTemplate;
+    private final WorkingCalendar workingCalendar;
     private static final String API_HARILIBUR_URL = "https://api-harilibur.vercel.app/api";
 
     public Page<HariLiburResponse> getAllHariLibur(int page, int size, String namaLibur, Integer tahun, Integer bulan) {
@@ -60,6 +62,7 @@ public class HariLiburService {
                 .build();
 
         HariLibur savedHariLibur = hariLiburRepository.save(hariLibur);
+        workingCalendar.refresh(savedHariLibur.getTanggalLibur().getYear());
         log.info("Hari libur berhasil dibuat: {}", savedHariLibur.getNamaLibur());
         
         return mapToResponse(savedHariLibur);
@@ -75,12 +78,14 @@ public class HariLiburService {
             throw new RuntimeException("Hari libur sudah ada pada tanggal: " + request.getTanggalLibur());
         }
 
+        int tahunLama = existingHariLibur.getTanggalLibur().getYear();
         existingHariLibur.setNamaLibur(request.getNamaLibur());
         existingHariLibur.setTanggalLibur(request.getTanggalLibur());
         existingHariLibur.setIsNasional(request.getIsNasional());
         existingHariLibur.setKeterangan(request.getKeterangan());
 
         HariLibur updatedHariLibur = hariLiburRepository.save(existingHariLibur);
+        workingCalendar.refresh(tahunLama, updatedHariLibur.getTanggalLibur().getYear());
         log.info("Hari libur berhasil diupdate: {}", updatedHariLibur.getNamaLibur());
         
         return mapToResponse(updatedHariLibur);
@@ -92,6 +97,7 @@ public class HariLiburService {
 
         hariLibur.setIsActive(false);
         hariLiburRepository.save(hariLibur);
+        workingCalendar.refresh(hariLibur.getTanggalLibur().getYear());
         
         log.info("Hari libur berhasil dihapus: {}", hariLibur.getNamaLibur());
     }
@@ -163,8 +169,13 @@ public class HariLiburService {
             List<HariLibur> savedHolidays = hariLiburRepository.saveAll(newHolidays);
             
             // Add weekend holidays (Saturday and Sunday) for the year
-            List<HariLibur> weekendHolidays = generateWeekendHolidays(year);
+            Set<LocalDate> nasionalDates = savedHolidays.stream()
+                .filter(holiday -> Boolean.TRUE.equals(holiday.getIsNasional()))
+                .map(HariLibur::getTanggalLibur)
+                .collect(Collectors.toSet());
+            List<HariLibur> weekendHolidays = generateWeekendHolidays(year, nasionalDates);
             List<HariLibur> savedWeekendHolidays = hariLiburRepository.saveAll(weekendHolidays);
+            workingCalendar.refresh(year);
             
             // Combine both lists for response
             savedHolidays.addAll(savedWeekendHolidays);
@@ -197,10 +208,10 @@ public class HariLiburService {
     }
 
     public boolean isHariLibur(LocalDate tanggal) {
-        return hariLiburRepository.existsByTanggalLiburAndIsActiveTrue(tanggal);
+        return workingCalendar.isHariLibur(tanggal);
     }
 
-    private List<HariLibur> generateWeekendHolidays(int year) {
+    private List<HariLibur> generateWeekendHolidays(int year, Set<LocalDate> nasionalDates) {
         List<HariLibur> weekendHolidays = new java.util.ArrayList<>();
         
         LocalDate startDate = LocalDate.of(year, 1, 1);
@@ -212,7 +223,7 @@ public class HariLiburService {
             
             if (dayOfWeek == DayOfWeek.SATURDAY || dayOfWeek == DayOfWeek.SUNDAY) {
                 // Check if this date is not already a national holiday
-                if (!hariLiburRepository.existsByTanggalLiburAndIsNasionalTrueAndIsActiveTrue(currentDate)) {
+                if (!nasionalDates.contains(currentDate)) {
                     String dayName = dayOfWeek == DayOfWeek.SATURDAY ? "Sabtu" : "Minggu";
                     
                     HariLibur weekendHoliday = HariLibur.builder()
@@ -0,0 +1,115 @@
+package com.shadcn.backend.service;
+
+import com.shadcn.backend.entity.Absensi;
+import com.shadcn.backend.model.Cuti;
+import com.shadcn.backend.model.Pegawai;
+import com.shadcn.backend.model.Pemotongan;
+import com.shadcn.backend.repository.AbsensiRepository;
+import com.shadcn.backend.repository.CutiRepository;
+import com.shadcn.backend.repository.PemotonganRepository;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Loads everything the tukin calculation needs for one period in a fixed number
+ * of set-based queries, grouped in memory by pegawai id.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LaporanTukinDataLoader {
+
+    private final AbsensiRepository absensiRepository;
+    private final CutiRepository cutiRepository;
+    private final PemotonganAbsenRules pemotonganAbsenRules;
+    private final PemotonganRepository pemotonganRepository;
+    private final WorkingCalendar workingCalendar;
+
+    /**
+     * Load absensi, approved cuti, deduction rules and pemotongan for the given
+     * pegawai and period.
+     */
+    @Transactional(readOnly = true)
+    public PeriodeData load(List<Pegawai> pegawaiList, LocalDate startDate, LocalDate endDate, Integer bulan, Integer tahun) {
+        Set<Long> pegawaiIds = pegawaiList.stream()
+                .map(Pegawai::getId)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+
+        PemotonganAbsenRules.RuleSet rules = pemotonganAbsenRules.current();
+
+        if (pegawaiIds.isEmpty()) {
+            return new PeriodeData(Map.of(), Map.of(), Map.of(), workingCalendar, rules);
+        }
+
+        Map<Long, List<Absensi>> absensiByPegawai = absensiRepository
+                .findByPegawaiIdInAndTanggalBetween(pegawaiIds, startDate, endDate)
+                .stream()
+                .collect(Collectors.groupingBy(a -> a.getPegawai().getId()));
+
+        Map<Long, List<Cuti>> cutiByPegawai = cutiRepository
+                .findByPegawaiIdInAndTanggalCutiBetweenAndStatusApproval(
+                        pegawaiIds, startDate, endDate, Cuti.StatusApproval.DISETUJUI)
+                .stream()
+                .collect(Collectors.groupingBy(c -> c.getPegawai().getId()));
+
+        Map<Long, List<Pemotongan>> pemotonganByPegawai = pemotonganRepository
+                .findActiveByPegawaiIdInAndPeriode(pegawaiIds, bulan, tahun)
+                .stream()
+                .collect(Collectors.groupingBy(p -> p.getPegawai().getId()));
+
+        log.debug("Loaded tukin period data {} - {} for {} pegawai", startDate, endDate, pegawaiIds.size());
+
+        return new PeriodeData(absensiByPegawai, cutiByPegawai, pemotonganByPegawai, workingCalendar, rules);
+    }
+
+    /**
+     * Immutable, period-scoped view of the data used by the per-pegawai calculators.
+     */
+    @Getter
+    public static class PeriodeData {
+        private final Map<Long, List<Absensi>> absensiByPegawai;
+        private final Map<Long, List<Cuti>> cutiByPegawai;
+        private final Map<Long, List<Pemotongan>> pemotonganByPegawai;
+        private final WorkingCalendar workingCalendar;
+        private final PemotonganAbsenRules.RuleSet pemotonganAbsenRules;
+
+        PeriodeData(Map<Long, List<Absensi>> absensiByPegawai,
+                    Map<Long, List<Cuti>> cutiByPegawai,
+                    Map<Long, List<Pemotongan>> pemotonganByPegawai,
+                    WorkingCalendar workingCalendar,
+                    PemotonganAbsenRules.RuleSet pemotonganAbsenRules) {
+            this.absensiByPegawai = absensiByPegawai;
+            this.cutiByPegawai = cutiByPegawai;
+            this.pemotonganByPegawai = pemotonganByPegawai;
+            this.workingCalendar = workingCalendar;
+            this.pemotonganAbsenRules = pemotonganAbsenRules;
+        }
+
+        public boolean isHariLibur(LocalDate tanggal) {
+            return workingCalendar.isHariLibur(tanggal);
+        }
+
+        public boolean isHariKerja(LocalDate tanggal) {
+            return workingCalendar.isWorkingDay(tanggal);
+        }
+
+        public List<Absensi> getAbsensi(Long pegawaiId) {
+            return absensiByPegawai.getOrDefault(pegawaiId, List.of());
+        }
+
+        public List<Cuti> getApprovedCuti(Long pegawaiId) {
+            return cutiByPegawai.getOrDefault(pegawaiId, List.of());
+        }
+
+        public List<Pemotongan> getPemotongan(Long pegawaiId) {
+            return pemotonganByPegawai.getOrDefault(pegawaiId, List.of());
+        }
+    }
+}
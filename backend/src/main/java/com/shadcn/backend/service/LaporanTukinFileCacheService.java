@@ -0,0 +1,230 @@
+package com.shadcn.backend.service;
+
+import com.shadcn.backend.model.LaporanTukin;
+import com.shadcn.backend.repository.AbsensiRepository;
+import com.shadcn.backend.repository.CutiRepository;
+import com.shadcn.backend.repository.DataVersionProjection;
+import com.shadcn.backend.repository.HariLiburRepository;
+import com.shadcn.backend.repository.PemotonganRepository;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Keeps rendered laporan tukin files on disk under the upload dir, named after a hash of the
+ * data they were rendered from. A file is reused until the laporan or the absensi, cuti,
+ * pemotongan or holidays of its period change, which yields a new hash and a new render.
+ * Superseded renders are deleted by a periodic sweep.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LaporanTukinFileCacheService {
+
+    private static final String CACHE_DIR = "laporan-tukin";
+    // Bump when the Excel or PDF layout changes so files rendered by older code are not served
+    private static final int RENDER_VERSION = 1;
+    // How long a superseded render is kept after the newer one was written
+    private static final Duration STALE_RENDER_GRACE = Duration.ofMinutes(10);
+
+    private final AbsensiRepository absensiRepository;
+    private final CutiRepository cutiRepository;
+    private final PemotonganRepository pemotonganRepository;
+    private final HariLiburRepository hariLiburRepository;
+
+    @Value("${app.upload.dir:uploads}")
+    private String uploadDir;
+
+    private final ConcurrentHashMap<Path, Object> renderLocks = new ConcurrentHashMap<>();
+
+    @FunctionalInterface
+    public interface ReportRenderer {
+        void render(OutputStream outputStream) throws IOException;
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class CachedReport {
+        private final Path path;
+        private final String etag;
+    }
+
+    /**
+     * Return the cached file for the laporan in the given format, rendering it first when the
+     * underlying data changed since the last render.
+     */
+    public CachedReport getOrRender(LaporanTukin laporan, String extension, ReportRenderer renderer) throws IOException {
+        String version = dataVersion(laporan);
+        Path directory = laporanDirectory(laporan.getId());
+        Path file = directory.resolve(version + "." + extension);
+
+        if (!Files.exists(file)) {
+            // Concurrent downloads of the same report render it once
+            Object lock = renderLocks.computeIfAbsent(file, key -> new Object());
+            try {
+                synchronized (lock) {
+                    if (!Files.exists(file)) {
+                        render(directory, file, extension, renderer);
+                    }
+                }
+            } finally {
+                renderLocks.remove(file, lock);
+            }
+        }
+
+        return new CachedReport(file, "\"" + version + "-" + extension + "\"");
+    }
+
+    /**
+     * Cache directory of a laporan relative to the upload dir, as recorded in its file path.
+     */
+    public String cacheDirectory(Long laporanId) {
+        return CACHE_DIR + "/" + laporanId;
+    }
+
+    public void evict(Long laporanId) {
+        Path directory = laporanDirectory(laporanId);
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    log.warn("Gagal menghapus file cache laporan {}: {}", path, e.getMessage());
+                }
+            });
+        } catch (IOException e) {
+            log.warn("Gagal menghapus cache laporan tukin {}: {}", laporanId, e.getMessage());
+        }
+    }
+
+    private void render(Path directory, Path file, String extension, ReportRenderer renderer) throws IOException {
+        Files.createDirectories(directory);
+        Path tempFile = Files.createTempFile(directory, "render-", ".tmp");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tempFile))) {
+                renderer.render(out);
+            }
+            try {
+                Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        log.info("Rendered laporan tukin file {}", file);
+    }
+
+    /**
+     * Delete renders superseded by a newer render of the same format more than
+     * {@link #STALE_RENDER_GRACE} ago. They are not deleted right away because a download
+     * handed to sendfile only opens its file after the controller returns.
+     */
+    @Scheduled(fixedDelay = 600000)
+    public void deleteStaleRenders() {
+        Path root = Paths.get(uploadDir, CACHE_DIR);
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        Instant cutoff = Instant.now().minus(STALE_RENDER_GRACE);
+        try (DirectoryStream<Path> directories = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path directory : directories) {
+                deleteStaleRenders(directory, cutoff);
+            }
+        } catch (IOException e) {
+            log.warn("Gagal membersihkan cache laporan tukin: {}", e.getMessage());
+        }
+    }
+
+    private void deleteStaleRenders(Path directory, Instant cutoff) throws IOException {
+        // Renders per format, newest first; render-*.tmp files are renders in progress
+        Map<String, List<Path>> renders = new HashMap<>();
+        try (Stream<Path> paths = Files.list(directory)) {
+            paths.filter(path -> !path.getFileName().toString().endsWith(".tmp"))
+                    .sorted(Comparator.comparing(LaporanTukinFileCacheService::lastModified).reversed())
+                    .forEach(path -> renders.computeIfAbsent(extension(path), key -> new ArrayList<>()).add(path));
+        }
+        for (List<Path> paths : renders.values()) {
+            if (paths.size() < 2 || lastModified(paths.get(0)).toInstant().isAfter(cutoff)) {
+                continue;
+            }
+            for (Path stale : paths.subList(1, paths.size())) {
+                Files.deleteIfExists(stale);
+            }
+        }
+    }
+
+    private static FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static String extension(Path path) {
+        String name = path.getFileName().toString();
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+
+    private String dataVersion(LaporanTukin laporan) {
+        StringBuilder key = new StringBuilder()
+                .append(RENDER_VERSION).append('|')
+                .append(laporan.getId()).append('|')
+                .append(laporan.getJudul()).append('|')
+                .append(laporan.getStatus()).append('|')
+                .append(laporan.getTanggalGenerate());
+        appendVersion(key, absensiRepository.findDataVersionByTanggalBetween(
+                laporan.getTanggalMulai(), laporan.getTanggalAkhir()));
+        appendVersion(key, cutiRepository.findDataVersionByTanggalCutiBetween(
+                laporan.getTanggalMulai(), laporan.getTanggalAkhir()));
+        appendVersion(key, pemotonganRepository.findDataVersionByPeriode(laporan.getBulan(), laporan.getTahun()));
+        appendVersion(key, hariLiburRepository.findDataVersionByTanggalLiburBetween(
+                laporan.getTanggalMulai(), laporan.getTanggalAkhir()));
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 tidak tersedia", e);
+        }
+    }
+
+    private void appendVersion(StringBuilder key, DataVersionProjection version) {
+        key.append('|').append(version.getJumlah()).append('|').append(version.getTerakhirDiubah());
+    }
+
+    private Path laporanDirectory(Long laporanId) {
+        return Paths.get(uploadDir, CACHE_DIR, String.valueOf(laporanId));
+    }
+}
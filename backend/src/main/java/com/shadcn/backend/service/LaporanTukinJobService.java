@@ -0,0 +1,161 @@
+package com.shadcn.backend.service;
+
+import com.shadcn.backend.config.props.LaporanTukinProperties;
+import com.shadcn.backend.dto.LaporanTukinJobResponse;
+import com.shadcn.backend.dto.LaporanTukinRequest;
+import com.shadcn.backend.dto.LaporanTukinResponse;
+import com.shadcn.backend.model.Pegawai;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs laporan tukin generation in the background and keeps the job state in memory
+ * so the client can poll for progress instead of holding a request open.
+ */
+@Service
+@Slf4j
+public class LaporanTukinJobService {
+
+    public static final String STATUS_QUEUED = "QUEUED";
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_COMPLETED = "COMPLETED";
+    public static final String STATUS_FAILED = "FAILED";
+
+    private final LaporanTukinService laporanTukinService;
+    private final LaporanTukinProperties laporanTukinProperties;
+    private final ThreadPoolTaskExecutor laporanTukinJobExecutor;
+    private final TransactionTemplate jobTransactionTemplate;
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    public LaporanTukinJobService(LaporanTukinService laporanTukinService,
+                                  LaporanTukinProperties laporanTukinProperties,
+                                  @Qualifier("laporanTukinJobExecutor") ThreadPoolTaskExecutor laporanTukinJobExecutor,
+                                  PlatformTransactionManager transactionManager) {
+        this.laporanTukinService = laporanTukinService;
+        this.laporanTukinProperties = laporanTukinProperties;
+        this.laporanTukinJobExecutor = laporanTukinJobExecutor;
+        this.jobTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.jobTransactionTemplate.setTimeout(laporanTukinProperties.getJobTimeoutSeconds());
+    }
+
+    /**
+     * Queue a generate request and return its job straight away.
+     */
+    public LaporanTukinJobResponse submit(LaporanTukinRequest request, Pegawai currentUser) {
+        Job job = new Job(UUID.randomUUID().toString(), request.getBulan(), request.getTahun());
+        jobs.put(job.id, job);
+
+        try {
+            laporanTukinJobExecutor.execute(() -> run(job, request, currentUser));
+        } catch (TaskRejectedException e) {
+            jobs.remove(job.id);
+            throw new RuntimeException("Terlalu banyak laporan yang sedang digenerate, silakan coba lagi nanti");
+        }
+
+        log.info("Queued laporan tukin job {} for periode {}/{} by {}",
+                job.id, request.getBulan(), request.getTahun(), currentUser.getUsername());
+        return job.toResponse();
+    }
+
+    public LaporanTukinJobResponse getJob(String jobId) {
+        Job job = jobs.get(jobId);
+        if (job == null) {
+            throw new RuntimeException("Job laporan tidak ditemukan: " + jobId);
+        }
+        return job.toResponse();
+    }
+
+    private void run(Job job, LaporanTukinRequest request, Pegawai currentUser) {
+        job.status = STATUS_RUNNING;
+        job.startedAt = LocalDateTime.now();
+
+        try {
+            LaporanTukinResponse laporan = jobTransactionTemplate.execute(status ->
+                    laporanTukinService.generateLaporanTukin(request, currentUser, job));
+
+            // The detail is served from the saved laporan; keep only the summary on the job
+            laporan.setDetailPegawai(null);
+            job.laporan = laporan;
+            job.status = STATUS_COMPLETED;
+            log.info("Laporan tukin job {} completed, laporan id {}", job.id, laporan.getId());
+        } catch (Exception e) {
+            log.error("Laporan tukin job {} failed: ", job.id, e);
+            job.errorMessage = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            job.status = STATUS_FAILED;
+        } finally {
+            job.finishedAt = LocalDateTime.now();
+        }
+    }
+
+    @Scheduled(fixedDelay = 600000)
+    public void evictFinishedJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(laporanTukinProperties.getJobRetentionMinutes());
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(cutoff));
+    }
+
+    private static class Job implements LaporanTukinService.ProgressListener {
+        private final String id;
+        private final Integer bulan;
+        private final Integer tahun;
+        private final LocalDateTime createdAt = LocalDateTime.now();
+        private final AtomicInteger processed = new AtomicInteger();
+        private volatile int total;
+        private volatile String status = STATUS_QUEUED;
+        private volatile LaporanTukinResponse laporan;
+        private volatile String errorMessage;
+        private volatile LocalDateTime startedAt;
+        private volatile LocalDateTime finishedAt;
+
+        Job(String id, Integer bulan, Integer tahun) {
+            this.id = id;
+            this.bulan = bulan;
+            this.tahun = tahun;
+        }
+
+        @Override
+        public void started(int totalPegawai) {
+            total = totalPegawai;
+        }
+
+        @Override
+        public void pegawaiProcessed() {
+            processed.incrementAndGet();
+        }
+
+        LaporanTukinJobResponse toResponse() {
+            // Read status first: the result fields are written before the status changes
+            String currentStatus = status;
+            int done = processed.get();
+            int all = total;
+            LaporanTukinResponse result = laporan;
+            return LaporanTukinJobResponse.builder()
+                    .jobId(id)
+                    .status(currentStatus)
+                    .bulan(bulan)
+                    .tahun(tahun)
+                    .processed(done)
+                    .total(all)
+                    .progressPersen(all > 0 ? done * 100 / all : 0)
+                    .laporanId(result != null ? result.getId() : null)
+                    .laporan(result)
+                    .errorMessage(errorMessage)
+                    .createdAt(createdAt)
+                    .startedAt(startedAt)
+                    .finishedAt(finishedAt)
+                    .build();
+        }
+    }
+}
@@ -1,20 +1,19 @@
 package com.shadcn.backend.service;
 
+import com.shadcn.backend.config.props.LaporanTukinProperties;
 import com.shadcn.backend.dto.LaporanTukinRequest;
 import com.shadcn.backend.dto.LaporanTukinResponse;
 import com.shadcn.backend.entity.Absensi;
-import com.shadcn.backend.entity.PemotonganAbsen;
 import com.shadcn.backend.model.LaporanTukin;
 import com.shadcn.backend.model.Pegawai;
 import com.shadcn.backend.model.Pemotongan;
-import com.shadcn.backend.model.HariLibur;
 import com.shadcn.backend.model.Cuti;
 import com.shadcn.backend.repository.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.ss.util.CellRangeAddress;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -38,6 +37,7 @@ import com.lowagie.text.pdf.CMYKColor;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
@@ -45,6 +45,8 @@ import java.time.LocalTime;
 import java.time.Duration;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -56,13 +58,37 @@ public class LaporanTukinService {
     
     private final LaporanTukinRepository laporanTukinRepository;
     private final PegawaiRepository pegawaiRepository;
-    private final AbsensiRepository absensiRepository;
-    private final PemotonganAbsenRepository pemotonganAbsenRepository;
-    private final PemotonganRepository pemotonganRepository;
-    private final HariLiburRepository hariLiburRepository;
-    private final CutiRepository cutiRepository;
+    private final WorkingCalendar workingCalendar;
+    private final ShiftSchedules shiftSchedules;
+    private final LaporanTukinDataLoader laporanTukinDataLoader;
+    private final LaporanTukinSnapshotService laporanTukinSnapshotService;
+    private final LaporanTukinFileCacheService laporanTukinFileCacheService;
+    private final LaporanTukinProperties laporanTukinProperties;
+    private final ForkJoinPool laporanTukinCalculationPool;
     
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    // Rows of the PDF summary table rendered per chunk before they are released
+    private static final int PDF_TABLE_FLUSH_ROWS = 50;
+    
+    /**
+     * Receives per-pegawai progress while a laporan is generated. Calls may come from
+     * several threads when the calculation runs in parallel.
+     */
+    public interface ProgressListener {
+        ProgressListener NONE = new ProgressListener() {
+            @Override
+            public void started(int totalPegawai) {
+            }
+            
+            @Override
+            public void pegawaiProcessed() {
+            }
+        };
+        
+        void started(int totalPegawai);
+        
+        void pegawaiProcessed();
+    }
     
     public LaporanTukinResponse generateLaporanTukin(LaporanTukinRequest request) {
         log.info("Generating laporan tukin for periode: {}/{}", request.getBulan(), request.getTahun());
@@ -76,6 +102,10 @@ public class LaporanTukinService {
     }
     
     public LaporanTukinResponse generateLaporanTukin(LaporanTukinRequest request, Pegawai currentUser) {
+        return generateLaporanTukin(request, currentUser, ProgressListener.NONE);
+    }
+    
+    public LaporanTukinResponse generateLaporanTukin(LaporanTukinRequest request, Pegawai currentUser, ProgressListener progressListener) {
         log.info("Generating laporan tukin for periode: {}/{}", request.getBulan(), request.getTahun());
         
         // Validate and calculate date range
@@ -109,23 +139,25 @@ public class LaporanTukinService {
                     specificPegawai.getNamaLengkap(), specificPegawai.getNip());
         } else {
             // Admin report - for all active employees
-            targetPegawai = pegawaiRepository.findByIsActive(true);
+            targetPegawai = pegawaiRepository.findByIsActiveWithJabatanAndLokasi(true);
             log.info("Generating admin laporan tukin for {} active employees", targetPegawai.size());
         }
         
+        // Load the whole period once instead of querying per employee
+        LaporanTukinDataLoader.PeriodeData periodeData = laporanTukinDataLoader.load(
+            targetPegawai, startDate, endDate, request.getBulan(), request.getTahun());
+        
         // Calculate tukin for each employee
-        List<LaporanTukinResponse.DetailPegawaiTukin> detailPegawai = new ArrayList<>();
+        progressListener.started(targetPegawai.size());
+        List<LaporanTukinResponse.DetailPegawaiTukin> detailPegawai = calculateDetailPegawai(
+            targetPegawai, periodeData, startDate, endDate, progressListener);
         BigDecimal totalTunjanganKinerja = BigDecimal.ZERO;
         BigDecimal totalPotonganAbsen = BigDecimal.ZERO;
         BigDecimal totalPemotongan = BigDecimal.ZERO;
         BigDecimal totalTunjanganBersih = BigDecimal.ZERO;
         
-        for (Pegawai pegawai : targetPegawai) {
-            LaporanTukinResponse.DetailPegawaiTukin detail = calculateTukinForPegawaiWithEnhancedDetail(
-                pegawai, startDate, endDate, request.getBulan(), request.getTahun());
-            detailPegawai.add(detail);
-            
-            // Sum totals
+        // Sum totals in pegawai order so the result does not depend on how the detail was calculated
+        for (LaporanTukinResponse.DetailPegawaiTukin detail : detailPegawai) {
             if (detail.getTunjanganKinerja() != null) {
                 totalTunjanganKinerja = totalTunjanganKinerja.add(BigDecimal.valueOf(detail.getTunjanganKinerja()));
             }
@@ -176,6 +208,10 @@ public class LaporanTukinService {
                 .build();
         
         LaporanTukin savedLaporan = laporanTukinRepository.save(laporan);
+        savedLaporan.setFilePath(laporanTukinFileCacheService.cacheDirectory(savedLaporan.getId()));
+        
+        // Keep the computed detail so views and downloads do not recalculate it
+        laporanTukinSnapshotService.saveDetail(savedLaporan.getId(), detailPegawai);
         
         // Build response
         return LaporanTukinResponse.builder()
@@ -199,23 +235,23 @@ public class LaporanTukinService {
     }
     
     private LaporanTukinResponse.DetailPegawaiTukin calculateTukinForPegawai(
-            Pegawai pegawai, LocalDate startDate, LocalDate endDate, Integer bulan, Integer tahun) {
+            Pegawai pegawai, LaporanTukinDataLoader.PeriodeData periodeData, LocalDate startDate, LocalDate endDate) {
         
         // Base tunjangan kinerja
         Long tunjanganKinerja = pegawai.getTunjanganKinerja() != null ? pegawai.getTunjanganKinerja() : 0L;
         BigDecimal baseTunjangan = BigDecimal.valueOf(tunjanganKinerja);
         
         // Calculate attendance-based deductions
-        Map<String, Object> statistikAbsen = calculateAbsensiStats(pegawai, startDate, endDate);
-        BigDecimal potonganAbsen = calculatePotonganAbsen(pegawai, statistikAbsen, baseTunjangan, startDate, endDate);
+        Map<String, Object> statistikAbsen = calculateAbsensiStats(pegawai, periodeData, startDate, endDate);
+        BigDecimal potonganAbsen = calculatePotonganAbsen(
+            generateEnhancedHistoriAbsensi(pegawai, periodeData, startDate, endDate), baseTunjangan);
         
         // Generate detailed attendance history and deduction breakdown
-        List<LaporanTukinResponse.HistoriAbsensi> historiAbsensi = generateHistoriAbsensi(pegawai, startDate, endDate);
-        List<LaporanTukinResponse.DetailPemotonganAbsen> detailPemotonganAbsenList = generateDetailPemotonganAbsen(pegawai, statistikAbsen, baseTunjangan, startDate, endDate);
+        List<LaporanTukinResponse.HistoriAbsensi> historiAbsensi = generateHistoriAbsensi(pegawai, periodeData, startDate, endDate);
+        List<LaporanTukinResponse.DetailPemotonganAbsen> detailPemotonganAbsenList = generateDetailPemotonganAbsen(pegawai, periodeData, statistikAbsen, baseTunjangan, startDate, endDate);
         
         // Get other deductions for this period
-        List<Pemotongan> pemotonganList = pemotonganRepository.findByPegawaiIdAndBulanPemotonganAndTahunPemotonganAndIsActiveTrue(
-            pegawai.getId(), bulan, tahun);
+        List<Pemotongan> pemotonganList = periodeData.getPemotongan(pegawai.getId());
         
         BigDecimal pemotonganLain = pemotonganList.stream()
                 .map(p -> {
@@ -314,7 +350,7 @@ public class LaporanTukinService {
                 .tunjanganKinerja(tunjanganKinerja)
                 .statistikAbsen(statistikAbsen)
                 .potonganAbsen(potonganAbsen)
-                .detailPotonganAbsen(buildDetailPotonganAbsen(statistikAbsen))
+                .detailPotonganAbsen(buildDetailPotonganAbsen(statistikAbsen, periodeData.getPemotonganAbsenRules()))
                 .pemotonganLain(pemotonganLain)
                 .detailPemotonganLain(detailPemotonganLain)
                 .totalPotongan(totalPotongan)
@@ -328,23 +364,12 @@ public class LaporanTukinService {
                 .build();
     }
     
-    private Map<String, Object> calculateAbsensiStats(Pegawai pegawai, LocalDate startDate, LocalDate endDate) {
-        List<Absensi> absensiList = absensiRepository.findByPegawaiAndTanggalBetween(pegawai, startDate, endDate);
+    private Map<String, Object> calculateAbsensiStats(Pegawai pegawai, LaporanTukinDataLoader.PeriodeData periodeData,
+                                                      LocalDate startDate, LocalDate endDate) {
+        List<Absensi> absensiList = periodeData.getAbsensi(pegawai.getId());
         
-        // Get holidays for the period
-        List<HariLibur> hariLiburList = hariLiburRepository.findByTanggalLiburBetweenAndIsActiveTrue(startDate, endDate);
-        Set<LocalDate> hariLiburDates = hariLiburList.stream()
-            .map(HariLibur::getTanggalLibur)
-            .collect(Collectors.toSet());
-
-        // Get approved cuti dates for the period
-        List<Cuti> cutiListForStats = cutiRepository
-            .findByPegawaiAndTanggalCutiBetweenOrderByCreatedAtDesc(pegawai, startDate, endDate, Pageable.unpaged())
-            .getContent()
-            .stream()
-            .filter(c -> c.getStatusApproval() == Cuti.StatusApproval.DISETUJUI)
-            .collect(Collectors.toList());
-        Set<LocalDate> cutiDates = cutiListForStats.stream()
+        // Approved cuti dates for the period
+        Set<LocalDate> cutiDates = periodeData.getApprovedCuti(pegawai.getId()).stream()
             .map(Cuti::getTanggalCuti)
             .collect(Collectors.toSet());
         
@@ -368,7 +393,7 @@ public class LaporanTukinService {
         LocalDate today = LocalDate.now();
         while (!currentDate.isAfter(endDate)) {
             // Skip weekends (assuming Saturday=6, Sunday=7) and holidays
-            if (currentDate.getDayOfWeek().getValue() < 6 && !hariLiburDates.contains(currentDate)) {
+            if (periodeData.isHariKerja(currentDate)) {
                 // Only count past and present days for statistics, not future days
                 if (!currentDate.isAfter(today)) {
                     totalHariKerja++;
@@ -392,20 +417,21 @@ public class LaporanTukinService {
                             
                             // Check for late arrival and early departure based on shift
                             for (Absensi absen : dayAbsensi) {
+                                ShiftSchedules.Jadwal jadwal = shiftSchedules.get(absen);
                                 if (absen.getType() == Absensi.AbsensiType.MASUK && 
-                                    absen.getShift() != null && 
-                                    absen.getShift().getJamMasuk() != null) {
+                                    jadwal != null && 
+                                    jadwal.getJamMasuk() != null) {
                                     
-                                    LocalTime shiftJamMasuk = LocalTime.parse(absen.getShift().getJamMasuk());
+                                    LocalTime shiftJamMasuk = jadwal.getJamMasuk();
                                     if (absen.getWaktu().isAfter(shiftJamMasuk)) {
                                         totalTerlambat++;
                                         totalTerlambatMenit += (int) Duration.between(shiftJamMasuk, absen.getWaktu()).toMinutes();
                                     }
                                 } else if (absen.getType() == Absensi.AbsensiType.PULANG && 
-                                           absen.getShift() != null && 
-                                           absen.getShift().getJamKeluar() != null) {
+                                           jadwal != null && 
+                                           jadwal.getJamKeluar() != null) {
                                     
-                                    LocalTime shiftJamKeluar = LocalTime.parse(absen.getShift().getJamKeluar());
+                                    LocalTime shiftJamKeluar = jadwal.getJamKeluar();
                                     if (absen.getWaktu().isBefore(shiftJamKeluar)) {
                                         totalPulangCepat++;
                                         totalPulangCepatMenit += (int) Duration.between(absen.getWaktu(), shiftJamKeluar).toMinutes();
@@ -433,16 +459,11 @@ public class LaporanTukinService {
         return stats;
     }
     
-    private BigDecimal calculatePotonganAbsen(Pegawai pegawai, Map<String, Object> statistikAbsen, BigDecimal baseTunjangan, LocalDate startDate, LocalDate endDate) {
+    private BigDecimal calculatePotonganAbsen(List<LaporanTukinResponse.HistoriAbsensi> historiAbsensi, BigDecimal baseTunjangan) {
         if (baseTunjangan.compareTo(BigDecimal.ZERO) == 0) {
             return BigDecimal.ZERO;
         }
         
-        // Get the enhanced attendance history which has accurate daily deduction calculations
-        List<LaporanTukinResponse.HistoriAbsensi> historiAbsensi = generateEnhancedHistoriAbsensi(
-            pegawai, startDate, endDate
-        );
-        
         // Sum up all daily deductions from the enhanced history
         BigDecimal totalPemotongan = historiAbsensi.stream()
                 .filter(h -> h.getNominalPemotongan() != null)
@@ -455,9 +476,9 @@ public class LaporanTukinService {
         return totalPemotongan;
     }
     
-    private List<LaporanTukinResponse.HistoriAbsensi> generateHistoriAbsensi(Pegawai pegawai, LocalDate startDate, LocalDate endDate) {
-        List<Absensi> absensiList = absensiRepository.findByPegawaiAndTanggalBetween(
-            pegawai, startDate, endDate);
+    private List<LaporanTukinResponse.HistoriAbsensi> generateHistoriAbsensi(Pegawai pegawai, LaporanTukinDataLoader.PeriodeData periodeData,
+                                                                            LocalDate startDate, LocalDate endDate) {
+        List<Absensi> absensiList = periodeData.getAbsensi(pegawai.getId());
         
         // Group by date and type (MASUK/PULANG)
         Map<LocalDate, Map<Absensi.AbsensiType, Absensi>> absensiByDateAndType = absensiList.stream()
@@ -495,8 +516,9 @@ public class LaporanTukinService {
                     keterangan = absenMasuk.getKeterangan() != null ? absenMasuk.getKeterangan() : "";
                     
                     // Check if late based on shift schedule
-                    if (absenMasuk.getShift() != null && absenMasuk.getShift().getJamMasuk() != null) {
-                        LocalTime shiftJamMasuk = LocalTime.parse(absenMasuk.getShift().getJamMasuk());
+                    ShiftSchedules.Jadwal jadwalMasuk = shiftSchedules.get(absenMasuk);
+                    if (jadwalMasuk != null && jadwalMasuk.getJamMasuk() != null) {
+                        LocalTime shiftJamMasuk = jadwalMasuk.getJamMasuk();
                         if (absenMasuk.getWaktu().isAfter(shiftJamMasuk)) {
                             menitTerlambat = (int) Duration.between(shiftJamMasuk, absenMasuk.getWaktu()).toMinutes();
                             statusMasuk = "TERLAMBAT";
@@ -512,8 +534,9 @@ public class LaporanTukinService {
                     statusPulang = "HADIR";
                     
                     // Check if early departure based on shift schedule
-                    if (absenPulang.getShift() != null && absenPulang.getShift().getJamKeluar() != null) {
-                        LocalTime shiftJamKeluar = LocalTime.parse(absenPulang.getShift().getJamKeluar());
+                    ShiftSchedules.Jadwal jadwalPulang = shiftSchedules.get(absenPulang);
+                    if (jadwalPulang != null && jadwalPulang.getJamKeluar() != null) {
+                        LocalTime shiftJamKeluar = jadwalPulang.getJamKeluar();
                         if (absenPulang.getWaktu().isBefore(shiftJamKeluar)) {
                             menitPulangCepat = (int) Duration.between(absenPulang.getWaktu(), shiftJamKeluar).toMinutes();
                             statusPulang = "PULANG_CEPAT";
@@ -557,35 +580,16 @@ public class LaporanTukinService {
         return historiAbsensi;
     }
     
-    private List<LaporanTukinResponse.HistoriAbsensi> generateEnhancedHistoriAbsensi(Pegawai pegawai, LocalDate startDate, LocalDate endDate) {
-        List<Absensi> absensiList = absensiRepository.findByPegawaiAndTanggalBetween(
-            pegawai, startDate, endDate);
+    private List<LaporanTukinResponse.HistoriAbsensi> generateEnhancedHistoriAbsensi(Pegawai pegawai, LaporanTukinDataLoader.PeriodeData periodeData,
+                                                                                    LocalDate startDate, LocalDate endDate) {
+        List<Absensi> absensiList = periodeData.getAbsensi(pegawai.getId());
         
-        // Get approved cuti for the period
-        List<Cuti> cutiList = cutiRepository.findByPegawaiAndTanggalCutiBetweenOrderByCreatedAtDesc(
-            pegawai, startDate, endDate, Pageable.unpaged()).getContent()
-            .stream()
-            .filter(c -> c.getStatusApproval() == Cuti.StatusApproval.DISETUJUI)
-            .collect(Collectors.toList());
-        
-        // Create map for quick cuti lookup
-        Map<LocalDate, Cuti> cutiByDate = cutiList.stream()
+        // Create map for quick lookup of approved cuti (latest request wins)
+        Map<LocalDate, Cuti> cutiByDate = periodeData.getApprovedCuti(pegawai.getId()).stream()
             .collect(Collectors.toMap(Cuti::getTanggalCuti, Function.identity(), (existing, replacement) -> existing));
         
-        // Get holidays for the period to exclude from deductions
-        List<HariLibur> hariLiburList = hariLiburRepository.findByTanggalLiburBetweenAndIsActiveTrue(startDate, endDate);
-        Set<LocalDate> hariLiburDates = hariLiburList.stream()
-            .map(HariLibur::getTanggalLibur)
-            .collect(Collectors.toSet());
-        
-        // Get pemotongan rules for percentage calculation
-        List<PemotonganAbsen> pemotonganRules = pemotonganAbsenRepository.findAllActiveOrderByKode();
-        Map<String, BigDecimal> rulePercentages = pemotonganRules.stream()
-                .collect(Collectors.toMap(
-                    PemotonganAbsen::getKode,
-                    PemotonganAbsen::getPersentase,
-                    (existing, replacement) -> existing
-                ));
+        // Pemotongan rules for percentage calculation
+        PemotonganAbsenRules.RuleSet rules = periodeData.getPemotonganAbsenRules();
         
         // Group by date and type (MASUK/PULANG)
         Map<LocalDate, Map<Absensi.AbsensiType, Absensi>> absensiByDateAndType = absensiList.stream()
@@ -664,23 +668,15 @@ public class LaporanTukinService {
                     keterangan = absenMasuk.getKeterangan() != null ? absenMasuk.getKeterangan() : "";
                     
                     // Check if late based on shift schedule
-                    if (absenMasuk.getShift() != null && absenMasuk.getShift().getJamMasuk() != null) {
-                        LocalTime shiftJamMasuk = LocalTime.parse(absenMasuk.getShift().getJamMasuk());
+                    ShiftSchedules.Jadwal jadwalMasuk = shiftSchedules.get(absenMasuk);
+                    if (jadwalMasuk != null && jadwalMasuk.getJamMasuk() != null) {
+                        LocalTime shiftJamMasuk = jadwalMasuk.getJamMasuk();
                         if (absenMasuk.getWaktu().isAfter(shiftJamMasuk)) {
                             menitTerlambat = (int) Duration.between(shiftJamMasuk, absenMasuk.getWaktu()).toMinutes();
                             statusMasuk = "TERLAMBAT";
                             
                             // Determine appropriate late penalty based on minutes
-                            BigDecimal percentage;
-                            if (menitTerlambat <= 30) {
-                                percentage = rulePercentages.getOrDefault("TL0", BigDecimal.valueOf(0.00));
-                            } else if (menitTerlambat <= 60) {
-                                percentage = rulePercentages.getOrDefault("TL1", BigDecimal.valueOf(0.50));
-                            } else if (menitTerlambat <= 90) {
-                                percentage = rulePercentages.getOrDefault("TL2", BigDecimal.valueOf(1.25));
-                            } else {
-                                percentage = rulePercentages.getOrDefault("TL3", BigDecimal.valueOf(2.50));
-                            }
+                            BigDecimal percentage = rules.persentaseTerlambat(menitTerlambat);
                             
                             // Only mark as having deduction if percentage > 0
                             if (percentage.compareTo(BigDecimal.ZERO) > 0) {
@@ -694,7 +690,7 @@ public class LaporanTukinService {
                     }
                 } else {
                     // No check-in record
-                    BigDecimal percentage = rulePercentages.getOrDefault("TIDAK_MASUK", BigDecimal.valueOf(2.5));
+                    BigDecimal percentage = rules.persentase(PemotonganAbsenRules.Kode.TIDAK_MASUK);
                     detailPemotongan.add("Tidak masuk (" + percentage + "%)");
                 }
                 
@@ -705,21 +701,15 @@ public class LaporanTukinService {
                     statusPulang = "HADIR";
                     
                     // Check if early departure based on shift schedule
-                    if (absenPulang.getShift() != null && absenPulang.getShift().getJamKeluar() != null) {
-                        LocalTime shiftJamKeluar = LocalTime.parse(absenPulang.getShift().getJamKeluar());
+                    ShiftSchedules.Jadwal jadwalPulang = shiftSchedules.get(absenPulang);
+                    if (jadwalPulang != null && jadwalPulang.getJamKeluar() != null) {
+                        LocalTime shiftJamKeluar = jadwalPulang.getJamKeluar();
                         if (absenPulang.getWaktu().isBefore(shiftJamKeluar)) {
                             menitPulangCepat = (int) Duration.between(absenPulang.getWaktu(), shiftJamKeluar).toMinutes();
                             statusPulang = "PULANG_CEPAT";
                             
                             // Determine appropriate early departure penalty based on minutes
-                            BigDecimal percentage;
-                            if (menitPulangCepat <= 30) {
-                                percentage = rulePercentages.getOrDefault("PSW1", BigDecimal.valueOf(0.50));
-                            } else if (menitPulangCepat <= 60) {
-                                percentage = rulePercentages.getOrDefault("PSW2", BigDecimal.valueOf(1.25));
-                            } else {
-                                percentage = rulePercentages.getOrDefault("PSW3", BigDecimal.valueOf(2.50));
-                            }
+                            BigDecimal percentage = rules.persentasePulangCepat(menitPulangCepat);
                             
                             detailPemotongan.add("Pulang cepat " + menitPulangCepat + " menit (" + percentage + "%)");
                         }
@@ -730,7 +720,7 @@ public class LaporanTukinService {
                     }
                 } else if (absenMasuk != null) {
                     // Has check-in but no check-out - Lupa Absen Pulang
-                    BigDecimal percentage = rulePercentages.getOrDefault("LAP", BigDecimal.valueOf(2.5));
+                    BigDecimal percentage = rules.persentase(PemotonganAbsenRules.Kode.LAP);
                     detailPemotongan.add("Lupa absen pulang (" + percentage + "%)");
                 }
                 
@@ -742,7 +732,7 @@ public class LaporanTukinService {
                         keterangan = "Belum terjadi";
                     } else {
                         // Already handled cuti earlier; treat as tidak absen
-                            BigDecimal percentage = rulePercentages.getOrDefault("TA", BigDecimal.valueOf(5.0));
+                            BigDecimal percentage = rules.persentase(PemotonganAbsenRules.Kode.TA);
                             detailPemotongan.add("Tidak absen (" + percentage + "%)");
                     }
                 }
@@ -754,7 +744,7 @@ public class LaporanTukinService {
                     keterangan = "Belum terjadi";
                 } else {
                     // Check if it's a holiday first
-                    if (hariLiburDates.contains(currentDate)) {
+                    if (periodeData.isHariLibur(currentDate)) {
                         statusMasuk = "LIBUR";
                         statusPulang = "LIBUR";
                         keterangan = "Hari Libur";
@@ -762,7 +752,7 @@ public class LaporanTukinService {
                     } else {
                             // No attendance record and no cuti and no holiday - Tidak Absen
                             keterangan = "Tidak ada data absensi";
-                            BigDecimal percentage = rulePercentages.getOrDefault("TA", BigDecimal.valueOf(5.0));
+                            BigDecimal percentage = rules.persentase(PemotonganAbsenRules.Kode.TA);
                             detailPemotongan.add("Tidak absen (" + percentage + "%)");
                     }
                 }
@@ -778,16 +768,7 @@ public class LaporanTukinService {
             
             if (statusMasuk.equals("TERLAMBAT")) {
                 // Calculate late penalty based on minutes
-                BigDecimal percentage;
-                if (menitTerlambat <= 30) {
-                    percentage = rulePercentages.getOrDefault("TL0", BigDecimal.valueOf(0.00));
-                } else if (menitTerlambat <= 60) {
-                    percentage = rulePercentages.getOrDefault("TL1", BigDecimal.valueOf(0.50));
-                } else if (menitTerlambat <= 90) {
-                    percentage = rulePercentages.getOrDefault("TL2", BigDecimal.valueOf(1.25));
-                } else {
-                    percentage = rulePercentages.getOrDefault("TL3", BigDecimal.valueOf(2.50));
-                }
+                BigDecimal percentage = rules.persentaseTerlambat(menitTerlambat);
                 
                 // NEW RULE: Check for overtime compensation for late arrival (31-90 minutes only)
                 // Only minutes ABOVE 30 need compensation at 2x rate
@@ -795,8 +776,9 @@ public class LaporanTukinService {
                 
                 if (menitTerlambat > 30 && menitTerlambat <= 90 && absenPulang != null) {
                     // Calculate overtime minutes (working beyond scheduled end time)
-                    if (absenPulang.getShift() != null && absenPulang.getShift().getJamKeluar() != null) {
-                        LocalTime shiftJamKeluar = LocalTime.parse(absenPulang.getShift().getJamKeluar());
+                    ShiftSchedules.Jadwal jadwalPulang = shiftSchedules.get(absenPulang);
+                    if (jadwalPulang != null && jadwalPulang.getJamKeluar() != null) {
+                        LocalTime shiftJamKeluar = jadwalPulang.getJamKeluar();
                         if (absenPulang.getWaktu().isAfter(shiftJamKeluar)) {
                             int overtimeMinutes = (int) Duration.between(shiftJamKeluar, absenPulang.getWaktu()).toMinutes();
                             
@@ -833,14 +815,7 @@ public class LaporanTukinService {
             
             if (statusPulang.equals("PULANG_CEPAT")) {
                 // Calculate early departure penalty based on minutes
-                BigDecimal percentage;
-                if (menitPulangCepat <= 30) {
-                    percentage = rulePercentages.getOrDefault("PSW1", BigDecimal.valueOf(0.50));
-                } else if (menitPulangCepat <= 60) {
-                    percentage = rulePercentages.getOrDefault("PSW2", BigDecimal.valueOf(1.25));
-                } else {
-                    percentage = rulePercentages.getOrDefault("PSW3", BigDecimal.valueOf(2.50));
-                }
+                BigDecimal percentage = rules.persentasePulangCepat(menitPulangCepat);
                 actuallyHasPemotongan = true;
                 dailyPercentage = dailyPercentage.add(percentage);
                 combinedStatus = statusMasuk.equals("TERLAMBAT") ? "TERLAMBAT + PULANG CEPAT" : "PULANG CEPAT";
@@ -856,19 +831,19 @@ public class LaporanTukinService {
                 combinedStatus = "MENDATANG";
                 actuallyHasPemotongan = false; // No deduction for future dates
             } else if (statusMasuk.equals("ALPHA") || (absenMasuk == null && absenPulang == null && !statusMasuk.equals("CUTI") && !statusMasuk.equals("LIBUR") && !statusMasuk.equals("MENDATANG"))) {
-                BigDecimal percentage = rulePercentages.getOrDefault("TA", BigDecimal.valueOf(5.0));
+                BigDecimal percentage = rules.persentase(PemotonganAbsenRules.Kode.TA);
                 actuallyHasPemotongan = true;
                 dailyPercentage = percentage;
                 combinedStatus = "ALPHA";
             } else if (absenMasuk != null && absenPulang == null) {
                 // Lupa Absen Pulang
-                BigDecimal percentage = rulePercentages.getOrDefault("LAP", BigDecimal.valueOf(2.5));
+                BigDecimal percentage = rules.persentase(PemotonganAbsenRules.Kode.LAP);
                 actuallyHasPemotongan = true;
                 dailyPercentage = dailyPercentage.add(percentage);
                 combinedStatus = statusMasuk.equals("TERLAMBAT") ? "TERLAMBAT + LUPA ABSEN PULANG" : "LUPA ABSEN PULANG";
             } else if (absenMasuk == null && absenPulang != null) {
                 // Lupa Absen Masuk
-                BigDecimal percentage = rulePercentages.getOrDefault("LAM", BigDecimal.valueOf(2.5));
+                BigDecimal percentage = rules.persentase(PemotonganAbsenRules.Kode.LAM);
                 actuallyHasPemotongan = true;
                 dailyPercentage = dailyPercentage.add(percentage);
                 combinedStatus = "LUPA ABSEN MASUK";
@@ -891,12 +866,13 @@ public class LaporanTukinService {
             String lockLokasi = null;
             
             // Use shift info from attendance records if available
-            if (absenMasuk != null && absenMasuk.getShift() != null) {
-                namaShift = absenMasuk.getShift().getNamaShift();
-                lockLokasi = absenMasuk.getShift().getLockLokasi();
-            } else if (absenPulang != null && absenPulang.getShift() != null) {
-                namaShift = absenPulang.getShift().getNamaShift();
-                lockLokasi = absenPulang.getShift().getLockLokasi();
+            ShiftSchedules.Jadwal jadwalAbsen = absenMasuk != null ? shiftSchedules.get(absenMasuk) : null;
+            if (jadwalAbsen == null && absenPulang != null) {
+                jadwalAbsen = shiftSchedules.get(absenPulang);
+            }
+            if (jadwalAbsen != null) {
+                namaShift = jadwalAbsen.getNamaShift();
+                lockLokasi = jadwalAbsen.getLockLokasi();
             }
             
             // Combine keterangan with pemotongan details
@@ -932,19 +908,18 @@ public class LaporanTukinService {
     }
     
     private List<LaporanTukinResponse.DetailPemotonganAbsen> generateDetailPemotonganAbsen(
-            Pegawai pegawai, Map<String, Object> statistikAbsen, BigDecimal baseTunjangan, 
-            LocalDate startDate, LocalDate endDate) {
+            Pegawai pegawai, LaporanTukinDataLoader.PeriodeData periodeData, Map<String, Object> statistikAbsen,
+            BigDecimal baseTunjangan, LocalDate startDate, LocalDate endDate) {
         
         List<LaporanTukinResponse.DetailPemotonganAbsen> detailList = new ArrayList<>();
         
-        // Get deduction rules
-        List<PemotonganAbsen> pemotonganAbsenRules = pemotonganAbsenRepository.findAllActiveOrderByKode();
+        // Deduction rules
+        List<PemotonganAbsenRules.RuleSet.Rule> pemotonganAbsenRules = periodeData.getPemotonganAbsenRules().getActiveRules();
         
-        // Get attendance data for the period
-        List<Absensi> absensiList = absensiRepository.findByPegawaiAndTanggalBetween(
-            pegawai, startDate, endDate);
+        // Attendance data for the period
+        List<Absensi> absensiList = periodeData.getAbsensi(pegawai.getId());
         
-        for (PemotonganAbsen rule : pemotonganAbsenRules) {
+        for (PemotonganAbsenRules.RuleSet.Rule rule : pemotonganAbsenRules) {
             String kode = rule.getKode();
             List<String> tanggalKejadian = new ArrayList<>();
             int jumlahKejadian = 0;
@@ -953,12 +928,12 @@ public class LaporanTukinService {
             switch (kode) {
                 case "ALPA":
                     // Count days without any check-in or check-out record
+                    Set<LocalDate> attendanceDates = absensiList.stream()
+                        .map(Absensi::getTanggal)
+                        .collect(Collectors.toSet());
+                    
                     LocalDate checkDate = startDate;
                     while (!checkDate.isAfter(endDate)) {
-                        Set<LocalDate> attendanceDates = absensiList.stream()
-                            .map(Absensi::getTanggal)
-                            .collect(Collectors.toSet());
-                        
                         if (!attendanceDates.contains(checkDate)) {
                             tanggalKejadian.add(checkDate.toString());
                             jumlahKejadian++;
@@ -970,12 +945,13 @@ public class LaporanTukinService {
                 case "TERLAMBAT":
                     // Count late arrivals based on shift schedule
                     for (Absensi absensi : absensiList) {
+                        ShiftSchedules.Jadwal jadwal = shiftSchedules.get(absensi);
                         if (absensi.getType() == Absensi.AbsensiType.MASUK &&
                             absensi.getWaktu() != null && 
-                            absensi.getShift() != null && 
-                            absensi.getShift().getJamMasuk() != null) {
+                            jadwal != null && 
+                            jadwal.getJamMasuk() != null) {
                             
-                            LocalTime shiftJamMasuk = LocalTime.parse(absensi.getShift().getJamMasuk());
+                            LocalTime shiftJamMasuk = jadwal.getJamMasuk();
                             if (absensi.getWaktu().isAfter(shiftJamMasuk)) {
                                 tanggalKejadian.add(absensi.getTanggal().toString());
                                 jumlahKejadian++;
@@ -987,12 +963,13 @@ public class LaporanTukinService {
                 case "PULANG_CEPAT":
                     // Count early departures based on shift schedule
                     for (Absensi absensi : absensiList) {
+                        ShiftSchedules.Jadwal jadwal = shiftSchedules.get(absensi);
                         if (absensi.getType() == Absensi.AbsensiType.PULANG &&
                             absensi.getWaktu() != null && 
-                            absensi.getShift() != null && 
-                            absensi.getShift().getJamKeluar() != null) {
+                            jadwal != null && 
+                            jadwal.getJamKeluar() != null) {
                             
-                            LocalTime shiftJamKeluar = LocalTime.parse(absensi.getShift().getJamKeluar());
+                            LocalTime shiftJamKeluar = jadwal.getJamKeluar();
                             if (absensi.getWaktu().isBefore(shiftJamKeluar)) {
                                 tanggalKejadian.add(absensi.getTanggal().toString());
                                 jumlahKejadian++;
@@ -1061,18 +1038,9 @@ public class LaporanTukinService {
         return detailList;
     }
 
-    private String buildDetailPotonganAbsen(Map<String, Object> statistikAbsen) {
+    private String buildDetailPotonganAbsen(Map<String, Object> statistikAbsen, PemotonganAbsenRules.RuleSet rules) {
         List<String> details = new ArrayList<>();
         
-        // Get pemotongan absen rules to display actual percentages
-        List<PemotonganAbsen> rules = pemotonganAbsenRepository.findAllActiveOrderByKode();
-        Map<String, BigDecimal> rulePercentages = rules.stream()
-                .collect(Collectors.toMap(
-                    PemotonganAbsen::getKode,
-                    PemotonganAbsen::getPersentase,
-                    (existing, replacement) -> existing
-                ));
-        
         int totalAlpha = (Integer) statistikAbsen.get("totalAlpha");
         int totalTerlambat = (Integer) statistikAbsen.get("totalTerlambat");
         int totalPulangCepat = (Integer) statistikAbsen.get("totalPulangCepat");
@@ -1080,17 +1048,15 @@ public class LaporanTukinService {
         int totalPulangCepatMenit = (Integer) statistikAbsen.get("totalPulangCepatMenit");
         
         if (totalAlpha > 0) {
-            BigDecimal percentage = rulePercentages.getOrDefault("TA", BigDecimal.valueOf(5.0));
+            BigDecimal percentage = rules.persentase(PemotonganAbsenRules.Kode.TA);
             details.add("Tidak absen: " + totalAlpha + " hari (" + percentage + "% per hari)");
         }
         if (totalTerlambat > 0) {
-            BigDecimal percentage = rulePercentages.getOrDefault("TERLAMBAT", 
-                rulePercentages.getOrDefault("T40", BigDecimal.valueOf(0.5)));
+            BigDecimal percentage = rules.persentaseOr(PemotonganAbsenRules.Kode.TERLAMBAT, PemotonganAbsenRules.Kode.T40);
             details.add("Terlambat: " + totalTerlambat + " kali, " + totalTerlambatMenit + " menit (" + percentage + "%)");
         }
         if (totalPulangCepat > 0) {
-            BigDecimal percentage = rulePercentages.getOrDefault("PULANG_CEPAT", 
-                rulePercentages.getOrDefault("PC70", BigDecimal.valueOf(2.5)));
+            BigDecimal percentage = rules.persentaseOr(PemotonganAbsenRules.Kode.PULANG_CEPAT, PemotonganAbsenRules.Kode.PC70);
             details.add("Pulang Cepat: " + totalPulangCepat + " kali, " + totalPulangCepatMenit + " menit (" + percentage + "%)");
         }
         
@@ -1125,6 +1091,19 @@ public class LaporanTukinService {
         LaporanTukin laporan = laporanTukinRepository.findById(laporanId)
                 .orElseThrow(() -> new RuntimeException("Laporan tidak ditemukan"));
         
+        return getDetailPegawai(laporan, pegawaiId);
+    }
+    
+    /**
+     * Detail per pegawai for a saved laporan: served from the snapshot taken at generation time,
+     * or recalculated for laporan generated before snapshots were stored.
+     */
+    private List<LaporanTukinResponse.DetailPegawaiTukin> getDetailPegawai(LaporanTukin laporan, Long pegawaiId) {
+        return laporanTukinSnapshotService.findDetail(laporan.getId(), pegawaiId)
+                .orElseGet(() -> recalculateDetailPegawai(laporan, pegawaiId));
+    }
+    
+    private List<LaporanTukinResponse.DetailPegawaiTukin> recalculateDetailPegawai(LaporanTukin laporan, Long pegawaiId) {
         LocalDate startDate = laporan.getTanggalMulai();
         LocalDate endDate = laporan.getTanggalAkhir();
         
@@ -1136,38 +1115,74 @@ public class LaporanTukinService {
             pegawaiList = List.of(pegawai);
         } else {
             // Get all active employees
-            pegawaiList = pegawaiRepository.findByIsActive(true);
+            pegawaiList = pegawaiRepository.findByIsActiveWithJabatanAndLokasi(true);
         }
         
-        List<LaporanTukinResponse.DetailPegawaiTukin> detailPegawai = new ArrayList<>();
+        LaporanTukinDataLoader.PeriodeData periodeData = laporanTukinDataLoader.load(
+            pegawaiList, startDate, endDate, laporan.getBulan(), laporan.getTahun());
         
-        for (Pegawai pegawai : pegawaiList) {
-            LaporanTukinResponse.DetailPegawaiTukin detail = calculateTukinForPegawaiWithEnhancedDetail(
-                pegawai, startDate, endDate, laporan.getBulan(), laporan.getTahun());
-            detailPegawai.add(detail);
+        return calculateDetailPegawai(pegawaiList, periodeData, startDate, endDate, ProgressListener.NONE);
+    }
+    
+    /**
+     * Calculate the detail of every pegawai against preloaded period data. Large reports are
+     * fanned out over the laporan tukin pool; the result keeps the order of {@code pegawaiList}.
+     * Package-private for LaporanTukinBenchmark, which measures it without the database.
+     */
+    List<LaporanTukinResponse.DetailPegawaiTukin> calculateDetailPegawai(
+            List<Pegawai> pegawaiList, LaporanTukinDataLoader.PeriodeData periodeData, LocalDate startDate, LocalDate endDate,
+            ProgressListener progressListener) {
+        
+        boolean parallel = Boolean.TRUE.equals(laporanTukinProperties.getParallelEnabled())
+                && pegawaiList.size() >= laporanTukinProperties.getParallelThreshold();
+        
+        if (!parallel) {
+            List<LaporanTukinResponse.DetailPegawaiTukin> detailPegawai = new ArrayList<>(pegawaiList.size());
+            for (Pegawai pegawai : pegawaiList) {
+                detailPegawai.add(calculateTukinForPegawaiWithEnhancedDetail(pegawai, periodeData, startDate, endDate));
+                progressListener.pegawaiProcessed();
+            }
+            return detailPegawai;
         }
         
-        return detailPegawai;
+        log.info("Calculating tukin for {} pegawai in parallel (parallelism {})", 
+                pegawaiList.size(), laporanTukinCalculationPool.getParallelism());
+        try {
+            return laporanTukinCalculationPool.submit(() -> pegawaiList.parallelStream()
+                    .map(pegawai -> {
+                        LaporanTukinResponse.DetailPegawaiTukin detail = calculateTukinForPegawaiWithEnhancedDetail(
+                            pegawai, periodeData, startDate, endDate);
+                        progressListener.pegawaiProcessed();
+                        return detail;
+                    })
+                    .collect(Collectors.toList()))
+                    .get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Perhitungan tukin dibatalkan", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new RuntimeException("Gagal menghitung tukin: " + e.getCause().getMessage(), e.getCause());
+        }
     }
     
     private LaporanTukinResponse.DetailPegawaiTukin calculateTukinForPegawaiWithEnhancedDetail(
-            Pegawai pegawai, LocalDate startDate, LocalDate endDate, Integer bulan, Integer tahun) {
+            Pegawai pegawai, LaporanTukinDataLoader.PeriodeData periodeData, LocalDate startDate, LocalDate endDate) {
         
         // Base tunjangan kinerja
         Long tunjanganKinerja = pegawai.getTunjanganKinerja() != null ? pegawai.getTunjanganKinerja() : 0L;
         BigDecimal baseTunjangan = BigDecimal.valueOf(tunjanganKinerja);
         
-        // Calculate attendance-based deductions
-        Map<String, Object> statistikAbsen = calculateAbsensiStats(pegawai, startDate, endDate);
-        BigDecimal potonganAbsen = calculatePotonganAbsen(pegawai, statistikAbsen, baseTunjangan, startDate, endDate);
-        
-        // Generate enhanced attendance history with deduction details
-        List<LaporanTukinResponse.HistoriAbsensi> historiAbsensi = generateEnhancedHistoriAbsensi(pegawai, startDate, endDate);
-        List<LaporanTukinResponse.DetailPemotonganAbsen> detailPemotonganAbsenList = generateDetailPemotonganAbsen(pegawai, statistikAbsen, baseTunjangan, startDate, endDate);
+        // Generate enhanced attendance history with deduction details (also the source of potongan absen)
+        Map<String, Object> statistikAbsen = calculateAbsensiStats(pegawai, periodeData, startDate, endDate);
+        List<LaporanTukinResponse.HistoriAbsensi> historiAbsensi = generateEnhancedHistoriAbsensi(pegawai, periodeData, startDate, endDate);
+        BigDecimal potonganAbsen = calculatePotonganAbsen(historiAbsensi, baseTunjangan);
+        List<LaporanTukinResponse.DetailPemotonganAbsen> detailPemotonganAbsenList = generateDetailPemotonganAbsen(pegawai, periodeData, statistikAbsen, baseTunjangan, startDate, endDate);
         
-        // Get other deductions for this period
-        List<Pemotongan> pemotonganList = pemotonganRepository.findByPegawaiIdAndBulanPemotonganAndTahunPemotonganAndIsActiveTrue(
-            pegawai.getId(), bulan, tahun);
+        // Other deductions for this period
+        List<Pemotongan> pemotonganList = periodeData.getPemotongan(pegawai.getId());
         
         BigDecimal pemotonganLain = pemotonganList.stream()
                 .map(p -> {
@@ -1266,7 +1281,7 @@ public class LaporanTukinService {
                 .tunjanganKinerja(tunjanganKinerja)
                 .statistikAbsen(statistikAbsen)
                 .potonganAbsen(potonganAbsen)
-                .detailPotonganAbsen(buildDetailPotonganAbsen(statistikAbsen))
+                .detailPotonganAbsen(buildDetailPotonganAbsen(statistikAbsen, periodeData.getPemotonganAbsenRules()))
                 .pemotonganLain(pemotonganLain)
                 .detailPemotonganLain(detailPemotonganLain)
                 .totalPotongan(totalPotongan)
@@ -1302,29 +1317,7 @@ public class LaporanTukinService {
     }
     
     private LaporanTukinResponse convertToResponseWithDetail(LaporanTukin laporan, Long pegawaiId) {
-        // Regenerate detail data based on saved report parameters
-        LocalDate startDate = laporan.getTanggalMulai();
-        LocalDate endDate = laporan.getTanggalAkhir();
-        
-        List<Pegawai> pegawaiList;
-        if (pegawaiId != null) {
-            // Get specific pegawai
-            Pegawai pegawai = pegawaiRepository.findById(pegawaiId)
-                    .orElseThrow(() -> new RuntimeException("Pegawai tidak ditemukan"));
-            pegawaiList = List.of(pegawai);
-        } else {
-            // Get all active employees
-            pegawaiList = pegawaiRepository.findByIsActive(true);
-        }
-        
-        // Calculate tukin for each employee using the same period
-        List<LaporanTukinResponse.DetailPegawaiTukin> detailPegawai = new ArrayList<>();
-        
-        for (Pegawai pegawai : pegawaiList) {
-            LaporanTukinResponse.DetailPegawaiTukin detail = calculateTukinForPegawaiWithEnhancedDetail(
-                pegawai, startDate, endDate, laporan.getBulan(), laporan.getTahun());
-            detailPegawai.add(detail);
-        }
+        List<LaporanTukinResponse.DetailPegawaiTukin> detailPegawai = getDetailPegawai(laporan, pegawaiId);
         
         return LaporanTukinResponse.builder()
                 .id(laporan.getId())
@@ -1380,51 +1373,86 @@ public class LaporanTukinService {
         return months[month - 1];
     }
     
-    public byte[] generateExcelReport(Long laporanId) throws IOException {
-        // Get laporan data
+    /**
+     * Rendered Excel report from the file cache, rendered again only when its data changed.
+     */
+    public LaporanTukinFileCacheService.CachedReport getExcelReportFile(Long laporanId) throws IOException {
         LaporanTukin laporan = laporanTukinRepository.findById(laporanId)
                 .orElseThrow(() -> new RuntimeException("Laporan tidak ditemukan"));
         
-        LaporanTukinResponse laporanResponse = getLaporanByIdWithDetail(laporanId);
-        List<LaporanTukinResponse.DetailPegawaiTukin> rincianData = getRincianDetailPerPegawai(laporanId, null);
-        
-        // Get holiday data for the period
-        List<HariLibur> holidays = hariLiburRepository.findByBulanLiburAndTahunLiburAndIsActiveTrueOrderByTanggalLiburAsc(
-                laporan.getBulan(), laporan.getTahun());
-        
-        // Create workbook
-        Workbook workbook = new XSSFWorkbook();
-        
-        // Create styles
-        CellStyle headerStyle = createHeaderStyle(workbook);
-        CellStyle titleStyle = createTitleStyle(workbook);
-        CellStyle emptyHeaderStyle = createEmptyHeaderStyle(workbook);
-        CellStyle dataStyle = createDataStyle(workbook);
-        CellStyle dateStyle = createDateStyle(workbook);
-        CellStyle currencyStyle = createCurrencyStyle(workbook);
-        CellStyle cappedCurrencyStyle = createCappedCurrencyStyle(workbook);
-        CellStyle holidayStyle = createHolidayStyle(workbook);
-        CellStyle nameStyle = createNameStyle(workbook);
-        CellStyle numberStyle = createNumberStyle(workbook);
-        
-        // Sheet 1: Input Absensi Hadir
-        createInputAbsensiSheet(workbook, rincianData, laporan, holidays, titleStyle, headerStyle, emptyHeaderStyle, dataStyle, dateStyle, holidayStyle, nameStyle, numberStyle, currencyStyle);
-        
-        // Sheet 2: Rekapitulasi Pemotongan Tunjangan Kinerja
-        createRekapitulasiPemotonganSheet(workbook, rincianData, laporan, titleStyle, headerStyle, emptyHeaderStyle, dataStyle, currencyStyle);
-        
-        // Sheet 3: Summary Kehadiran (REKAP ABSENSI PEGAWAI PPPK)
-        createSummaryKehadiranSheet(workbook, rincianData, laporan, titleStyle, headerStyle, dataStyle);
-        
-        // Sheet 4: Detail Tunjangan Kinerja Per Pegawai
-        createDetailTunjanganSheet(workbook, laporanResponse, titleStyle, headerStyle, dataStyle, currencyStyle, cappedCurrencyStyle);
+        return laporanTukinFileCacheService.getOrRender(laporan, "xlsx", out -> writeExcelReport(laporanId, out));
+    }
+    
+    /**
+     * Write the full Excel report to the given stream. Rows are flushed to a temp file once
+     * they leave the row window, so memory stays bounded regardless of the number of pegawai.
+     */
+    public void writeExcelReport(Long laporanId, OutputStream outputStream) throws IOException {
+        // Get laporan data
+        LaporanTukin laporan = laporanTukinRepository.findById(laporanId)
+                .orElseThrow(() -> new RuntimeException("Laporan tidak ditemukan"));
         
-        // Write to byte array
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        workbook.write(outputStream);
-        workbook.close();
+        List<LaporanTukinResponse.DetailPegawaiTukin> rincianData = getDetailPegawai(laporan, null);
+        LaporanTukinResponse laporanResponse = convertToResponse(laporan);
+        laporanResponse.setDetailPegawai(rincianData);
         
-        return outputStream.toByteArray();
+        SXSSFWorkbook workbook = createStreamingWorkbook();
+        try {
+            ExcelStyles styles = new ExcelStyles(workbook);
+            
+            // Sheet 1: Input Absensi Hadir
+            createInputAbsensiSheet(workbook, rincianData, laporan, styles.title, styles.header, styles.emptyHeader, styles.data, styles.date, styles.holiday, styles.name, styles.number, styles.currency);
+            
+            // Sheet 2: Rekapitulasi Pemotongan Tunjangan Kinerja
+            createRekapitulasiPemotonganSheet(workbook, rincianData, laporan, styles.title, styles.header, styles.emptyHeader, styles.data, styles.currency);
+            
+            // Sheet 3: Summary Kehadiran (REKAP ABSENSI PEGAWAI PPPK)
+            createSummaryKehadiranSheet(workbook, rincianData, laporan, styles.title, styles.header, styles.data);
+            
+            // Sheet 4: Detail Tunjangan Kinerja Per Pegawai
+            createDetailTunjanganSheet(workbook, laporanResponse, styles.title, styles.header, styles.data, styles.currency, styles.cappedCurrency);
+            
+            workbook.write(outputStream);
+        } finally {
+            workbook.close();
+            workbook.dispose();
+        }
+    }
+    
+    private SXSSFWorkbook createStreamingWorkbook() {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(laporanTukinProperties.getExcelRowWindow());
+        workbook.setCompressTempFiles(true);
+        return workbook;
+    }
+    
+    /**
+     * Cell styles for one workbook, created once and shared by all sheets. Workbooks have a
+     * limited number of styles, so they must not be created per sheet or per cell.
+     */
+    private final class ExcelStyles {
+        private final CellStyle header;
+        private final CellStyle title;
+        private final CellStyle emptyHeader;
+        private final CellStyle data;
+        private final CellStyle date;
+        private final CellStyle currency;
+        private final CellStyle cappedCurrency;
+        private final CellStyle holiday;
+        private final CellStyle name;
+        private final CellStyle number;
+        
+        private ExcelStyles(Workbook workbook) {
+            this.header = createHeaderStyle(workbook);
+            this.title = createTitleStyle(workbook);
+            this.emptyHeader = createEmptyHeaderStyle(workbook);
+            this.data = createDataStyle(workbook);
+            this.date = createDateStyle(workbook);
+            this.currency = createCurrencyStyle(workbook);
+            this.cappedCurrency = createCappedCurrencyStyle(workbook);
+            this.holiday = createHolidayStyle(workbook);
+            this.name = createNameStyle(workbook);
+            this.number = createNumberStyle(workbook);
+        }
     }
     
     private CellStyle createHeaderStyle(Workbook workbook) {
@@ -1616,7 +1644,7 @@ public class LaporanTukinService {
     }
     
     private void createInputAbsensiSheet(Workbook workbook, List<LaporanTukinResponse.DetailPegawaiTukin> rincianData,
-                                       LaporanTukin laporan, List<HariLibur> holidays,
+                                       LaporanTukin laporan,
                                        CellStyle titleStyle, CellStyle headerStyle, CellStyle emptyHeaderStyle, 
                                        CellStyle dataStyle, CellStyle dateStyle, CellStyle holidayStyle,
                                        CellStyle nameStyle, CellStyle numberStyle, CellStyle currencyStyle) {
@@ -1632,9 +1660,6 @@ public class LaporanTukinService {
         // Get dates in month (working days only)
         LocalDate startDate = laporan.getTanggalMulai();
         LocalDate endDate = laporan.getTanggalAkhir();
-        Set<LocalDate> holidayDates = holidays.stream()
-                .map(HariLibur::getTanggalLibur)
-                .collect(Collectors.toSet());
         
         List<LocalDate> workingDates = new ArrayList<>();
         LocalDate currentDate = startDate;
@@ -1686,7 +1711,7 @@ public class LaporanTukinService {
         for (LocalDate date : workingDates) {
             Cell dateCell = dateHeaderRow.createCell(colIndex);
             dateCell.setCellValue(date.getDayOfMonth());
-            CellStyle dateStyleToUse = holidayDates.contains(date) ? holidayStyle : headerStyle;
+            CellStyle dateStyleToUse = workingCalendar.isHariLibur(date) ? holidayStyle : headerStyle;
             dateCell.setCellStyle(dateStyleToUse);
             
             // Merge 3 columns for each date (K, M, P) and fill for proper borders
@@ -1714,7 +1739,7 @@ public class LaporanTukinService {
             Cell dayCell = dayHeaderRow.createCell(colIndex);
             String dayName = dayNames[date.getDayOfWeek().getValue() % 7];
             dayCell.setCellValue(dayName);
-            CellStyle dayStyleToUse = holidayDates.contains(date) ? holidayStyle : headerStyle;
+            CellStyle dayStyleToUse = workingCalendar.isHariLibur(date) ? holidayStyle : headerStyle;
             dayCell.setCellStyle(dayStyleToUse);
             
             // Merge 3 columns for day name and fill for proper borders
@@ -1740,7 +1765,7 @@ public class LaporanTukinService {
         
         colIndex = 3;
         for (LocalDate date : workingDates) {
-            CellStyle styleToUse = holidayDates.contains(date) ? holidayStyle : headerStyle;
+            CellStyle styleToUse = workingCalendar.isHariLibur(date) ? holidayStyle : headerStyle;
             
             Cell kCell = kmpHeaderRow.createCell(colIndex++);
             kCell.setCellValue("K");
@@ -1788,7 +1813,7 @@ public class LaporanTukinService {
                 String dateStr = date.toString();
                 LaporanTukinResponse.HistoriAbsensi attendance = attendanceMap.get(dateStr);
                 
-                CellStyle styleToUse = holidayDates.contains(date) ? holidayStyle : dataStyle;
+                CellStyle styleToUse = workingCalendar.isHariLibur(date) ? holidayStyle : dataStyle;
                 
                 // K (Kehadiran) - determine based on attendance and shift status
                 Cell kCell = row.createCell(colIndex++);
@@ -1865,6 +1890,7 @@ public class LaporanTukinService {
     private void createRekapitulasiPemotonganSheet(Workbook workbook, List<LaporanTukinResponse.DetailPegawaiTukin> rincianData,
                                                  LaporanTukin laporan, CellStyle titleStyle, CellStyle headerStyle, CellStyle emptyHeaderStyle, CellStyle dataStyle, CellStyle currencyStyle) {
         Sheet sheet = workbook.createSheet("Rekapitulasi Pemotongan");
+        CellStyle cappedPersenStyle = getCappedCurrencyStyle(workbook);
         
         // Create title
         Row titleRow = sheet.createRow(0);
@@ -2081,7 +2107,7 @@ public class LaporanTukinService {
             
             // Apply bold style if capped at 100%
             if (pegawai.getIsTotalCapped() != null && pegawai.getIsTotalCapped()) {
-                persenCell.setCellStyle(getCappedCurrencyStyle(workbook));
+                persenCell.setCellStyle(cappedPersenStyle);
             } else {
                 persenCell.setCellStyle(dataStyle);
             }
@@ -2397,17 +2423,30 @@ public class LaporanTukinService {
     }
     
     // PDF Generation Method
-    public byte[] generatePDFReport(Long laporanId) throws IOException {
+    /**
+     * Rendered PDF report from the file cache, rendered again only when its data changed.
+     */
+    public LaporanTukinFileCacheService.CachedReport getPDFReportFile(Long laporanId) throws IOException {
         LaporanTukin laporan = laporanTukinRepository.findById(laporanId)
                 .orElseThrow(() -> new RuntimeException("Laporan tidak ditemukan"));
         
-        LaporanTukinResponse response = getLaporanByIdWithDetail(laporanId);
+        return laporanTukinFileCacheService.getOrRender(laporan, "pdf", out -> writePDFReport(laporanId, out));
+    }
+    
+    /**
+     * Write the PDF report to the given stream. Pages are written out as they fill up and the
+     * stream is flushed after each pegawai, so the document is never held in memory as a whole.
+     */
+    public void writePDFReport(Long laporanId, OutputStream outputStream) throws IOException {
+        LaporanTukin laporan = laporanTukinRepository.findById(laporanId)
+                .orElseThrow(() -> new RuntimeException("Laporan tidak ditemukan"));
         
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        LaporanTukinResponse response = convertToResponseWithDetail(laporan, null);
         
         try {
             Document document = new Document(PageSize.A4.rotate()); // Landscape untuk tabel lebar
-            PdfWriter.getInstance(document, baos);
+            PdfWriter writer = PdfWriter.getInstance(document, outputStream);
+            writer.setCloseStream(false);
             document.open();
             
             // Header
@@ -2439,10 +2478,11 @@ public class LaporanTukinService {
             
             document.add(summaryTable);
             
-            // Detail pegawai table
+            // Detail pegawai table, added in chunks so rendered rows are released
             PdfPTable detailTable = new PdfPTable(11);
             detailTable.setWidthPercentage(100);
             detailTable.setWidths(new float[]{3, 8, 12, 10, 8, 10, 5, 8, 8, 8, 10});
+            detailTable.setComplete(false);
             
             // Headers
             String[] headers = {"No", "NIP", "Nama Pegawai", "Jabatan", "Lokasi", 
@@ -2481,10 +2521,16 @@ public class LaporanTukinService {
                     detailTable.addCell(createDataCell(formatCurrency(pegawai.getPemotonganLain() != null ? pegawai.getPemotonganLain() : BigDecimal.ZERO), normalFont, Element.ALIGN_RIGHT));
                     detailTable.addCell(createDataCell(formatCurrency(pegawai.getTotalPotongan() != null ? pegawai.getTotalPotongan() : BigDecimal.ZERO), normalFont, Element.ALIGN_RIGHT));
                     detailTable.addCell(createDataCell(formatCurrency(pegawai.getTunjanganBersih() != null ? pegawai.getTunjanganBersih() : BigDecimal.ZERO), normalFont, Element.ALIGN_RIGHT));
+                    
+                    if ((i + 1) % PDF_TABLE_FLUSH_ROWS == 0) {
+                        document.add(detailTable);
+                    }
                 }
             }
             
+            detailTable.setComplete(true);
             document.add(detailTable);
+            writer.flush();
             
             // Add daily breakdown table with percentage deductions
             document.add(new Paragraph(" "));
@@ -2600,6 +2646,7 @@ public class LaporanTukinService {
                     
                     document.add(dailyTable);
                     document.add(new Paragraph(" ")); // Space between employees
+                    writer.flush();
                 }
             }
             
@@ -2616,8 +2663,6 @@ public class LaporanTukinService {
         } catch (DocumentException e) {
             throw new IOException("Error generating PDF: " + e.getMessage(), e);
         }
-        
-        return baos.toByteArray();
     }
     
     private void addSummaryCell(PdfPTable table, String label, String value, com.lowagie.text.Font headerFont, com.lowagie.text.Font normalFont) {
@@ -2652,11 +2697,11 @@ public class LaporanTukinService {
         return generateExcelReportForPegawai(laporanId, pegawaiId);
     }
     
-    public byte[] generatePDFReportPersonal(Long laporanId, Long pegawaiId) throws IOException {
+    public void writePDFReportPersonal(Long laporanId, Long pegawaiId, OutputStream outputStream) throws IOException {
         log.info("Generating personal PDF report for laporan: {}, pegawai: {}", laporanId, pegawaiId);
         
         // Use modified method that only gets data for specific pegawai  
-        return generatePDFReportForPegawai(laporanId, pegawaiId);
+        writePDFReportForPegawai(laporanId, pegawaiId, outputStream);
     }
     
     private byte[] generateExcelReportForPegawai(Long laporanId, Long pegawaiId) throws IOException {
@@ -2664,54 +2709,44 @@ public class LaporanTukinService {
                 .orElseThrow(() -> new RuntimeException("Laporan tidak ditemukan"));
         
         // Get data only for the specific pegawai
-        List<LaporanTukinResponse.DetailPegawaiTukin> rincianData = getRincianDetailPerPegawai(laporanId, pegawaiId);
-        
-        // Get holidays for the period
-        List<HariLibur> holidays = hariLiburRepository.findByTanggalLiburBetweenAndIsActiveTrue(
-                laporan.getTanggalMulai(), laporan.getTanggalAkhir());
-        
-        Workbook workbook = new XSSFWorkbook();
-        
-        // Create styles
-        CellStyle titleStyle = createTitleStyle(workbook);
-        CellStyle headerStyle = createHeaderStyle(workbook);
-        CellStyle emptyHeaderStyle = createEmptyHeaderStyle(workbook);
-        CellStyle dataStyle = createDataStyle(workbook);
-        CellStyle dateStyle = createDateStyle(workbook);
-        CellStyle holidayStyle = createHolidayStyle(workbook);
-        CellStyle nameStyle = createNameStyle(workbook);
-        CellStyle numberStyle = createNumberStyle(workbook);
-        CellStyle currencyStyle = createCurrencyStyle(workbook);
-        
-        // Create sheets with personal data only
-        createInputAbsensiSheet(workbook, rincianData, laporan, holidays, 
-                              titleStyle, headerStyle, emptyHeaderStyle, dataStyle, 
-                              dateStyle, holidayStyle, nameStyle, numberStyle, currencyStyle);
-        createRekapitulasiPemotonganSheet(workbook, rincianData, laporan, 
-                                        titleStyle, headerStyle, dataStyle, nameStyle, currencyStyle);
-        createSummaryKehadiranSheet(workbook, rincianData, laporan, 
-                                  titleStyle, headerStyle, dataStyle);
-        // Use overloaded method for personal reports with filtered data
-        createDetailTunjanganSheet(workbook, laporan, rincianData,
-                                 titleStyle, headerStyle, dataStyle, nameStyle, currencyStyle);
+        List<LaporanTukinResponse.DetailPegawaiTukin> rincianData = getDetailPegawai(laporan, pegawaiId);
         
+        SXSSFWorkbook workbook = createStreamingWorkbook();
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        workbook.write(outputStream);
-        workbook.close();
+        try {
+            ExcelStyles styles = new ExcelStyles(workbook);
+            
+            // Create sheets with personal data only
+            createInputAbsensiSheet(workbook, rincianData, laporan, 
+                                  styles.title, styles.header, styles.emptyHeader, styles.data, 
+                                  styles.date, styles.holiday, styles.name, styles.number, styles.currency);
+            createRekapitulasiPemotonganSheet(workbook, rincianData, laporan, 
+                                            styles.title, styles.header, styles.data, styles.name, styles.currency);
+            createSummaryKehadiranSheet(workbook, rincianData, laporan, 
+                                      styles.title, styles.header, styles.data);
+            // Use overloaded method for personal reports with filtered data
+            createDetailTunjanganSheet(workbook, laporan, rincianData,
+                                     styles.title, styles.header, styles.data, styles.name, styles.currency);
+            
+            workbook.write(outputStream);
+        } finally {
+            workbook.close();
+            workbook.dispose();
+        }
         
         return outputStream.toByteArray();
     }
     
-    private byte[] generatePDFReportForPegawai(Long laporanId, Long pegawaiId) throws IOException {
+    private void writePDFReportForPegawai(Long laporanId, Long pegawaiId, OutputStream outputStream) throws IOException {
         LaporanTukin laporan = laporanTukinRepository.findById(laporanId)
                 .orElseThrow(() -> new RuntimeException("Laporan tidak ditemukan"));
         
         // Get data only for the specific pegawai
-        List<LaporanTukinResponse.DetailPegawaiTukin> rincianData = getRincianDetailPerPegawai(laporanId, pegawaiId);
+        List<LaporanTukinResponse.DetailPegawaiTukin> rincianData = getDetailPegawai(laporan, pegawaiId);
         
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
         Document document = new Document(PageSize.A4);
-        PdfWriter.getInstance(document, baos);
+        PdfWriter writer = PdfWriter.getInstance(document, outputStream);
+        writer.setCloseStream(false);
         
         document.open();
         
@@ -3112,7 +3147,6 @@ public class LaporanTukinService {
         document.add(footerTable);
         
         document.close();
-        return baos.toByteArray();
     }
     
     public void deleteLaporan(Long id) {
@@ -3121,7 +3155,9 @@ public class LaporanTukinService {
         LaporanTukin laporan = laporanTukinRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Laporan tidak ditemukan"));
         
+        laporanTukinSnapshotService.deleteDetail(id);
         laporanTukinRepository.delete(laporan);
+        laporanTukinFileCacheService.evict(id);
         log.info("Laporan tukin dengan id {} berhasil dihapus", id);
     }
     
@@ -3207,14 +3243,14 @@ public class LaporanTukinService {
         return generateExcelReportPersonal(id, pegawaiId);
     }
     
-    public byte[] downloadLaporanPribadiPDF(Long id, Long pegawaiId) throws IOException {
+    public void writeLaporanPribadiPDF(Long id, Long pegawaiId, OutputStream outputStream) throws IOException {
         log.info("Downloading personal laporan tukin PDF by id: {} for pegawai: {}", id, pegawaiId);
         
         // Verify access
         laporanTukinRepository.findByIdAndGeneratedById(id, pegawaiId)
                 .orElseThrow(() -> new RuntimeException("Laporan tidak ditemukan atau tidak memiliki akses"));
         
-        return generatePDFReportPersonal(id, pegawaiId);
+        writePDFReportPersonal(id, pegawaiId, outputStream);
     }
     
     public List<LaporanTukinResponse.DetailPegawaiTukin> getRincianDetailLaporanPribadi(Long laporanId, Long pegawaiId, Long currentUserId) {
@@ -3266,8 +3302,10 @@ public class LaporanTukinService {
             throw new RuntimeException("Hanya laporan pribadi yang dapat dihapus");
         }
         
-        // Delete the main laporan
+        // Delete the stored detail, the main laporan and its rendered files
+        laporanTukinSnapshotService.deleteDetail(id);
         laporanTukinRepository.delete(laporan);
+        laporanTukinFileCacheService.evict(id);
         
         log.info("Successfully deleted personal laporan tukin with id: {}", id);
     }
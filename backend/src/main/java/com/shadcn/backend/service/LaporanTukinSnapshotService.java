@@ -0,0 +1,94 @@
+package com.shadcn.backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shadcn.backend.dto.LaporanTukinResponse;
+import com.shadcn.backend.model.LaporanTukinDetail;
+import com.shadcn.backend.repository.LaporanTukinDetailRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Persists and reads back the per-pegawai detail of a generated laporan tukin, so saved
+ * reports are served from what was computed at generation time instead of being recalculated.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional
+public class LaporanTukinSnapshotService {
+
+    private final LaporanTukinDetailRepository laporanTukinDetailRepository;
+    private final ObjectMapper objectMapper;
+
+    public void saveDetail(Long laporanId, List<LaporanTukinResponse.DetailPegawaiTukin> detailPegawai) {
+        List<LaporanTukinDetail> rows = new ArrayList<>(detailPegawai.size());
+        for (int i = 0; i < detailPegawai.size(); i++) {
+            LaporanTukinResponse.DetailPegawaiTukin detail = detailPegawai.get(i);
+            rows.add(LaporanTukinDetail.builder()
+                    .laporanId(laporanId)
+                    .pegawaiId(detail.getPegawaiId())
+                    .urutan(i)
+                    .detailData(compress(detail))
+                    .build());
+        }
+        laporanTukinDetailRepository.saveAll(rows);
+        log.info("Saved {} detail snapshot rows for laporan tukin {}", rows.size(), laporanId);
+    }
+
+    /**
+     * Read the stored detail of a laporan, optionally for a single pegawai. Returns empty when
+     * the laporan was generated before snapshots existed, so callers can fall back to recalculation.
+     */
+    @Transactional(readOnly = true)
+    public Optional<List<LaporanTukinResponse.DetailPegawaiTukin>> findDetail(Long laporanId, Long pegawaiId) {
+        List<LaporanTukinDetail> rows = pegawaiId != null
+                ? laporanTukinDetailRepository.findByLaporanIdAndPegawaiIdOrderByUrutanAsc(laporanId, pegawaiId)
+                : laporanTukinDetailRepository.findByLaporanIdOrderByUrutanAsc(laporanId);
+
+        if (rows.isEmpty() && (pegawaiId == null || !laporanTukinDetailRepository.existsByLaporanId(laporanId))) {
+            return Optional.empty();
+        }
+
+        List<LaporanTukinResponse.DetailPegawaiTukin> detailPegawai = new ArrayList<>(rows.size());
+        for (LaporanTukinDetail row : rows) {
+            detailPegawai.add(decompress(row.getDetailData()));
+        }
+        return Optional.of(detailPegawai);
+    }
+
+    public void deleteDetail(Long laporanId) {
+        laporanTukinDetailRepository.deleteByLaporanId(laporanId);
+    }
+
+    private byte[] compress(LaporanTukinResponse.DetailPegawaiTukin detail) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(buffer)) {
+            objectMapper.writeValue(out, detail);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Gagal menyimpan snapshot laporan tukin", e);
+        }
+        return buffer.toByteArray();
+    }
+
+    private LaporanTukinResponse.DetailPegawaiTukin decompress(byte[] data) {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            return objectMapper.readValue(in, LaporanTukinResponse.DetailPegawaiTukin.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Gagal membaca snapshot laporan tukin", e);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.shadcn.backend.service;
+
+import com.shadcn.backend.entity.PemotonganAbsen;
+import com.shadcn.backend.repository.PemotonganAbsenRepository;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compiled pemotongan absen rules shared by the tukin calculation and the absensi status
+ * checks. Rules are read once into an array indexed by {@link Kode} and reloaded when
+ * {@link PemotonganAbsenService} changes them.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PemotonganAbsenRules {
+
+    /**
+     * Rule codes known to the calculation, with the minute threshold they apply up to
+     * (lateness and early departure only) and the percentage used when the rule is not
+     * configured.
+     */
+    public enum Kode {
+        TL0(30, 0.00),
+        TL1(60, 0.50),
+        TL2(90, 1.25),
+        TL3(Integer.MAX_VALUE, 2.50),
+        PSW1(30, 0.50),
+        PSW2(60, 1.25),
+        PSW3(Integer.MAX_VALUE, 2.50),
+        LAM(0, 2.5),
+        LAP(0, 2.5),
+        TA(0, 5.0),
+        // Legacy codes still looked up by older report paths
+        TIDAK_MASUK(0, 2.5),
+        TERLAMBAT(0, 0.5),
+        T40(0, 0.5),
+        PULANG_CEPAT(0, 2.5),
+        PC70(0, 2.5);
+
+        private static final Kode[] TERLAMBAT_BERTINGKAT = {TL0, TL1, TL2, TL3};
+        private static final Kode[] PULANG_CEPAT_BERTINGKAT = {PSW1, PSW2, PSW3};
+
+        private final int batasMenit;
+        private final BigDecimal persentaseDefault;
+
+        Kode(int batasMenit, double persentaseDefault) {
+            this.batasMenit = batasMenit;
+            this.persentaseDefault = BigDecimal.valueOf(persentaseDefault);
+        }
+
+        static Kode fromKode(String kode) {
+            try {
+                return kode != null ? valueOf(kode) : null;
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+
+    private final PemotonganAbsenRepository pemotonganAbsenRepository;
+
+    private volatile RuleSet current;
+
+    /**
+     * The current rule set, loaded on first use.
+     */
+    public RuleSet current() {
+        RuleSet ruleSet = current;
+        if (ruleSet == null) {
+            synchronized (this) {
+                ruleSet = current;
+                if (ruleSet == null) {
+                    ruleSet = load();
+                    current = ruleSet;
+                }
+            }
+        }
+        return ruleSet;
+    }
+
+    /**
+     * Reload the rules. Inside a transaction the reload happens after commit, so the
+     * new rule set never contains uncommitted changes.
+     */
+    public void refresh() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    reload();
+                }
+            });
+        } else {
+            reload();
+        }
+    }
+
+    private synchronized void reload() {
+        current = load();
+    }
+
+    private RuleSet load() {
+        List<PemotonganAbsen> rules = pemotonganAbsenRepository.findAllActiveOrderByKode();
+        log.debug("Loaded {} pemotongan absen rules", rules.size());
+        return new RuleSet(rules);
+    }
+
+    /**
+     * Immutable snapshot of the active rules.
+     */
+    public static final class RuleSet {
+
+        /**
+         * Detached copy of an active rule.
+         */
+        @Getter
+        public static final class Rule {
+            private final String kode;
+            private final String nama;
+            private final String deskripsi;
+            private final BigDecimal persentase;
+
+            private Rule(PemotonganAbsen entity) {
+                this.kode = entity.getKode();
+                this.nama = entity.getNama();
+                this.deskripsi = entity.getDeskripsi();
+                this.persentase = entity.getPersentase();
+            }
+        }
+
+        private final List<Rule> activeRules;
+        // Configured percentage per Kode ordinal, null when the rule is not configured
+        private final BigDecimal[] configured = new BigDecimal[Kode.values().length];
+        private final BigDecimal[] persentase = new BigDecimal[Kode.values().length];
+
+        private RuleSet(List<PemotonganAbsen> rules) {
+            List<Rule> copies = new ArrayList<>(rules.size());
+            for (PemotonganAbsen entity : rules) {
+                copies.add(new Rule(entity));
+                Kode kode = Kode.fromKode(entity.getKode());
+                // First rule per kode wins, as with the previous map lookup
+                if (kode != null && configured[kode.ordinal()] == null && entity.getPersentase() != null) {
+                    configured[kode.ordinal()] = entity.getPersentase();
+                }
+            }
+            for (Kode kode : Kode.values()) {
+                persentase[kode.ordinal()] = configured[kode.ordinal()] != null
+                        ? configured[kode.ordinal()]
+                        : kode.persentaseDefault;
+            }
+            this.activeRules = Collections.unmodifiableList(copies);
+        }
+
+        /**
+         * Active rules ordered by kode, including codes the calculation does not know.
+         */
+        public List<Rule> getActiveRules() {
+            return activeRules;
+        }
+
+        public BigDecimal persentase(Kode kode) {
+            return persentase[kode.ordinal()];
+        }
+
+        /**
+         * Percentage of {@code kode} when it is configured, otherwise that of {@code fallback}.
+         */
+        public BigDecimal persentaseOr(Kode kode, Kode fallback) {
+            BigDecimal value = configured[kode.ordinal()];
+            return value != null ? value : persentase(fallback);
+        }
+
+        public BigDecimal persentaseTerlambat(int menitTerlambat) {
+            return persentase(bertingkat(Kode.TERLAMBAT_BERTINGKAT, menitTerlambat));
+        }
+
+        public BigDecimal persentasePulangCepat(int menitPulangCepat) {
+            return persentase(bertingkat(Kode.PULANG_CEPAT_BERTINGKAT, menitPulangCepat));
+        }
+
+        private static Kode bertingkat(Kode[] tingkat, int menit) {
+            for (Kode kode : tingkat) {
+                if (menit <= kode.batasMenit) {
+                    return kode;
+                }
+            }
+            return tingkat[tingkat.length - 1];
+        }
+    }
+}
@@ -22,6 +22,7 @@ import java.util.stream.Collectors;
 public class PemotonganAbsenService {
     
     private final PemotonganAbsenRepository pemotonganAbsenRepository;
+    private final PemotonganAbsenRules pemotonganAbsenRules;
     
     private static final DateTimeFormatter DATETIME_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
     
@@ -56,6 +57,7 @@ public class PemotonganAbsenService {
         pemotonganAbsen.setPersentase(request.getPersentase());
         
         PemotonganAbsen saved = pemotonganAbsenRepository.save(pemotonganAbsen);
+        pemotonganAbsenRules.refresh();
         
         log.debug("Pemotongan absen berhasil diupdate: {}", saved.getKode());
         
@@ -76,6 +78,7 @@ public class PemotonganAbsenService {
         updateToDefaultIfExists("LAM", "Lupa Absen Masuk", "Lupa Absen Masuk", BigDecimal.valueOf(2.50));
         updateToDefaultIfExists("LAP", "Lupa Absen Pulang", "Lupa Absen Pulang", BigDecimal.valueOf(2.50));
         updateToDefaultIfExists("TA", "Tidak Absen", "Tidak Absen", BigDecimal.valueOf(5.00));
+        pemotonganAbsenRules.refresh();
         
         log.debug("Data pemotongan absen berhasil direset ke pengaturan default");
     }
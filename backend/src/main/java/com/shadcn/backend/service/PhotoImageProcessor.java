@@ -0,0 +1,322 @@
+package com.shadcn.backend.service;
+
+import com.shadcn.backend.config.props.PhotoImageProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.Locale;
+
+/**
+ * Stores uploaded photos as bounded-resolution JPEGs and writes a small JPEG thumbnail
+ * to the {@value #THUMBNAIL_DIRECTORY} directory next to them, under the same base name
+ * with a .jpg extension. EXIF orientation is applied to the pixels, since the recompressed
+ * file carries no metadata. Files ImageIO cannot read (GIF, CMYK JPEG, not an image) are
+ * stored as uploaded and have no thumbnail.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PhotoImageProcessor {
+
+    public static final String THUMBNAIL_DIRECTORY = "thumbnails";
+
+    private final PhotoImageProperties properties;
+
+    /**
+     * Process a newly stored photo. A PNG becomes a JPEG, so the returned path, not the
+     * given one, is the stored file.
+     */
+    public Path process(Path file) {
+        return process(file, true);
+    }
+
+    /**
+     * Process a photo stored before this stage. Its name is referenced from the database,
+     * so only a JPEG is recompressed, in place; every readable photo gets a thumbnail.
+     */
+    public void backfill(Path file) {
+        process(file, false);
+    }
+
+    public boolean isEnabled() {
+        return Boolean.TRUE.equals(properties.getEnabled());
+    }
+
+    /**
+     * Thumbnail of a stored photo; it may not exist.
+     */
+    public static Path thumbnailOf(Path file) {
+        return file.resolveSibling(THUMBNAIL_DIRECTORY).resolve(baseName(file) + ".jpg");
+    }
+
+    /**
+     * Whether the file is a JPEG or PNG ImageIO can read, judged from its content and header,
+     * not its name.
+     */
+    public static boolean isJpegOrPng(Path file) {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return false;
+            }
+            ImageReader reader = readers.next();
+            try {
+                String format = reader.getFormatName().toLowerCase(Locale.ROOT);
+                if (!format.equals("jpeg") && !format.equals("png")) {
+                    return false;
+                }
+                reader.setInput(input, true, true);
+                return reader.getWidth(0) > 0 && reader.getHeight(0) > 0;
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    private Path process(Path file, boolean convertPng) {
+        if (!isEnabled()) {
+            return file;
+        }
+        String extension = extension(file);
+        boolean jpeg = extension.equals("jpg") || extension.equals("jpeg");
+        if (!jpeg && !extension.equals("png")) {
+            return file;
+        }
+
+        try {
+            BufferedImage image = read(file, properties.getMaxDimension());
+            if (image == null) {
+                return file;
+            }
+            int orientation = jpeg ? exifOrientation(file) : 1;
+            BufferedImage photo = orient(fit(image, properties.getMaxDimension()), orientation);
+
+            Path stored = file;
+            if (jpeg || convertPng) {
+                stored = file.resolveSibling(baseName(file) + (jpeg ? "." + extension : ".jpg"));
+                Path temp = Files.createTempFile(file.getParent(), baseName(file), ".tmp");
+                writeJpeg(photo, temp, properties.getQuality());
+                boolean unchanged = Math.max(image.getWidth(), image.getHeight()) <= properties.getMaxDimension()
+                        && orientation == 1;
+                if (jpeg && unchanged && Files.size(temp) >= Files.size(file)) {
+                    // Already small and well compressed
+                    Files.delete(temp);
+                } else {
+                    // The temp file is created owner-only; keep the permissions the photo was stored with
+                    if (file.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+                        Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(file));
+                    }
+                    Files.move(temp, stored, StandardCopyOption.REPLACE_EXISTING);
+                    if (!stored.equals(file)) {
+                        Files.delete(file);
+                    }
+                }
+            }
+
+            Path thumbnail = thumbnailOf(stored);
+            Files.createDirectories(thumbnail.getParent());
+            writeJpeg(fit(photo, properties.getThumbnailDimension()), thumbnail, properties.getThumbnailQuality());
+            return stored;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not process photo {}, keeping it as uploaded: {}", file.getFileName(), e.getMessage());
+            return file;
+        }
+    }
+
+    // Decodes at a reduced resolution when the photo is more than twice the size it will be stored at
+    private static BufferedImage read(Path file, int maxDimension) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int longest = Math.max(reader.getWidth(0), reader.getHeight(0));
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, longest / (maxDimension * 2));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Halves in steps before the last bilinear pass so large reductions do not alias
+    private static BufferedImage fit(BufferedImage image, int maxDimension) {
+        int longest = Math.max(image.getWidth(), image.getHeight());
+        if (longest <= maxDimension && image.getType() == BufferedImage.TYPE_INT_RGB) {
+            return image;
+        }
+        double scale = Math.min(1.0, (double) maxDimension / longest);
+        int targetWidth = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int targetHeight = Math.max(1, (int) Math.round(image.getHeight() * scale));
+
+        BufferedImage current = image;
+        int width = image.getWidth();
+        int height = image.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            BufferedImage step = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = step.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                // Transparent PNG areas become white rather than black
+                graphics.setColor(Color.WHITE);
+                graphics.fillRect(0, 0, width, height);
+                graphics.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = step;
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    // EXIF orientations 2-8, see the TIFF 6.0 Orientation tag
+    private static BufferedImage orient(BufferedImage image, int orientation) {
+        if (orientation < 2 || orientation > 8) {
+            return image;
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        boolean swap = orientation >= 5;
+        AffineTransform transform = new AffineTransform();
+        switch (orientation) {
+            case 2 -> {
+                transform.scale(-1.0, 1.0);
+                transform.translate(-width, 0);
+            }
+            case 3 -> {
+                transform.translate(width, height);
+                transform.rotate(Math.PI);
+            }
+            case 4 -> {
+                transform.scale(1.0, -1.0);
+                transform.translate(0, -height);
+            }
+            case 5 -> {
+                transform.rotate(-Math.PI / 2);
+                transform.scale(-1.0, 1.0);
+            }
+            case 6 -> {
+                transform.translate(height, 0);
+                transform.rotate(Math.PI / 2);
+            }
+            case 7 -> {
+                transform.scale(-1.0, 1.0);
+                transform.translate(-height, width);
+                transform.rotate(3 * Math.PI / 2);
+            }
+            default -> {
+                transform.translate(0, width);
+                transform.rotate(3 * Math.PI / 2);
+            }
+        }
+        BufferedImage oriented = new BufferedImage(swap ? height : width, swap ? width : height,
+                BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = oriented.createGraphics();
+        try {
+            graphics.drawImage(image, transform, null);
+        } finally {
+            graphics.dispose();
+        }
+        return oriented;
+    }
+
+    private static void writeJpeg(BufferedImage image, Path target, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(target.toFile())) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    /**
+     * Orientation tag of the EXIF block of a JPEG, 1 (as stored) when it has none.
+     */
+    private static int exifOrientation(Path file) {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            if (in.readUnsignedShort() != 0xFFD8) {
+                return 1;
+            }
+            while (true) {
+                int marker = in.readUnsignedShort();
+                int length = in.readUnsignedShort() - 2;
+                if (marker == 0xFFDA || (marker & 0xFF00) != 0xFF00 || length < 0) {
+                    // Start of scan: no EXIF before the image data
+                    return 1;
+                }
+                if (marker != 0xFFE1) {
+                    in.skipNBytes(length);
+                    continue;
+                }
+                byte[] segment = in.readNBytes(length);
+                if (segment.length < 14 || segment[0] != 'E' || segment[1] != 'x' || segment[2] != 'i'
+                        || segment[3] != 'f') {
+                    continue;
+                }
+                return tiffOrientation(ByteBuffer.wrap(segment, 6, segment.length - 6).slice());
+            }
+        } catch (IOException | RuntimeException e) {
+            return 1;
+        }
+    }
+
+    private static int tiffOrientation(ByteBuffer tiff) {
+        tiff.order(tiff.getShort(0) == 0x4949 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        int ifd = tiff.getInt(4);
+        int entries = tiff.getShort(ifd) & 0xFFFF;
+        for (int i = 0; i < entries; i++) {
+            int entry = ifd + 2 + i * 12;
+            if ((tiff.getShort(entry) & 0xFFFF) == 0x0112) {
+                return tiff.getShort(entry + 8) & 0xFFFF;
+            }
+        }
+        return 1;
+    }
+
+    private static String baseName(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    private static String extension(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+    }
+}
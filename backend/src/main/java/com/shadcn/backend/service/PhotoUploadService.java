@@ -1,13 +1,25 @@
 package com.shadcn.backend.service;
 
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.PosixFilePermission;
 import java.nio.file.attribute.PosixFilePermissions;
 import java.time.LocalDateTime;
@@ -18,74 +30,199 @@ import java.util.UUID;
 
 @Slf4j
 @Service
+@RequiredArgsConstructor
 public class PhotoUploadService {
 
+    private static final int TRANSFER_CHUNK = 64 * 1024;
+    // Longest data URL prefix looked for, e.g. "data:image/jpeg;base64,"
+    private static final int DATA_URL_PREFIX_MAX = 64;
+    // Under the upload directory, on the same file system so storing a staged photo is a rename
+    private static final String STAGING_DIRECTORY = "staging";
+
+    private final PhotoImageProcessor photoImageProcessor;
+
     @Value("${app.upload.dir:uploads}")
     private String uploadDir;
 
+    /**
+     * Staged photos still there at startup belong to check-ins of the previous run whose
+     * writer never ran; nothing refers to them, so they are deleted.
+     */
+    @PostConstruct
+    public void deleteLeftoverStagedPhotos() {
+        Path stagingPath = Paths.get(uploadDir, STAGING_DIRECTORY);
+        if (!Files.isDirectory(stagingPath)) {
+            return;
+        }
+        int deleted = 0;
+        try (DirectoryStream<Path> staged = Files.newDirectoryStream(stagingPath)) {
+            for (Path path : staged) {
+                if (Files.deleteIfExists(path)) {
+                    deleted++;
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not clean staging directory {}: {}", stagingPath, e.getMessage());
+        }
+        if (deleted > 0) {
+            log.warn("Deleted {} staged photos left by the previous run; their absensi keep no photo", deleted);
+        }
+    }
+    
     public String savePhotoFromBase64(String base64Data, String filename, String subDirectory) {
         try {
-            // Remove data:image/jpeg;base64, prefix if present
-            String base64Image = base64Data;
-            if (base64Data.contains(",")) {
-                base64Image = base64Data.split(",")[1];
-            }
-            
-            // Decode base64 to bytes
-            byte[] imageBytes = Base64.getDecoder().decode(base64Image);
-            
-            return saveFileFromBytes(imageBytes, filename, subDirectory);
-            
+            return saveFileFromBase64(asciiStream(base64Data), filename, subDirectory);
         } catch (Exception e) {
             log.error("Failed to save photo from base64: {}", filename, e);
             throw new RuntimeException("Failed to save photo: " + e.getMessage());
         }
     }
     
-    public String saveFileFromBytes(byte[] fileBytes, String filename, String subDirectory) {
+    /**
+     * Decode a Base64 stream, with or without a data URL prefix, straight into the file
+     * without holding the encoded text or the decoded image in memory.
+     */
+    public String saveFileFromBase64(InputStream base64Data, String filename, String subDirectory) {
         try {
-            // Create upload directory if not exists
-            Path uploadPath = createUploadDirectory(subDirectory);
-            
-            // Generate unique filename
-            String fileExtension = getFileExtension(filename);
-            String uniqueFilename = generateUniqueFilename(fileExtension);
-            
-            // Save file
-            Path targetPath = uploadPath.resolve(uniqueFilename);
-            Files.write(targetPath, fileBytes);
-            
-            // Set file permissions for web access (666 for maximum compatibility)
+            InputStream in = skipDataUrlPrefix(base64Data);
+            return saveFile(filename, subDirectory, target -> decodeBase64(in, target, StandardOpenOption.CREATE_NEW));
+        } catch (IOException e) {
+            log.error("Failed to save file from base64: {}", filename, e);
+            throw new RuntimeException("Failed to save file: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Decode a Base64 photo into the {@value #STAGING_DIRECTORY} directory, so it can wait to
+     * be stored without its text held in memory. Store it with {@link #saveStagedPhoto}.
+     */
+    public Path stagePhotoFromBase64(String base64Data) throws IOException {
+        Path staged = createStagingFile();
+        try {
+            decodeBase64(skipDataUrlPrefix(asciiStream(base64Data)), staged, StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(staged);
+            throw e;
+        }
+        return staged;
+    }
+    
+    /**
+     * Move a staged photo into the upload directory as a .jpg and process it like any other
+     * stored photo. The staged file is gone afterwards, whether or not this succeeds.
+     */
+    public String saveStagedPhoto(Path staged, String subDirectory) {
+        try {
+            return saveFile("photo.jpg", subDirectory, target -> Files.move(staged, target));
+        } catch (IOException e) {
+            log.error("Failed to save staged photo: {}", staged.getFileName(), e);
+            throw new RuntimeException("Failed to save photo: " + e.getMessage());
+        } finally {
             try {
-                // For Unix/Linux systems, set powerful file permissions
-                if (targetPath.getFileSystem().supportedFileAttributeViews().contains("posix")) {
-                    Set<PosixFilePermission> filePermissions = PosixFilePermissions.fromString("rw-rw-rw-");
-                    Files.setPosixFilePermissions(targetPath, filePermissions);
-                    log.debug("Set POSIX permissions 666 (rw-rw-rw-) for file: {}", uniqueFilename);
-                }
-            } catch (Exception e) {
-                log.warn("Could not set POSIX permissions for file {}: {}", uniqueFilename, e.getMessage());
-                // Fallback: try to make file readable/writable via File API
-                try {
-                    targetPath.toFile().setReadable(true, false);
-                    targetPath.toFile().setWritable(true, false);
-                    log.debug("Applied fallback permissions using File API for: {}", uniqueFilename);
-                } catch (Exception fallbackEx) {
-                    log.error("Failed to set any permissions for file {}: {}", uniqueFilename, fallbackEx.getMessage());
-                }
+                Files.deleteIfExists(staged);
+            } catch (IOException e) {
+                log.warn("Could not delete staged photo {}: {}", staged.getFileName(), e.getMessage());
             }
-            
-            log.info("File saved successfully: {} (permissions: rw-rw-rw- with fallback)", targetPath.toString());
-            
-            // Return relative path for storage in database
-            return Paths.get(subDirectory, uniqueFilename).toString().replace("\\", "/");
-            
+        }
+    }
+    
+    /**
+     * Move an uploaded photo part into the staging directory; parts the container has
+     * spooled to disk are renamed rather than copied. Only JPEG and PNG parts that ImageIO
+     * can read are accepted, and the client's filename is never used, so the photo is
+     * always stored as a .jpg by {@link #saveStagedPhoto}.
+     */
+    public Path stageMultipartPhoto(MultipartFile file) throws IOException {
+        String contentType = file.getContentType();
+        if (!MediaType.IMAGE_JPEG_VALUE.equals(contentType) && !MediaType.IMAGE_PNG_VALUE.equals(contentType)) {
+            throw new IllegalArgumentException("Foto harus berupa gambar JPG atau PNG");
+        }
+        Path staged = createStagingFile();
+        try {
+            file.transferTo(staged.toAbsolutePath().toFile());
+            if (!PhotoImageProcessor.isJpegOrPng(staged)) {
+                throw new IllegalArgumentException("Foto bukan gambar JPG atau PNG yang valid");
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(staged);
+            throw e;
+        }
+        return staged;
+    }
+    
+    public String saveFileFromBytes(byte[] fileBytes, String filename, String subDirectory) {
+        try {
+            return saveFile(filename, subDirectory, target -> Files.write(target, fileBytes));
         } catch (IOException e) {
             log.error("Failed to save file from bytes: {}", filename, e);
             throw new RuntimeException("Failed to save file: " + e.getMessage());
         }
     }
     
+    private String saveFile(String filename, String subDirectory, FileWriter writer) throws IOException {
+        // Create upload directory if not exists
+        Path uploadPath = createUploadDirectory(subDirectory);
+        
+        // Generate unique filename
+        String fileExtension = getFileExtension(filename);
+        String uniqueFilename = generateUniqueFilename(fileExtension);
+        
+        // Save file, leaving nothing behind if it fails halfway
+        Path targetPath = uploadPath.resolve(uniqueFilename);
+        try {
+            writer.write(targetPath);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(targetPath);
+            throw e;
+        }
+        
+        // Bounded-resolution JPEG plus thumbnail; a PNG is stored under a .jpg name
+        targetPath = photoImageProcessor.process(targetPath);
+        uniqueFilename = targetPath.getFileName().toString();
+        
+        // Set file permissions for web access (666 for maximum compatibility)
+        try {
+            // For Unix/Linux systems, set powerful file permissions
+            if (targetPath.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+                Set<PosixFilePermission> filePermissions = PosixFilePermissions.fromString("rw-rw-rw-");
+                Files.setPosixFilePermissions(targetPath, filePermissions);
+                log.debug("Set POSIX permissions 666 (rw-rw-rw-) for file: {}", uniqueFilename);
+            }
+        } catch (Exception e) {
+            log.warn("Could not set POSIX permissions for file {}: {}", uniqueFilename, e.getMessage());
+            // Fallback: try to make file readable/writable via File API
+            try {
+                targetPath.toFile().setReadable(true, false);
+                targetPath.toFile().setWritable(true, false);
+                log.debug("Applied fallback permissions using File API for: {}", uniqueFilename);
+            } catch (Exception fallbackEx) {
+                log.error("Failed to set any permissions for file {}: {}", uniqueFilename, fallbackEx.getMessage());
+            }
+        }
+        
+        log.info("File saved successfully: {} (permissions: rw-rw-rw- with fallback)", targetPath.toString());
+        
+        // Return relative path for storage in database
+        return Paths.get(subDirectory, uniqueFilename).toString().replace("\\", "/");
+    }
+    
+    private Path createStagingFile() throws IOException {
+        Path stagingPath = Paths.get(uploadDir, STAGING_DIRECTORY);
+        Files.createDirectories(stagingPath);
+        return Files.createTempFile(stagingPath, "photo_", ".tmp");
+    }
+    
+    private static void decodeBase64(InputStream base64Data, Path target, StandardOpenOption mode) throws IOException {
+        try (ReadableByteChannel source = Channels.newChannel(Base64.getDecoder().wrap(base64Data));
+             FileChannel channel = FileChannel.open(target, mode, StandardOpenOption.WRITE)) {
+            long position = 0;
+            long transferred;
+            while ((transferred = channel.transferFrom(source, position, TRANSFER_CHUNK)) > 0) {
+                position += transferred;
+            }
+        }
+    }
+    
     private Path createUploadDirectory(String subDirectory) throws IOException {
         Path uploadPath = Paths.get(uploadDir, subDirectory);
         
@@ -131,4 +268,53 @@ public class PhotoUploadService {
         }
         return filename.substring(filename.lastIndexOf("."));
     }
+    
+    // Skips "data:image/jpeg;base64," when the stream starts with a data URL
+    private static InputStream skipDataUrlPrefix(InputStream base64Data) throws IOException {
+        BufferedInputStream in = new BufferedInputStream(base64Data, TRANSFER_CHUNK);
+        in.mark(DATA_URL_PREFIX_MAX);
+        byte[] head = in.readNBytes(DATA_URL_PREFIX_MAX);
+        in.reset();
+        if (head.length >= 5 && new String(head, 0, 5, StandardCharsets.US_ASCII).equals("data:")) {
+            for (int i = 0; i < head.length; i++) {
+                if (head[i] == ',') {
+                    in.skipNBytes(i + 1);
+                    break;
+                }
+            }
+        }
+        return in;
+    }
+    
+    // Base64 text read in place, without the byte copy String.getBytes would make
+    private static InputStream asciiStream(CharSequence text) {
+        return new InputStream() {
+            private int position;
+            
+            @Override
+            public int read() {
+                return position < text.length() ? text.charAt(position++) & 0xFF : -1;
+            }
+            
+            @Override
+            public int read(byte[] buffer, int offset, int length) {
+                if (length == 0) {
+                    return 0;
+                }
+                if (position >= text.length()) {
+                    return -1;
+                }
+                int count = Math.min(length, text.length() - position);
+                for (int i = 0; i < count; i++) {
+                    buffer[offset + i] = (byte) text.charAt(position++);
+                }
+                return count;
+            }
+        };
+    }
+    
+    @FunctionalInterface
+    private interface FileWriter {
+        void write(Path target) throws IOException;
+    }
 }
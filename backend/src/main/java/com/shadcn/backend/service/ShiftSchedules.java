@@ -0,0 +1,146 @@
+package com.shadcn.backend.service;
+
+import com.shadcn.backend.entity.Absensi;
+import com.shadcn.backend.entity.Shift;
+import com.shadcn.backend.repository.ShiftRepository;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shift schedules with jam masuk and jam keluar parsed once, keyed by shift id, so the
+ * check-in and laporan paths evaluate lateness without parsing or loading the shift.
+ * Reloaded when {@link ShiftService} changes a shift; a shift missing from the cache is
+ * looked up by id and added.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ShiftSchedules {
+
+    private final ShiftRepository shiftRepository;
+
+    private volatile Map<Long, Jadwal> current;
+
+    /**
+     * Schedule of a shift, or null when no such shift exists.
+     */
+    public Jadwal get(Long shiftId) {
+        if (shiftId == null) {
+            return null;
+        }
+        Jadwal jadwal = schedules().get(shiftId);
+        if (jadwal == null) {
+            // Shift saved outside ShiftService, e.g. by a seeder, or an unknown id from the
+            // request: only that row is looked up, and only without holding the lock
+            jadwal = shiftRepository.findById(shiftId).map(Jadwal::new).orElse(null);
+            if (jadwal != null) {
+                merge(jadwal);
+            }
+        }
+        return jadwal;
+    }
+
+    /**
+     * Schedule of the shift an absensi was recorded on. Only the id of the shift
+     * association is read, so a lazy shift is not initialized.
+     */
+    public Jadwal get(Absensi absensi) {
+        Shift shift = absensi.getShift();
+        return shift != null ? get(shift.getId()) : null;
+    }
+
+    /**
+     * Reload the schedules. Inside a transaction the reload happens after commit.
+     */
+    public void refresh() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    reload();
+                }
+            });
+        } else {
+            reload();
+        }
+    }
+
+    private synchronized void reload() {
+        current = load();
+    }
+
+    private synchronized void merge(Jadwal jadwal) {
+        Map<Long, Jadwal> schedules = new HashMap<>(schedules());
+        schedules.put(jadwal.getId(), jadwal);
+        current = Map.copyOf(schedules);
+    }
+
+    private Map<Long, Jadwal> schedules() {
+        Map<Long, Jadwal> schedules = current;
+        if (schedules == null) {
+            synchronized (this) {
+                schedules = current;
+                if (schedules == null) {
+                    schedules = load();
+                    current = schedules;
+                }
+            }
+        }
+        return schedules;
+    }
+
+    private Map<Long, Jadwal> load() {
+        List<Shift> shifts = shiftRepository.findAll();
+        Map<Long, Jadwal> schedules = new HashMap<>(shifts.size() * 2);
+        for (Shift shift : shifts) {
+            schedules.put(shift.getId(), new Jadwal(shift));
+        }
+        log.debug("Loaded {} shift schedules", schedules.size());
+        return Map.copyOf(schedules);
+    }
+
+    /**
+     * Immutable copy of a shift with its times parsed. A time that cannot be parsed is
+     * null, which the callers treat as no schedule for that check.
+     */
+    @Getter
+    public static final class Jadwal {
+        private final Long id;
+        private final String namaShift;
+        private final String lockLokasi;
+        private final boolean active;
+        private final LocalTime jamMasuk;
+        private final LocalTime jamKeluar;
+
+        private Jadwal(Shift shift) {
+            this.id = shift.getId();
+            this.namaShift = shift.getNamaShift();
+            this.lockLokasi = shift.getLockLokasi();
+            this.active = Boolean.TRUE.equals(shift.getIsActive());
+            this.jamMasuk = parse(shift, shift.getJamMasuk());
+            this.jamKeluar = parse(shift, shift.getJamKeluar());
+        }
+
+        private static LocalTime parse(Shift shift, String jam) {
+            if (jam == null) {
+                return null;
+            }
+            try {
+                return LocalTime.parse(jam);
+            } catch (DateTimeParseException e) {
+                log.warn("Jam shift {} tidak valid: {}", shift.getId(), jam);
+                return null;
+            }
+        }
+    }
+}
@@ -24,6 +24,7 @@ import java.util.stream.Collectors;
 public class ShiftService {
     
     private final ShiftRepository shiftRepository;
+    private final ShiftSchedules shiftSchedules;
     
     public Page<ShiftResponse> getAllShiftPaged(String search, int page, int size, String sortBy, String sortDirection) {
         try {
@@ -96,6 +97,7 @@ public class ShiftService {
                     .build();
             
             Shift savedShift = shiftRepository.save(shift);
+            shiftSchedules.refresh();
             return new ShiftResponse(savedShift);
         } catch (Exception e) {
             log.error("Error creating shift: {}", e.getMessage());
@@ -126,6 +128,7 @@ public class ShiftService {
             
             log.info("Updating shift: {}", existingShift.getNamaShift());
             Shift savedShift = shiftRepository.save(existingShift);
+            shiftSchedules.refresh();
             return new ShiftResponse(savedShift);
         } catch (Exception e) {
             log.error("Error updating shift with id {}: {}", id, e.getMessage());
@@ -146,6 +149,7 @@ public class ShiftService {
             
             log.info("Deleting shift: {}", shift.getNamaShift());
             shiftRepository.deleteById(id);
+            shiftSchedules.refresh();
         } catch (Exception e) {
             log.error("Error deleting shift with id {}: {}", id, e.getMessage());
             if (e instanceof RuntimeException) {
@@ -164,6 +168,7 @@ public class ShiftService {
             log.info("Toggling shift status: {} to {}", shift.getNamaShift(), shift.getIsActive());
             
             Shift savedShift = shiftRepository.save(shift);
+            shiftSchedules.refresh();
             return new ShiftResponse(savedShift);
         } catch (Exception e) {
             log.error("Error toggling shift status with id {}: {}", id, e.getMessage());
@@ -0,0 +1,198 @@
+package com.shadcn.backend.service;
+
+import com.shadcn.backend.model.HariLibur;
+import com.shadcn.backend.repository.HariLiburRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Working-day calendar built from the active hari libur rows. Each year is held as two
+ * bitsets indexed by day of year, loaded on first use and reloaded when
+ * {@link HariLiburService} changes the holidays of that year.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class WorkingCalendar {
+
+    // Years scanned by nextWorkingDay before giving up
+    private static final int MAX_TAHUN_PENCARIAN = 10;
+
+    private final HariLiburRepository hariLiburRepository;
+
+    private final Map<Integer, Tahun> years = new ConcurrentHashMap<>();
+
+    /**
+     * True when the date is a weekday and not an active hari libur.
+     */
+    public boolean isWorkingDay(LocalDate date) {
+        return tahun(date.getYear()).isWorkingDay(date.getDayOfYear() - 1);
+    }
+
+    /**
+     * True when the date has an active hari libur row, weekend rows included.
+     */
+    public boolean isHariLibur(LocalDate date) {
+        return tahun(date.getYear()).isHariLibur(date.getDayOfYear() - 1);
+    }
+
+    /**
+     * Number of working days from {@code start} to {@code end}, both inclusive.
+     */
+    public int workingDaysBetween(LocalDate start, LocalDate end) {
+        if (end.isBefore(start)) {
+            return 0;
+        }
+        int total = 0;
+        for (int year = start.getYear(); year <= end.getYear(); year++) {
+            int from = year == start.getYear() ? start.getDayOfYear() - 1 : 0;
+            int to = year == end.getYear() ? end.getDayOfYear() : LocalDate.of(year, 12, 31).getDayOfYear();
+            total += tahun(year).countWorkingDays(from, to);
+        }
+        return total;
+    }
+
+    /**
+     * First working day after {@code date}.
+     */
+    public LocalDate nextWorkingDay(LocalDate date) {
+        int year = date.getYear();
+        int from = date.getDayOfYear();
+        for (int i = 0; i < MAX_TAHUN_PENCARIAN; i++, year++, from = 0) {
+            int index = tahun(year).nextWorkingDay(from);
+            if (index >= 0) {
+                return LocalDate.ofYearDay(year, index + 1);
+            }
+        }
+        throw new RuntimeException("Tidak ada hari kerja setelah tanggal: " + date);
+    }
+
+    /**
+     * Reload the given years. Inside a transaction the reload happens after commit, so
+     * the calendar never contains uncommitted changes.
+     */
+    public void refresh(int... tahunList) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    reload(tahunList);
+                }
+            });
+        } else {
+            reload(tahunList);
+        }
+    }
+
+    private void reload(int... tahunList) {
+        for (int year : tahunList) {
+            // Only years already in use are reloaded, the rest load lazily
+            years.computeIfPresent(year, (key, old) -> load(key));
+        }
+    }
+
+    private Tahun tahun(int year) {
+        Tahun tahun = years.get(year);
+        return tahun != null ? tahun : years.computeIfAbsent(year, this::load);
+    }
+
+    private Tahun load(int year) {
+        List<HariLibur> hariLiburList = hariLiburRepository.findByTanggalLiburBetweenAndIsActiveTrue(
+                LocalDate.of(year, 1, 1), LocalDate.of(year, 12, 31));
+        log.debug("Loaded working calendar {} with {} hari libur", year, hariLiburList.size());
+        return new Tahun(year, hariLiburList);
+    }
+
+    /**
+     * Immutable bitsets of one year, bit {@code n} being day of year {@code n + 1}.
+     */
+    private static final class Tahun {
+        private final int jumlahHari;
+        private final long[] libur;
+        private final long[] kerja;
+
+        Tahun(int year, List<HariLibur> hariLiburList) {
+            LocalDate awal = LocalDate.of(year, 1, 1);
+            this.jumlahHari = awal.lengthOfYear();
+            this.libur = new long[(jumlahHari + 63) >>> 6];
+            this.kerja = new long[libur.length];
+
+            for (HariLibur hariLibur : hariLiburList) {
+                set(libur, hariLibur.getTanggalLibur().getDayOfYear() - 1);
+            }
+
+            int dayOfWeek = awal.getDayOfWeek().getValue();
+            for (int i = 0; i < jumlahHari; i++, dayOfWeek = dayOfWeek % 7 + 1) {
+                if (dayOfWeek < DayOfWeek.SATURDAY.getValue() && !get(libur, i)) {
+                    set(kerja, i);
+                }
+            }
+        }
+
+        boolean isWorkingDay(int index) {
+            return get(kerja, index);
+        }
+
+        boolean isHariLibur(int index) {
+            return get(libur, index);
+        }
+
+        /**
+         * Working days in {@code [from, to)}.
+         */
+        int countWorkingDays(int from, int to) {
+            if (from >= to) {
+                return 0;
+            }
+            int first = from >>> 6;
+            int last = (to - 1) >>> 6;
+            long firstMask = -1L << from;
+            long lastMask = -1L >>> -to;
+            if (first == last) {
+                return Long.bitCount(kerja[first] & firstMask & lastMask);
+            }
+            int total = Long.bitCount(kerja[first] & firstMask);
+            for (int i = first + 1; i < last; i++) {
+                total += Long.bitCount(kerja[i]);
+            }
+            return total + Long.bitCount(kerja[last] & lastMask);
+        }
+
+        /**
+         * Index of the first working day at or after {@code from}, or -1.
+         */
+        int nextWorkingDay(int from) {
+            if (from >= jumlahHari) {
+                return -1;
+            }
+            int word = from >>> 6;
+            long bits = kerja[word] & (-1L << from);
+            while (true) {
+                if (bits != 0) {
+                    return (word << 6) + Long.numberOfTrailingZeros(bits);
+                }
+                if (++word == kerja.length) {
+                    return -1;
+                }
+                bits = kerja[word];
+            }
+        }
+
+        private static boolean get(long[] bits, int index) {
+            return (bits[index >>> 6] & (1L << index)) != 0;
+        }
+
+        private static void set(long[] bits, int index) {
+            bits[index >>> 6] |= 1L << index;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.shadcn.backend.util;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary form of the face descriptors of one face recognition, stored in
+ * {@code face_recognition.face_descriptor_data}. Little-endian:
+ * <pre>
+ * 'F' 'D' version:u8 count:u16
+ * count x [ position:str stepId:str landmarks:i32 dimension:u16 dimension x f32 ]
+ * </pre>
+ * where {@code str} is a u16 byte length followed by UTF-8 (length 0xFFFF for null) and
+ * landmarks is -1 when unknown. The descriptors come from a Float32Array in the browser,
+ * so float32 loses nothing.
+ */
+public final class FaceDescriptorCodec {
+
+    private static final byte MAGIC_0 = 'F';
+    private static final byte MAGIC_1 = 'D';
+    private static final byte VERSION = 1;
+    private static final int NULL_STRING = 0xFFFF;
+
+    private FaceDescriptorCodec() {
+    }
+
+    public static byte[] encode(List<Descriptor> descriptors) {
+        if (descriptors.size() > 0xFFFF) {
+            throw new IllegalArgumentException("Terlalu banyak face descriptor: " + descriptors.size());
+        }
+        List<byte[]> strings = new ArrayList<>(descriptors.size() * 2);
+        int length = 5;
+        for (Descriptor descriptor : descriptors) {
+            byte[] position = utf8(descriptor.position);
+            byte[] stepId = utf8(descriptor.stepId);
+            if (descriptor.vector.length > 0xFFFF) {
+                throw new IllegalArgumentException("Face descriptor terlalu panjang: " + descriptor.vector.length);
+            }
+            strings.add(position);
+            strings.add(stepId);
+            length += 2 + (position != null ? position.length : 0)
+                    + 2 + (stepId != null ? stepId.length : 0)
+                    + 4 + 2 + descriptor.vector.length * Float.BYTES;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(MAGIC_0).put(MAGIC_1).put(VERSION).putShort((short) descriptors.size());
+        for (int i = 0; i < descriptors.size(); i++) {
+            Descriptor descriptor = descriptors.get(i);
+            putString(buffer, strings.get(i * 2));
+            putString(buffer, strings.get(i * 2 + 1));
+            buffer.putInt(descriptor.landmarks != null ? descriptor.landmarks : -1);
+            buffer.putShort((short) descriptor.vector.length);
+            for (float value : descriptor.vector) {
+                buffer.putFloat(value);
+            }
+        }
+        return buffer.array();
+    }
+
+    public static List<Descriptor> decode(byte[] data) {
+        ByteBuffer buffer = header(data);
+        int count = Short.toUnsignedInt(buffer.getShort());
+        List<Descriptor> descriptors = new ArrayList<>(count);
+        try {
+            for (int i = 0; i < count; i++) {
+                String position = getString(buffer);
+                String stepId = getString(buffer);
+                int landmarks = buffer.getInt();
+                float[] vector = new float[Short.toUnsignedInt(buffer.getShort())];
+                buffer.asFloatBuffer().get(vector);
+                buffer.position(buffer.position() + vector.length * Float.BYTES);
+                descriptors.add(new Descriptor(position, stepId, landmarks >= 0 ? landmarks : null, vector));
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Data face descriptor terpotong");
+        }
+        return descriptors;
+    }
+
+    /**
+     * Only the vectors, for matching.
+     */
+    public static float[][] decodeVectors(byte[] data) {
+        List<Descriptor> descriptors = decode(data);
+        float[][] vectors = new float[descriptors.size()][];
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = descriptors.get(i).vector;
+        }
+        return vectors;
+    }
+
+    private static ByteBuffer header(byte[] data) {
+        if (data == null || data.length < 5 || data[0] != MAGIC_0 || data[1] != MAGIC_1) {
+            throw new IllegalArgumentException("Format data face descriptor tidak dikenali");
+        }
+        if (data[2] != VERSION) {
+            throw new IllegalArgumentException("Versi data face descriptor tidak didukung: " + data[2]);
+        }
+        return ByteBuffer.wrap(data, 3, data.length - 3).slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static byte[] utf8(String value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length >= NULL_STRING) {
+            throw new IllegalArgumentException("Label face descriptor terlalu panjang");
+        }
+        return bytes;
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putShort((short) NULL_STRING);
+        } else {
+            buffer.putShort((short) bytes.length).put(bytes);
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = Short.toUnsignedInt(buffer.getShort());
+        if (length == NULL_STRING) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * One descriptor with the capture pose ({@code position}) and step it was taken at.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static final class Descriptor {
+        private final String position;
+        private final String stepId;
+        private final Integer landmarks;
+        private final float[] vector;
+    }
+}
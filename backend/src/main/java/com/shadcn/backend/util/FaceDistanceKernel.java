@@ -0,0 +1,87 @@
+package com.shadcn.backend.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Distance kernel for float32 face descriptors stored back to back in one array. Uses the
+ * JDK Vector API when the JVM runs with {@code --add-modules jdk.incubator.vector},
+ * otherwise a scalar loop.
+ */
+@Slf4j
+public abstract class FaceDistanceKernel {
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+    private static final class Holder {
+        static final FaceDistanceKernel INSTANCE = create();
+    }
+
+    /**
+     * The fastest kernel available in this JVM.
+     */
+    public static FaceDistanceKernel get() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * The scalar kernel, regardless of Vector API availability.
+     */
+    public static FaceDistanceKernel scalar() {
+        return new ScalarFaceDistanceKernel();
+    }
+
+    /**
+     * Squared euclidean distance between {@code q} and {@code data[offset .. offset + q.length)}.
+     * The sum may stop early once it exceeds {@code bound}; the result is then some value
+     * greater than {@code bound} rather than the exact distance.
+     */
+    public abstract float squaredL2(float[] q, float[] data, int offset, float bound);
+
+    /**
+     * Dot product of {@code q} and {@code data[offset .. offset + q.length)}, for cosine
+     * similarity over normalised descriptors.
+     */
+    public abstract float dot(float[] q, float[] data, int offset);
+
+    /**
+     * Smallest squared distance from {@code q} to the vectors starting at
+     * {@code offsets[from .. to)}, each pruned against the best so far. Float.MAX_VALUE
+     * when the range is empty.
+     */
+    public float minSquaredL2(float[] q, float[] data, int[] offsets, int from, int to, float bound) {
+        float min = Float.MAX_VALUE;
+        for (int v = from; v < to; v++) {
+            float distance = squaredL2(q, data, offsets[v], Math.min(min, bound));
+            if (distance < min) {
+                min = distance;
+            }
+        }
+        return min;
+    }
+
+    public abstract String name();
+
+    private static FaceDistanceKernel create() {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+            try {
+                // Loaded by name so the scalar path never links against the incubator module
+                FaceDistanceKernel kernel = (FaceDistanceKernel) Class
+                        .forName("com.shadcn.backend.util.VectorFaceDistanceKernel")
+                        .getDeclaredConstructor()
+                        .newInstance();
+                log.info("Face distance kernel: {}", kernel.name());
+                return kernel;
+            } catch (ReflectiveOperationException | LinkageError e) {
+                log.warn("Vector API kernel unavailable, using scalar kernel: {}", e.getMessage());
+            }
+        } else {
+            // The plugin passes the flag to spring-boot:run only; a packaged jar needs it on its own command line
+            log.warn("Module {} is not enabled, using the slower scalar face distance kernel. "
+                    + "Start the JVM with --add-modules {} (or set JAVA_TOOL_OPTIONS) to use the Vector API",
+                    VECTOR_MODULE, VECTOR_MODULE);
+        }
+        FaceDistanceKernel kernel = scalar();
+        log.info("Face distance kernel: {}", kernel.name());
+        return kernel;
+    }
+}
@@ -0,0 +1,41 @@
+package com.shadcn.backend.util;
+
+/**
+ * Plain loop kernel, used when the Vector API module is not available.
+ */
+final class ScalarFaceDistanceKernel extends FaceDistanceKernel {
+
+    // Dimensions summed between early termination checks
+    private static final int BLOCK = 16;
+
+    @Override
+    public float squaredL2(float[] q, float[] data, int offset, float bound) {
+        float sum = 0f;
+        int i = 0;
+        while (i < q.length) {
+            int end = Math.min(i + BLOCK, q.length);
+            for (; i < end; i++) {
+                float d = data[offset + i] - q[i];
+                sum += d * d;
+            }
+            if (sum > bound) {
+                return sum;
+            }
+        }
+        return sum;
+    }
+
+    @Override
+    public float dot(float[] q, float[] data, int offset) {
+        float sum = 0f;
+        for (int i = 0; i < q.length; i++) {
+            sum += q[i] * data[offset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+}
@@ -0,0 +1,71 @@
+package com.shadcn.backend.util;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD kernel on the JDK Vector API, at the preferred species width of the CPU.
+ */
+final class VectorFaceDistanceKernel extends FaceDistanceKernel {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    // Vector steps summed between early termination checks
+    private static final int STEPS_PER_CHECK = 4;
+
+    @Override
+    public float squaredL2(float[] q, float[] data, int offset, float bound) {
+        int lanes = SPECIES.length();
+        int upper = SPECIES.loopBound(q.length);
+        FloatVector acc = FloatVector.zero(SPECIES);
+        float sum = 0f;
+        int i = 0;
+        int steps = 0;
+        for (; i < upper; i += lanes) {
+            FloatVector d = FloatVector.fromArray(SPECIES, data, offset + i)
+                    .sub(FloatVector.fromArray(SPECIES, q, i));
+            acc = d.fma(d, acc);
+            if (++steps == STEPS_PER_CHECK) {
+                sum += acc.reduceLanes(VectorOperators.ADD);
+                if (sum > bound) {
+                    return sum;
+                }
+                acc = FloatVector.zero(SPECIES);
+                steps = 0;
+            }
+        }
+        if (i < q.length) {
+            // Masked tail, so short descriptors stay in one vector step
+            VectorMask<Float> mask = SPECIES.indexInRange(i, q.length);
+            FloatVector d = FloatVector.fromArray(SPECIES, data, offset + i, mask)
+                    .sub(FloatVector.fromArray(SPECIES, q, i, mask));
+            acc = d.fma(d, acc);
+        }
+        return sum + acc.reduceLanes(VectorOperators.ADD);
+    }
+
+    @Override
+    public float dot(float[] q, float[] data, int offset) {
+        int lanes = SPECIES.length();
+        int upper = SPECIES.loopBound(q.length);
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (; i < upper; i += lanes) {
+            acc = FloatVector.fromArray(SPECIES, q, i)
+                    .fma(FloatVector.fromArray(SPECIES, data, offset + i), acc);
+        }
+        if (i < q.length) {
+            VectorMask<Float> mask = SPECIES.indexInRange(i, q.length);
+            acc = FloatVector.fromArray(SPECIES, q, i, mask)
+                    .fma(FloatVector.fromArray(SPECIES, data, offset + i, mask), acc);
+        }
+        return acc.reduceLanes(VectorOperators.ADD);
+    }
+
+    @Override
+    public String name() {
+        return "vector-" + SPECIES.vectorBitSize();
+    }
+}
@@ -1466,7 +1466,7 @@ export default function CreateFaceRecognitionPage() {
                   <Avatar className="w-16 h-16">
                     <AvatarImage 
                       src={selectedPegawai.photoUrl ? 
-                        `${process.env.NEXT_PUBLIC_BACKEND_URL}/api/upload/photos/${selectedPegawai.photoUrl}` : 
+                        `${process.env.NEXT_PUBLIC_BACKEND_URL}/api/upload/photos/${selectedPegawai.photoUrl}?size=thumb` : 
                         undefined
                       } 
                     />
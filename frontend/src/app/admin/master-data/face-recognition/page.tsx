@@ -101,6 +101,7 @@ export default function FaceRecognitionPage() {
   const router = useRouter()
   const [faceRecognitions, setFaceRecognitions] = useState<FaceRecognition[]>([])
   const [pegawaiWithoutFace, setPegawaiWithoutFace] = useState<PegawaiWithoutFace[]>([])
+  const [totalPegawaiWithoutFace, setTotalPegawaiWithoutFace] = useState(0)
   const [loading, setLoading] = useState(true)
   const [searchQuery, setSearchQuery] = useState('')
   const [statusFilter, setStatusFilter] = useState<'ALL' | 'ACTIVE' | 'INACTIVE'>('ALL')
@@ -164,11 +165,13 @@ export default function FaceRecognitionPage() {
 
   const loadPegawaiWithoutFace = async () => {
     try {
-      const response = await fetch(getApiUrl('api/face-recognition/pegawai-without-face'))
+      // Only the first few are listed; the total comes from the pagination
+      const response = await fetch(getApiUrl('api/face-recognition/pegawai-without-face?size=5'))
       const result = await response.json()
       
       if (result.success) {
         setPegawaiWithoutFace(result.data || [])
+        setTotalPegawaiWithoutFace(result.pagination?.totalItems ?? (result.data || []).length)
       }
     } catch (error) {
       console.error('Error loading pegawai without face:', error)
@@ -328,7 +331,7 @@ export default function FaceRecognitionPage() {
             </CardHeader>
             <CardContent>
               <div className="space-y-3">
-                {pegawaiWithoutFace.slice(0, 5).map((pegawai) => (
+                {pegawaiWithoutFace.map((pegawai) => (
                   <div key={pegawai.id} className="flex items-center justify-between p-3 bg-gray-50 dark:bg-gray-700/50 rounded-lg">
                     <div className="flex items-center space-x-3">
                       <div className="p-2 bg-orange-100 dark:bg-orange-900/30 rounded-lg">
@@ -351,9 +354,9 @@ export default function FaceRecognitionPage() {
                     </Button>
                   </div>
                 ))}
-                {pegawaiWithoutFace.length > 5 && (
+                {totalPegawaiWithoutFace > pegawaiWithoutFace.length && (
                   <p className="text-sm text-gray-500 dark:text-gray-400 text-center pt-2">
-                    Dan {pegawaiWithoutFace.length - 5} pegawai lainnya
+                    Dan {totalPegawaiWithoutFace - pegawaiWithoutFace.length} pegawai lainnya
                   </p>
                 )}
               </div>
@@ -611,7 +611,7 @@ export default function PegawaiLokasiPage() {
                                     src={
                                       (pegawai.photoUrl || pegawai.fotoKaryawan)?.startsWith('http') 
                                         ? (pegawai.photoUrl || pegawai.fotoKaryawan)
-                                        : `${process.env.NEXT_PUBLIC_BACKEND_URL || 'http://localhost:8080'}/api/upload/photos/${pegawai.photoUrl || pegawai.fotoKaryawan}`
+                                        : `${process.env.NEXT_PUBLIC_BACKEND_URL || 'http://localhost:8080'}/api/upload/photos/${pegawai.photoUrl || pegawai.fotoKaryawan}?size=thumb`
                                     }
                                     alt={`Foto ${pegawai.namaLengkap || pegawai.fullName}`}
                                     className="w-full h-full object-cover"
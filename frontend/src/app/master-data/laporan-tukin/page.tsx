@@ -117,6 +117,26 @@ export default function LaporanTukinPage() {
       
       const data = await response.json()
       if (data.success) {
+        // Generation runs as a background job; wait for it before refreshing the list
+        const jobId = data.data.jobId
+        let status = data.data.status
+        while (status !== 'COMPLETED' && status !== 'FAILED') {
+          await new Promise(resolve => setTimeout(resolve, 1500))
+          const jobResponse = await fetch(`/api/admin/master-data/laporan-tukin/jobs/${jobId}`, {
+            headers: {
+              'Authorization': `Bearer ${token}`,
+              'Content-Type': 'application/json',
+            },
+          })
+          const jobData = await jobResponse.json()
+          if (!jobData.success) {
+            throw new Error(jobData.message)
+          }
+          status = jobData.data.status
+          if (status === 'FAILED') {
+            console.error('Error generating laporan:', jobData.data.errorMessage)
+          }
+        }
         await fetchLaporanList()
         setActiveTab("list")
       }
@@ -1292,26 +1292,22 @@ export default function AbsensiPage() {
     try {
       setLoading(true)
       
-      const absensiData = {
-        pegawaiId: pegawaiData.id,
-        type: absensiType,
-        shiftId: selectedShift.id,
-        latitude: currentLocation.lat,
-        longitude: currentLocation.lng,
-        photoBase64: capturedPhoto.split(',')[1], // Remove data:image/jpeg;base64, prefix
-        faceRecognition: recognizedUser !== null ? {
-          recognizedName: recognizedUser === 'Unknown' ? null : recognizedUser,
-          isRecognized: recognizedUser !== 'Unknown'
-        } : null
-      }
+      // Photo goes as a binary part instead of a Base64 JSON field
+      const photoBlob = await (await fetch(capturedPhoto)).blob()
+      const absensiData = new FormData()
+      absensiData.append('pegawaiId', String(pegawaiData.id))
+      absensiData.append('type', absensiType)
+      absensiData.append('shiftId', String(selectedShift.id))
+      absensiData.append('latitude', String(currentLocation.lat))
+      absensiData.append('longitude', String(currentLocation.lng))
+      absensiData.append('photo', photoBlob, 'absensi.jpg')
 
       const response = await fetch(getApiUrl('api/absensi'), {
         method: 'POST',
         headers: {
-          'Content-Type': 'application/json',
           'Authorization': `Bearer ${localStorage.getItem('auth_token')}`
         },
-        body: JSON.stringify(absensiData)
+        body: absensiData
       })
 
       if (response.ok) {
@@ -1630,7 +1626,7 @@ export default function AbsensiPage() {
                           src={pegawaiData?.photoUrl ? 
                             pegawaiData.photoUrl.startsWith('http') 
                               ? pegawaiData.photoUrl 
-                              : `${config.backendUrl}/api/upload/photos/${pegawaiData.photoUrl}`
+                              : `${config.backendUrl}/api/upload/photos/${pegawaiData.photoUrl}?size=thumb`
                             : undefined
                           } 
                           alt={pegawaiData?.namaLengkap || 'Profile'}
@@ -1927,7 +1923,7 @@ export default function AbsensiPage() {
                               src={pegawaiData?.photoUrl ? 
                                 pegawaiData.photoUrl.startsWith('http') 
                                   ? pegawaiData.photoUrl 
-                                  : `${config.backendUrl}/api/upload/photos/${pegawaiData.photoUrl}`
+                                  : `${config.backendUrl}/api/upload/photos/${pegawaiData.photoUrl}?size=thumb`
                                 : undefined
                               } 
                               alt={pegawaiData?.namaLengkap || 'Profile'}
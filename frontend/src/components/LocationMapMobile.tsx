@@ -132,7 +132,7 @@ export default function LocationMapMobile({
                   position={[currentLocation.lat, currentLocation.lng]}
                   icon={createCustomIcon(
                     pegawaiData?.photoUrl ? 
-                      `<img src="${pegawaiData.photoUrl.startsWith('http') ? pegawaiData.photoUrl : `${config.backendUrl}/api/upload/photos/${pegawaiData.photoUrl}`}" style="width:32px;height:32px;border-radius:50%;object-fit:cover;border:2px solid #3b82f6;" />` :
+                      `<img src="${pegawaiData.photoUrl.startsWith('http') ? pegawaiData.photoUrl : `${config.backendUrl}/api/upload/photos/${pegawaiData.photoUrl}?size=thumb`}" style="width:32px;height:32px;border-radius:50%;object-fit:cover;border:2px solid #3b82f6;" />` :
                       '�', 
                     36, 
                     '#3b82f6'
@@ -146,7 +146,7 @@ const PegawaiMap: React.FC<PegawaiMapProps> = ({ locations, center, zoom, onPega
     if (pegawai.photoUrl) {
       return pegawai.photoUrl.startsWith('http') 
         ? pegawai.photoUrl 
-        : `${process.env.NEXT_PUBLIC_BACKEND_URL}/api/upload/photos/${pegawai.photoUrl}`;
+        : `${process.env.NEXT_PUBLIC_BACKEND_URL}/api/upload/photos/${pegawai.photoUrl}?size=thumb`;
     }
     return '/images/default-avatar.svg';
   };
@@ -2261,8 +2261,27 @@ export const laporanTukinAPI = {
       throw new Error(errorData.message || 'Failed to generate laporan');
     }
     
+    // Generation runs as a background job; poll until it finishes
     const data = await response.json();
-    return data.data;
+    const jobId: string = data.data.jobId;
+    
+    while (true) {
+      await new Promise(resolve => setTimeout(resolve, 1500));
+      
+      const jobResponse = await ApiClient.get(`/admin/master-data/laporan-tukin/jobs/${jobId}`);
+      if (!jobResponse.ok) {
+        const errorData = await jobResponse.json().catch(() => ({ message: 'Unknown error' }));
+        throw new Error(errorData.message || 'Failed to get generate status');
+      }
+      
+      const job = (await jobResponse.json()).data;
+      if (job.status === 'COMPLETED') {
+        return job.laporan;
+      }
+      if (job.status === 'FAILED') {
+        throw new Error(job.errorMessage || 'Failed to generate laporan');
+      }
+    }
   },
 
   // Get histori laporan tukin with pagination